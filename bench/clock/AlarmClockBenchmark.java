@@ -0,0 +1,128 @@
+package clock;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * JMH benchmarks of the hot paths of AlarmClock, for each queue size and store implementation.
+ * Every benchmark leaves the queue at the same size it started with, so the size parameter holds
+ * for the whole measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlarmClockBenchmark {
+    // all alarms are in the far future, so alarms added "now" always become the head
+    static final long NOW = 1_500_000_000_000L;
+    static final long YEAR = 365L * 24 * 60 * 60 * 1000;
+
+    @Param({"1", "1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"striped", "synchronized"})
+    public String store;
+
+    private long rescheduledId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        AlarmClock.setStore(createStore(store).get());
+        AlarmClock.addAlarms(randomDates(size));
+        rescheduledId = AlarmClock.snapshot().id(size / 2);
+    }
+
+    /**
+     * Adds an alarm, then takes the head off to keep the size constant.
+     */
+    @Benchmark
+    public Alarm addAlarm() {
+        AlarmClock.addAlarm(NOW + YEAR + ThreadLocalRandom.current().nextLong(YEAR));
+
+        return AlarmClock.getStore().pollDue(Long.MAX_VALUE - 1);
+    }
+
+    /**
+     * Adds an alarm due now and fires it.
+     */
+    @Benchmark
+    public int checkAlarms() {
+        AlarmClock.addAlarm(NOW);
+
+        return AlarmClock.checkAlarms(NOW).size();
+    }
+
+    /**
+     * Adds an alarm and cancels it by ID.
+     */
+    @Benchmark
+    public boolean cancel() {
+        long id = AlarmClock.addAlarm(NOW + YEAR + ThreadLocalRandom.current().nextLong(YEAR));
+
+        return AlarmClock.cancel(id);
+    }
+
+    /**
+     * Moves an alarm to a random date in place.
+     */
+    @Benchmark
+    public boolean reschedule() {
+        return AlarmClock.reschedule(rescheduledId, NOW + YEAR + ThreadLocalRandom.current().nextLong(YEAR));
+    }
+
+    /**
+     * Reads the shared snapshot of an unchanged queue.
+     */
+    @Benchmark
+    public QueueSnapshot snapshot() {
+        return AlarmClock.snapshot();
+    }
+
+    /**
+     * Changes the queue and takes a new snapshot, which sorts a copy of the dates.
+     */
+    @Benchmark
+    public QueueSnapshot snapshotAfterChange() {
+        AlarmClock.addAlarm(NOW + YEAR + ThreadLocalRandom.current().nextLong(YEAR));
+        AlarmClock.getStore().pollDue(Long.MAX_VALUE - 1);
+
+        return AlarmClock.snapshot();
+    }
+
+    @Benchmark
+    public String generateICalendar() {
+        return AlarmClock.generateICalendar();
+    }
+
+    @Benchmark
+    public void headMillis(Blackhole blackhole) {
+        blackhole.consume(AlarmClock.headMillis());
+    }
+
+    static Supplier<AlarmStore> createStore(String name) {
+        switch (name) {
+            case "striped":
+                return StripedAlarmStore::new;
+            case "synchronized":
+                return SynchronizedAlarmStore::new;
+            default:
+                throw new IllegalArgumentException("Unknown store: " + name);
+        }
+    }
+
+    static long[] randomDates(int count) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long[] dates = new long[count];
+        for (int i = 0; i < count; i++) {
+            dates[i] = NOW + YEAR + random.nextLong(YEAR);
+        }
+
+        return dates;
+    }
+}
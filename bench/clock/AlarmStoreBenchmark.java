@@ -0,0 +1,84 @@
+package clock;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Contention benchmark of the alarm stores.
+ * Several producer threads add alarms while one firing thread keeps polling the due ones,
+ * which is how the stores are used by the importers and the scheduler.
+ *
+ * Run with: java -cp build/classes:build/bench clock.AlarmStoreBenchmark [alarms per producer]
+ */
+public class AlarmStoreBenchmark {
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws InterruptedException {
+        int alarmsPerProducer = (args.length > 0) ? Integer.parseInt(args[0]) : 200_000;
+        int maxProducers = Runtime.getRuntime().availableProcessors() * 2;
+
+        System.out.printf("%-12s %9s %15s%n", "store", "producers", "adds/s");
+        for (int producers = 1; producers <= maxProducers; producers *= 2) {
+            run("synchronized", SynchronizedAlarmStore::new, producers, alarmsPerProducer);
+            run("striped", StripedAlarmStore::new, producers, alarmsPerProducer);
+        }
+    }
+
+    private static void run(String name, Supplier<AlarmStore> factory, int producers, int alarmsPerProducer)
+            throws InterruptedException {
+        double best = 0;
+
+        // the first rounds warm up the JIT, only the best round is reported
+        for (int round = 0; round < ROUNDS; round++) {
+            best = Math.max(best, measure(factory.get(), producers, alarmsPerProducer));
+        }
+
+        System.out.printf("%-12s %9d %,15.0f%n", name, producers, best);
+    }
+
+    private static double measure(AlarmStore store, int producers, int alarmsPerProducer)
+            throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(producers);
+        AtomicBoolean adding = new AtomicBoolean(true);
+
+        for (int p = 0; p < producers; p++) {
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                    for (int i = 0; i < alarmsPerProducer; i++) {
+                        store.add(new Alarm(random.nextLong(1_000_000_000L)));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        // the firing thread takes alarms due before a moving time, like the scheduler does
+        Thread firing = new Thread(() -> {
+            long now = 0;
+            while (adding.get()) {
+                while (store.pollDue(now) != null) {
+                    // drains everything due
+                }
+                now += 1000;
+            }
+        });
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        firing.start();
+        done.await();
+        long elapsed = System.nanoTime() - startTime;
+        adding.set(false);
+        firing.join();
+
+        return (double) producers * alarmsPerProducer / elapsed * 1e9;
+    }
+}
@@ -0,0 +1,63 @@
+package clock;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of painting the clock into an offscreen image.
+ * A steady frame draws the hands over the cached face, a resized frame also redraws the face.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ClockPanelBenchmark {
+    @Param({"200", "800", "1600"})
+    public int size;
+
+    @Param({"0", "1"})
+    public int alarms;
+
+    private Model model;
+    private ClockPanel panel;
+    private BufferedImage image;
+    private Graphics2D graphics;
+    private int frame;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        AlarmClock.setStore(new StripedAlarmStore());
+        if (alarms > 0) {
+            AlarmClock.addAlarm(AlarmClockBenchmark.NOW + AlarmClockBenchmark.YEAR);
+        }
+
+        model = new Model();
+        panel = new ClockPanel(model);
+        panel.setSize(size, size);
+        image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public void paintFrame() {
+        model.second = frame++ % 60;
+        panel.paintComponent(graphics);
+    }
+
+    @Benchmark
+    public void paintResizedFrame() {
+        // alternates between two widths so that every frame rebuilds the face
+        panel.setSize(size + (frame++ & 1), size);
+        panel.paintComponent(graphics);
+    }
+}
@@ -0,0 +1,65 @@
+package clock;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of loading an iCalendar file held in memory into an empty store, compared with loading
+ * the same alarms from a binary snapshot file, for each number of events and store implementation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ICalendarBenchmark {
+    @Param({"1", "1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"striped", "synchronized"})
+    public String store;
+
+    private byte[] file;
+    private Path snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // the dates are in the future of this time source, so no alarm is skipped as past
+        AlarmClock.setTimeSource(() -> AlarmClockBenchmark.NOW);
+        AlarmClock.setStore(AlarmClockBenchmark.createStore(store).get());
+        AlarmClock.addAlarms(AlarmClockBenchmark.randomDates(size));
+        file = AlarmClock.generateICalendar().getBytes();
+
+        snapshot = Files.createTempFile("benchmark", "." + SnapshotFile.EXTENSION);
+        AlarmClock.saveSnapshot(snapshot);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Benchmark
+    public int loadICalendar() throws IOException {
+        AlarmClock.setStore(AlarmClockBenchmark.createStore(store).get());
+        Alarm[] loaded = new ICalendarReader().read(Channels.newChannel(new ByteArrayInputStream(file)), 0);
+        AlarmClock.addAlarms(loaded);
+
+        return AlarmClock.size();
+    }
+
+    @Benchmark
+    public int loadSnapshot() throws IOException {
+        AlarmClock.setStore(AlarmClockBenchmark.createStore(store).get());
+        AlarmClock.loadSnapshot(snapshot);
+
+        return AlarmClock.size();
+    }
+}
@@ -0,0 +1,75 @@
+package clock;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JMH benchmark of the aggregate fire throughput of the sharded scheduler, for each number of tenants
+ * and shards. Every invocation gives each tenant alarms that are already due and waits until all of
+ * them have fired, so the score is alarms fired per second across all shards.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShardedSchedulerBenchmark {
+    static final int ALARMS_PER_INVOCATION = 100_000;
+
+    @Param({"100", "10000", "100000"})
+    public int tenants;
+
+    @Param({"1", "2", "4", "8"})
+    public int shards;
+
+    private ShardedAlarmScheduler scheduler;
+    private AlarmEngine[] engines;
+    private final AtomicLong delivered = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        scheduler = new ShardedAlarmScheduler(shards, TimeSource.SYSTEM);
+        engines = new AlarmEngine[tenants];
+        for (int i = 0; i < tenants; i++) {
+            engines[i] = scheduler.createEngine("tenant-" + i, events -> delivered.addAndGet(events.size()));
+        }
+        scheduler.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        scheduler.stop();
+    }
+
+    /**
+     * Spreads alarms due now over the tenants and waits until every one of them has fired.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ALARMS_PER_INVOCATION)
+    public long fireAll() {
+        long target = delivered.get() + ALARMS_PER_INVOCATION;
+        long now = System.currentTimeMillis();
+        int perTenant = Math.max(1, ALARMS_PER_INVOCATION / tenants);
+        long[] dates = new long[perTenant];
+
+        int added = 0;
+        for (int i = 0; added < ALARMS_PER_INVOCATION; i = (i + 1) % tenants) {
+            int count = Math.min(perTenant, ALARMS_PER_INVOCATION - added);
+            for (int j = 0; j < count; j++) {
+                dates[j] = now - j; // distinct, since a batch adds each date once
+            }
+            engines[i].addAlarms((count == perTenant) ? dates : Arrays.copyOf(dates, count));
+            added += count;
+        }
+
+        while (delivered.get() < target) {
+            Thread.onSpinWait();
+        }
+
+        return delivered.get();
+    }
+}
@@ -0,0 +1,194 @@
+package clock;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the actions of fired alarms, each on its own virtual thread.
+ * Submitting never blocks: a burst of thousands of due alarms starts thousands of cheap threads, which
+ * then wait for one of a fixed number of permits, so only that many actions run at once. Without virtual
+ * threads the actions are queued for a pool of as many platform threads as there are permits.
+ * An action that outlives its timeout is interrupted and counted as timed out by a single timer thread.
+ * It keeps its permit until it actually returns, so an action that ignores the interrupt still counts
+ * against the cap.
+ */
+class ActionRunner {
+    static final int DEFAULT_MAX_CONCURRENT = 256;
+
+    private final ExecutorService executor;
+    private final ScheduledThreadPoolExecutor timeouts =
+            new ScheduledThreadPoolExecutor(1, VirtualThreads.daemonThreads("Alarm action timeout"));
+    private final int maxConcurrent;
+    private final Semaphore permits;
+    private final Map<AlarmAction.Type, Counters> counters = new EnumMap<>(AlarmAction.Type.class);
+
+    ActionRunner() {
+        this(DEFAULT_MAX_CONCURRENT);
+    }
+
+    /**
+     * @param maxConcurrent How many actions can run at once.
+     */
+    ActionRunner(int maxConcurrent) {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("At least one action must be able to run");
+        }
+
+        this.maxConcurrent = maxConcurrent;
+        executor = VirtualThreads.newBoundedExecutor("Alarm action", maxConcurrent);
+        timeouts.setRemoveOnCancelPolicy(true); // most actions finish long before their timeout
+        permits = new Semaphore(maxConcurrent);
+        for (AlarmAction.Type type : AlarmAction.Type.values()) {
+            counters.put(type, new Counters());
+        }
+    }
+
+    /**
+     * Runs the action of a fired alarm in the background. Does nothing for an alarm without an action.
+     *
+     * @param event The fired alarm.
+     * @return Whether an action was started; false when the alarm has none or the runner was shut down.
+     */
+    boolean submit(AlarmEvent event) {
+        AlarmAction action = event.getAction();
+        if (action == null) {
+            return false;
+        }
+
+        try {
+            executor.execute(() -> run(action, event));
+            return true;
+        } catch (RejectedExecutionException e) {
+            counters.get(action.getType()).failed.increment();
+            return false;
+        }
+    }
+
+    /**
+     * Stops the actions that are running or waiting for a permit.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+        timeouts.shutdownNow();
+    }
+
+    long getSucceededCount(AlarmAction.Type type) {
+        return counters.get(type).succeeded.sum();
+    }
+
+    long getFailedCount(AlarmAction.Type type) {
+        return counters.get(type).failed.sum();
+    }
+
+    long getTimedOutCount(AlarmAction.Type type) {
+        return counters.get(type).timedOut.sum();
+    }
+
+    /**
+     * Returns how many actions are running now, including timed out ones that have not returned yet.
+     *
+     * @return Running actions.
+     */
+    int getRunningCount() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    /**
+     * Waits for a permit, then runs the action on this thread, with a timer that interrupts it when it
+     * takes too long. The permit is released here, once the action has returned.
+     */
+    private void run(AlarmAction action, AlarmEvent event) {
+        Counters counted = counters.get(action.getType());
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            return; // shut down while waiting
+        }
+
+        Timeout timeout = new Timeout(action, Thread.currentThread(), counted);
+        ScheduledFuture<?> timer;
+        try {
+            timer = timeouts.schedule(timeout, action.getTimeout(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            permits.release(); // shut down after the permit was taken
+            return;
+        }
+
+        try {
+            action.run(event);
+            if (timeout.finish()) {
+                counted.succeeded.increment();
+            }
+        } catch (InterruptedException e) {
+            timeout.finish(); // timed out, which the timer counted, or shut down
+        } catch (Exception e) {
+            if (timeout.finish()) {
+                counted.failed.increment();
+                System.err.println("Alarm action " + action + " failed: " + e);
+            }
+        } finally {
+            timer.cancel(false);
+            permits.release();
+        }
+    }
+
+    /**
+     * Interrupts an action that is still running when its timeout elapses. Either the timer or the action
+     * finishes it first, so a timed out action is counted once, and never interrupted once it returned.
+     */
+    private static final class Timeout implements Runnable {
+        private final AlarmAction action;
+        private final Thread thread;
+        private final Counters counted;
+        private boolean finished;
+        private boolean timedOut;
+
+        Timeout(AlarmAction action, Thread thread, Counters counted) {
+            this.action = action;
+            this.thread = thread;
+            this.counted = counted;
+        }
+
+        @Override
+        public synchronized void run() {
+            if (!finished) {
+                finished = true;
+                timedOut = true;
+                counted.timedOut.increment();
+                thread.interrupt();
+                System.err.println("Alarm action " + action + " timed out");
+            }
+        }
+
+        /**
+         * Called by the action's thread once it returned, clearing the interrupt left by the timer.
+         *
+         * @return Whether the action finished in time, so its outcome is still to be counted.
+         */
+        synchronized boolean finish() {
+            if (timedOut) {
+                Thread.interrupted();
+                return false;
+            }
+
+            finished = true;
+            return true;
+        }
+    }
+
+    /**
+     * Outcomes of the actions of one type.
+     */
+    private static final class Counters {
+        final LongAdder succeeded = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder timedOut = new LongAdder();
+    }
+}
@@ -0,0 +1,142 @@
+package clock;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for ActionRunner class.
+ */
+public class ActionRunnerTest {
+
+    /**
+     * Test for submit method.
+     * A burst of actions should all run, but never more at once than the cap.
+     */
+    @Test
+    public void submit_WhenBurstOfActions_ShouldNotExceedConcurrencyCap() throws InterruptedException {
+        ActionRunner runner = new ActionRunner(4);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger mostRunning = new AtomicInteger();
+        AlarmAction action = AlarmAction.callback(event -> {
+            mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+        }, AlarmAction.DEFAULT_TIMEOUT);
+
+        for (int i = 0; i < 200; i++) {
+            assertTrue(runner.submit(new AlarmEvent(i, i, 1, action)));
+        }
+
+        awaitCount(() -> runner.getSucceededCount(AlarmAction.Type.CALLBACK), 200);
+        runner.shutdown();
+        assertTrue(mostRunning.get() <= 4);
+        assertFalse(runner.submit(new AlarmEvent(0, 0, 1)));
+    }
+
+    /**
+     * Test for submit method.
+     * Should count failed and timed out actions separately, and release their permits.
+     */
+    @Test
+    public void submit_WhenActionFailsOrTimesOut_ShouldCountIt() throws InterruptedException {
+        ActionRunner runner = new ActionRunner(1);
+        AlarmAction failing = AlarmAction.callback(event -> {
+            throw new IllegalStateException("failed");
+        }, AlarmAction.DEFAULT_TIMEOUT);
+        AlarmAction slow = AlarmAction.callback(event -> {
+            try {
+                Thread.sleep(60 * 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 50);
+
+        runner.submit(new AlarmEvent(0, 0, 1, slow));
+        runner.submit(new AlarmEvent(0, 0, 1, failing));
+
+        awaitCount(() -> runner.getFailedCount(AlarmAction.Type.CALLBACK), 1);
+        awaitCount(() -> runner.getTimedOutCount(AlarmAction.Type.CALLBACK), 1);
+        assertEquals(0, runner.getSucceededCount(AlarmAction.Type.CALLBACK));
+
+        // with a single permit, this only runs if both actions gave theirs back
+        runner.submit(new AlarmEvent(0, 0, 1, AlarmAction.callback(event -> { }, AlarmAction.DEFAULT_TIMEOUT)));
+        awaitCount(() -> runner.getSucceededCount(AlarmAction.Type.CALLBACK), 1);
+        runner.shutdown();
+    }
+
+    /**
+     * Test for submit method.
+     * A timed out action that ignores the interrupt should be counted once and keep its permit until it returns.
+     */
+    @Test
+    public void submit_WhenTimedOutActionIgnoresInterrupt_ShouldKeepPermitUntilItReturns() throws InterruptedException {
+        ActionRunner runner = new ActionRunner(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AlarmAction stubborn = AlarmAction.callback(event -> {
+            while (true) {
+                try {
+                    release.await();
+                    return;
+                } catch (InterruptedException e) {
+                    // ignored on purpose
+                }
+            }
+        }, 20);
+
+        runner.submit(new AlarmEvent(0, 0, 1, stubborn));
+        runner.submit(new AlarmEvent(0, 0, 1, AlarmAction.callback(event -> { }, AlarmAction.DEFAULT_TIMEOUT)));
+        awaitCount(() -> runner.getTimedOutCount(AlarmAction.Type.CALLBACK), 1);
+        Thread.sleep(50);
+
+        assertEquals(1, runner.getRunningCount());
+        assertEquals(0, runner.getSucceededCount(AlarmAction.Type.CALLBACK));
+
+        release.countDown();
+        awaitCount(() -> runner.getSucceededCount(AlarmAction.Type.CALLBACK), 1);
+        runner.shutdown();
+        assertEquals(1, runner.getTimedOutCount(AlarmAction.Type.CALLBACK));
+        assertEquals(0, runner.getFailedCount(AlarmAction.Type.CALLBACK));
+    }
+
+    /**
+     * Test for submit method.
+     * Actions appending to the same file at once should write one whole line each.
+     */
+    @Test
+    public void submit_WhenAppendingToFile_ShouldWriteOneLinePerAlarm() throws InterruptedException, IOException {
+        Path file = Files.createTempFile("alarms", ".log");
+        try {
+            ActionRunner runner = new ActionRunner();
+            AlarmAction action = AlarmAction.appendToFile(file, AlarmAction.DEFAULT_TIMEOUT);
+            for (int i = 0; i < 50; i++) {
+                runner.submit(new AlarmEvent(1526832268854L, 1526832268854L, 1, action));
+            }
+
+            awaitCount(() -> runner.getSucceededCount(AlarmAction.Type.FILE_APPEND), 50);
+            runner.shutdown();
+            assertEquals(50, Files.readAllLines(file).stream().filter(line -> line.endsWith("Alarm activated.")).count());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void awaitCount(LongSupplier count, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10 * 1000;
+        while (count.getAsLong() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, count.getAsLong());
+    }
+}
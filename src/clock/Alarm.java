@@ -1,21 +1,118 @@
 package clock;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Created by Aleksander Czarnowski on 24/04/2018
  *
  * An alarm object.
+ * Every alarm has an ID that stays the same when it is rescheduled and when it is saved and loaded again.
+ * IDs are unique across runs: each run numbers its alarms from the second it started at, shifted left by
+ * 21 bits, so a later run never hands out the IDs of an earlier one unless that one created over two million
+ * alarms per second in between. IDs stay below 2^53, so they survive JSON clients that read numbers as doubles.
  */
 public class Alarm {
+    /**
+     * Largest ID an alarm can have, the largest integer a double holds exactly.
+     */
+    static final long MAX_ID = (1L << 53) - 1;
+
+    private static final AtomicLong NEXT_ID = new AtomicLong((TimeSource.SYSTEM.millis() / 1000) << 21);
+
+    private final long id;
     private long dateInMilliseconds;
+    private Recurrence recurrence;
+    private AlarmAction action;
+
+    // slot of the alarm in its store's heap, or -1 when it is not queued; only changed under the store's lock
+    int slot = -1;
 
     public Alarm(long dateInMilliseconds) {
+        this.id = NEXT_ID.getAndIncrement();
+        this.dateInMilliseconds = dateInMilliseconds;
+    }
+
+    /**
+     * Creates an alarm with a known ID, for example one read from a file.
+     * IDs given to new alarms afterwards are always greater.
+     *
+     * @param id ID of the alarm.
+     * @param dateInMilliseconds Date in milliseconds of the alarm.
+     */
+    public Alarm(long id, long dateInMilliseconds) {
+        this.id = id;
         this.dateInMilliseconds = dateInMilliseconds;
+        if (NEXT_ID.get() <= id) {
+            NEXT_ID.accumulateAndGet(id + 1, Math::max);
+        }
+    }
+
+    /**
+     * Returns a copy of the alarm with a new ID, for an alarm whose ID is already taken.
+     *
+     * @return The copy, not queued.
+     */
+    Alarm withNewId() {
+        Alarm copy = new Alarm(dateInMilliseconds);
+        copy.recurrence = recurrence;
+        copy.action = action;
+
+        return copy;
+    }
+
+    public long getId() {
+        return id;
     }
 
     public long getDateInMilliseconds() {
         return dateInMilliseconds;
     }
 
+    /**
+     * Returns the rule the alarm repeats by.
+     *
+     * @return The rule, or null when the alarm goes off once.
+     */
+    Recurrence getRecurrence() {
+        return recurrence;
+    }
+
+    /**
+     * Makes the alarm repeat. Only called before the alarm is added to a store.
+     *
+     * @param recurrence The rule, or null for an alarm that goes off once.
+     */
+    void setRecurrence(Recurrence recurrence) {
+        this.recurrence = recurrence;
+    }
+
+    /**
+     * Returns what the alarm does when it fires.
+     *
+     * @return The action, or null when the alarm just shows a message.
+     */
+    AlarmAction getAction() {
+        return action;
+    }
+
+    /**
+     * Gives the alarm an action. Only called before the alarm is added to a store.
+     *
+     * @param action The action, or null for an alarm that just shows a message.
+     */
+    void setAction(AlarmAction action) {
+        this.action = action;
+    }
+
+    /**
+     * Moves the alarm to another date. Only called by the store holding the alarm, under its lock.
+     *
+     * @param dateInMilliseconds New date in milliseconds.
+     */
+    void setDateInMilliseconds(long dateInMilliseconds) {
+        this.dateInMilliseconds = dateInMilliseconds;
+    }
+
     @Override
     public String toString() {
         return String.valueOf(getDateInMilliseconds());
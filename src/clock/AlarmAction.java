@@ -0,0 +1,162 @@
+package clock;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Something an alarm does when it fires, run by an {@link ActionRunner} instead of showing the usual message.
+ * Actions are immutable, so a recurring alarm runs the same action at every occurrence.
+ */
+abstract class AlarmAction {
+    static final long DEFAULT_TIMEOUT = 30 * 1000;
+
+    /**
+     * Kinds of action, counted separately by the runner.
+     */
+    enum Type {
+        CALLBACK, COMMAND, FILE_APPEND
+    }
+
+    private final Type type;
+    private final long timeoutInMilliseconds;
+
+    private AlarmAction(Type type, long timeoutInMilliseconds) {
+        if (timeoutInMilliseconds <= 0) {
+            throw new IllegalArgumentException("Timeout must be positive: " + timeoutInMilliseconds);
+        }
+
+        this.type = type;
+        this.timeoutInMilliseconds = timeoutInMilliseconds;
+    }
+
+    /**
+     * Returns an action calling back into the program.
+     * The callback is interrupted when it runs out of time, so it should stop when interrupted.
+     *
+     * @param callback Callback given the fired alarm.
+     * @param timeoutInMilliseconds How long the callback may run.
+     * @return The action.
+     */
+    static AlarmAction callback(Consumer<AlarmEvent> callback, long timeoutInMilliseconds) {
+        return new AlarmAction(Type.CALLBACK, timeoutInMilliseconds) {
+            @Override
+            void run(AlarmEvent event) {
+                callback.accept(event);
+            }
+        };
+    }
+
+    /**
+     * Returns an action running a local command, with the date of the alarm in milliseconds in the
+     * ALARM_DATE environment variable. The command is killed when it runs out of time, and fails
+     * when it exits with a status other than 0.
+     *
+     * @param command Program and its arguments.
+     * @param timeoutInMilliseconds How long the command may run.
+     * @return The action.
+     */
+    static AlarmAction command(List<String> command, long timeoutInMilliseconds) {
+        if (command.isEmpty()) {
+            throw new IllegalArgumentException("Empty command");
+        }
+
+        List<String> copy = List.copyOf(command);
+        return new AlarmAction(Type.COMMAND, timeoutInMilliseconds) {
+            @Override
+            void run(AlarmEvent event) throws IOException, InterruptedException {
+                ProcessBuilder builder = new ProcessBuilder(copy)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT);
+                builder.environment().put("ALARM_DATE", String.valueOf(event.getDateInMilliseconds()));
+
+                Process process = builder.start();
+                try {
+                    int status = process.waitFor();
+                    if (status != 0) {
+                        throw new IOException(copy.get(0) + " exited with status " + status);
+                    }
+                } finally {
+                    if (process.isAlive()) {
+                        process.destroyForcibly(); // interrupted by the timeout
+                    }
+                }
+            }
+
+            @Override
+            public String toString() {
+                return String.join(" ", copy);
+            }
+        };
+    }
+
+    /**
+     * Returns an action running a command line split at whitespace.
+     *
+     * @param commandLine Program and its arguments, separated by whitespace.
+     * @param timeoutInMilliseconds How long the command may run.
+     * @return The action.
+     */
+    static AlarmAction command(String commandLine, long timeoutInMilliseconds) {
+        String trimmed = commandLine.trim();
+        return command(trimmed.isEmpty() ? List.of() : Arrays.asList(trimmed.split("\\s+")), timeoutInMilliseconds);
+    }
+
+    /**
+     * Returns an action appending a line with the date and message of the alarm to a file, which is
+     * created if needed. Each line is written with a single append, so actions writing to the same
+     * file at once do not mix their lines.
+     *
+     * @param file File to append to.
+     * @param timeoutInMilliseconds How long the write may take.
+     * @return The action.
+     */
+    static AlarmAction appendToFile(Path file, long timeoutInMilliseconds) {
+        if (file.toString().isEmpty()) {
+            throw new IllegalArgumentException("Empty file name");
+        }
+
+        return new AlarmAction(Type.FILE_APPEND, timeoutInMilliseconds) {
+            @Override
+            void run(AlarmEvent event) throws IOException {
+                String date = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(event.getDateInMilliseconds()));
+                byte[] line = (date + " " + event.getMessage() + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+                Files.write(file, line, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+
+            @Override
+            public String toString() {
+                return "append to " + file;
+            }
+        };
+    }
+
+    Type getType() {
+        return type;
+    }
+
+    long getTimeout(TimeUnit unit) {
+        return unit.convert(timeoutInMilliseconds, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs the action for a fired alarm.
+     *
+     * @param event The fired alarm.
+     * @throws Exception Thrown when the action fails.
+     */
+    abstract void run(AlarmEvent event) throws Exception;
+
+    @Override
+    public String toString() {
+        return type.name().toLowerCase();
+    }
+}
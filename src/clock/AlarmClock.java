@@ -1,158 +1,429 @@
 package clock;
 
-import queuemanager.PriorityQueue;
-import queuemanager.QueueUnderflowException;
-import queuemanager.SortedLinkedPriorityQueue;
-
-import javax.swing.*;
-import javax.swing.filechooser.FileNameExtensionFilter;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.time.LocalDateTime;
+import java.io.Writer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
 import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.Scanner;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+import java.util.stream.LongStream;
 
 /**
  * Created by Aleksander Czarnowski on 19/04/2018
  *
- * Alarm Clock class contains all functionality related to managing the alarms.
+ * Alarm Clock class is the single alarm engine of the application, reached statically by the view,
+ * the HTTP server and the daemon. The alarms themselves are managed by an {@link AlarmEngine}, the same
+ * class the tenants of a ShardedAlarmScheduler use.
+ * It does not depend on Swing, so it can also run headless (see AlarmDaemon).
  */
 class AlarmClock {
-    static PriorityQueue priorityQueue = new SortedLinkedPriorityQueue();
-    private static SimpleDateFormat formatter = new SimpleDateFormat("yyyyMMdd'T'HHmmss");
+    // alarms read from an iCalendar file are queued this many at a time
+    static final int IMPORT_BATCH = AlarmEngine.IMPORT_BATCH;
+
+    private static final AlarmEngine engine = new AlarmEngine("clock");
+
+    /**
+     * Starts firing alarms: the scheduler waits for the due alarms and the dispatcher hands them to the listener.
+     * Alarms with an action run it on the action runner instead of being shown by the listener.
+     *
+     * @param listener Listener notified of the activated alarms.
+     */
+    static void start(AlarmListener listener) {
+        start(listener, AlarmDispatcher.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Starts firing alarms, with a given number of activated alarms that can wait for the listener.
+     *
+     * @param listener Listener notified of the activated alarms.
+     * @param capacity How many activated alarms can wait for the listener before they are dropped.
+     */
+    static void start(AlarmListener listener, int capacity) {
+        engine.start(listener, capacity);
+    }
+
+    /**
+     * Stops firing alarms. Alarms stay in the queue.
+     */
+    static void stop() {
+        engine.stop();
+    }
+
+    /**
+     * Recovers the alarms from the journal in a directory and records every later change of the queue in it.
+     * Alarms that became due while the program was not running are fired according to the missed alarm policy.
+     *
+     * @param directory Directory of the journal.
+     * @return Number of alarms recovered.
+     * @throws IOException Thrown when the journal cannot be read or written.
+     */
+    static int openJournal(Path directory) throws IOException {
+        return engine.openJournal(directory);
+    }
+
+    /**
+     * Writes the remaining journal records to disk and stops recording changes.
+     *
+     * @throws IOException Thrown when the journal could not be written.
+     */
+    static void closeJournal() throws IOException {
+        engine.closeJournal();
+    }
+
+    /**
+     * Returns whether changes of the queue are recorded in a journal.
+     *
+     * @return Whether a journal is open.
+     */
+    static boolean isJournalOpen() {
+        return engine.isJournalOpen();
+    }
+
+    /**
+     * Replaces the queue, dropping the alarms it held. Meant for tests and benchmarks, while the clock is stopped.
+     *
+     * @param store The new queue.
+     */
+    static void setStore(AlarmStore store) {
+        engine.setStore(store);
+    }
+
+    /**
+     * Returns the queue of the alarms.
+     *
+     * @return The store holding the alarms.
+     */
+    static AlarmStore getStore() {
+        return engine.getStore();
+    }
+
+    /**
+     * Sets the source of the current time. Must be called before the alarm clock is started.
+     *
+     * @param source Time source used for scheduling and for new alarms.
+     */
+    static void setTimeSource(TimeSource source) {
+        engine.setTimeSource(source);
+    }
+
+    /**
+     * Returns the source of the current time.
+     *
+     * @return Time source used for scheduling and for new alarms.
+     */
+    static TimeSource getTimeSource() {
+        return engine.getTimeSource();
+    }
+
+    /**
+     * Sets the time zone alarms are set and shown in.
+     *
+     * @param zone Time zone of the local times.
+     */
+    static void setZone(ZoneId zone) {
+        engine.setZone(zone);
+    }
+
+    /**
+     * Returns the time zone alarms are set and shown in.
+     *
+     * @return Time zone of the local times.
+     */
+    static ZoneId getZone() {
+        return engine.getZone();
+    }
 
     /**
-     * Checks the head of the queue to see if there are any alarms that need to be activated.
+     * Sets the scheduler that is woken whenever the head of the queue may have changed.
      *
-     * @throws QueueUnderflowException Thrown when queue is empty.
+     * @param alarmScheduler Scheduler waiting for the next alarm.
      */
-    static void checkAlarms(int currentHour, int currentMinute) throws QueueUnderflowException {
-        if (priorityQueue.isEmpty()) {
-            return;
-        }
+    static void setScheduler(AlarmScheduler alarmScheduler) {
+        engine.setScheduler(alarmScheduler);
+    }
 
-        long dateInMilliseconds = Long.parseLong(priorityQueue.head().toString());
-        int hour = millisecondsToHours(dateInMilliseconds);
-        int minute = millisecondsToMinutes(dateInMilliseconds);
+    /**
+     * Removes every alarm that is due at the given time from the queue and activates them in one batch.
+     * Activating an alarm only hands it to the dispatcher, which notifies the listeners on its own thread.
+     * Alarms overdue by more than the grace period are handled according to the missed alarm policy.
+     * Only one thread should check the alarms at a time.
+     *
+     * @param currentTime Current date in milliseconds.
+     * @return Alarms that were activated.
+     */
+    static List<AlarmEvent> checkAlarms(long currentTime) {
+        return engine.checkAlarms(currentTime);
+    }
 
-        // activates the alarm and removes it from the queue when the time is right
-        if (currentHour == hour && currentMinute == minute) {
-            priorityQueue.remove();
-            JOptionPane.showMessageDialog(null, "Alarm activated.",
-                    "Alarm Activated", JOptionPane.INFORMATION_MESSAGE);
-        }
+    /**
+     * Sets the dispatcher that delivers activated alarms to the listeners.
+     *
+     * @param alarmDispatcher Dispatcher of activated alarms.
+     */
+    static void setDispatcher(AlarmDispatcher alarmDispatcher) {
+        engine.setDispatcher(alarmDispatcher);
+    }
+
+    /**
+     * Sets the runner that runs the actions of activated alarms.
+     *
+     * @param runner Runner of alarm actions, or null to not run them.
+     */
+    static void setActionRunner(ActionRunner runner) {
+        engine.setActionRunner(runner);
+    }
+
+    /**
+     * Returns the runner of alarm actions, for its counters.
+     *
+     * @return The runner, or null when the alarm clock is not started.
+     */
+    static ActionRunner getActionRunner() {
+        return engine.getActionRunner();
+    }
+
+    /**
+     * Sets what happens to alarms that are overdue by more than the grace period.
+     *
+     * @param policy Missed alarm policy.
+     * @param graceInMilliseconds How late an alarm can be before it counts as missed.
+     */
+    static void setMissedAlarmPolicy(MissedAlarmPolicy policy, long graceInMilliseconds) {
+        engine.setMissedAlarmPolicy(policy, graceInMilliseconds);
     }
 
     /**
      * Generates the iCalendar file.
      */
     static String generateICalendar() {
-        Long[] priorities = priorityQueue.getPriorityArray();
+        return engine.generateICalendar();
+    }
 
-        StringBuilder content = new StringBuilder("BEGIN:VCALENDAR\r\n" +
-                "VERSION:2.0\r\n" +
-                "PRODID:Alarm Clock\r\n");
+    /**
+     * Writes the alarms as iCalendar content, event by event, so the content is never held in memory.
+     *
+     * @param out Writer the content is written to.
+     * @return Number of alarms written.
+     * @throws IOException Thrown when the content cannot be written.
+     */
+    static int writeICalendar(Writer out) throws IOException {
+        return engine.writeICalendar(out);
+    }
 
-        for (int i = 0; i < priorities.length; i++) {
-            Calendar calendar = Calendar.getInstance();
-            calendar.setTimeInMillis(priorities[i]);
-            String eventDate = formatter.format(calendar.getTime());
+    /**
+     * Saves the alarms to an iCalendar file.
+     *
+     * @param file File to save the alarms to.
+     * @throws IOException Thrown when the file cannot be written.
+     */
+    static void saveICalendar(Path file) throws IOException {
+        saveICalendar(file, null);
+    }
 
-            content.append("BEGIN:VEVENT\r\n" +
-                    "UID:" + i + "\r\n" +
-                    "DTSTAMP:" + getDatestamp() + "Z\r\n" +
-                    "DTSTART:" + eventDate + "Z\r\n" +
-                    "DTEND:" + eventDate + "Z\r\n" +
-                    "END:VEVENT\r\n");
-        }
+    /**
+     * Saves the alarms to an iCalendar file, reporting progress. Meant to run off the event dispatch thread;
+     * interrupting it cancels the save and leaves the previous file as it was.
+     *
+     * @param file File to save the alarms to.
+     * @param progress Receiver of the fraction of the alarms written so far, from 0 to 1, or null.
+     * @throws IOException Thrown when the file cannot be written.
+     * @throws java.io.InterruptedIOException Thrown when the save was cancelled.
+     */
+    static void saveICalendar(Path file, DoubleConsumer progress) throws IOException {
+        engine.saveICalendar(file, progress);
+    }
 
-        content.append("END:VCALENDAR");
+    /**
+     * Loads the alarms from an iCalendar file.
+     * Alarms from the past are not loaded to the priority queue, and queued alarms are never changed:
+     * see {@link #addAlarms(Alarm[])} for alarms whose ID is already queued.
+     *
+     * @param file File to load the alarms from.
+     * @return Number of alarms loaded.
+     * @throws IOException Thrown when the file cannot be read or is not a valid iCalendar file.
+     */
+    static int loadICalendar(Path file) throws IOException {
+        return loadICalendar(file, null);
+    }
 
-        return content.toString();
+    /**
+     * Loads the alarms from an iCalendar file, queueing them in batches while the file is read, so alarms
+     * keep firing and the clock keeps painting during a long load. Meant to run off the event dispatch thread;
+     * interrupting it cancels the load, keeping the alarms queued so far.
+     *
+     * @param file File to load the alarms from.
+     * @param progress Receiver of the fraction of the file read so far, from 0 to 1, or null.
+     * @return Number of alarms loaded.
+     * @throws IOException Thrown when the file cannot be read or is not a valid iCalendar file.
+     * @throws java.io.InterruptedIOException Thrown when the load was cancelled.
+     */
+    static int loadICalendar(Path file, DoubleConsumer progress) throws IOException {
+        return engine.loadICalendar(file, progress);
     }
 
     /**
-     * A dialogue box allowing users to save the iCalendar file to the disk.
+     * Loads the alarms from iCalendar content read from a channel, such as the body of a request,
+     * in the same way as from a file.
+     *
+     * @param channel Channel with the iCalendar content.
+     * @return Number of alarms loaded.
+     * @throws IOException Thrown when the channel cannot be read or the content is not valid.
      */
-    static void saveICalendar() {
-        String iCalendar = generateICalendar();
+    static int loadICalendar(ReadableByteChannel channel) throws IOException {
+        return engine.loadICalendar(channel);
+    }
 
-        JFileChooser chooser = new JFileChooser();
-        FileNameExtensionFilter filter = new FileNameExtensionFilter("iCalendar files", "ics");
-        chooser.setFileFilter(filter);
-        chooser.setSelectedFile(new File(getDatestamp() + ".ics"));
-        int retrieval = chooser.showSaveDialog(null);
-        if (retrieval == JFileChooser.APPROVE_OPTION) {
-            try (FileWriter fw = new FileWriter(chooser.getSelectedFile())) {
-                fw.write(iCalendar);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+    /**
+     * Saves the alarms to a binary snapshot file, which loads much faster than an iCalendar file.
+     *
+     * @param file File to save the alarms to.
+     * @throws IOException Thrown when the file cannot be written.
+     */
+    static void saveSnapshot(Path file) throws IOException {
+        engine.saveSnapshot(file);
     }
 
     /**
-     * A dialogue box allowing users to load the alarms from an iCalendar file.
-     * Alarms from the past are not loaded to the priority queue.
+     * Loads the alarms from a binary snapshot file.
+     * Alarms from the past are not loaded to the priority queue, except recurring ones, which are moved
+     * to their next occurrence.
+     *
+     * @param file File to load the alarms from.
+     * @return Number of alarms loaded.
+     * @throws IOException Thrown when the file cannot be read or is not a valid snapshot file.
      */
-    static void loadICalendar() {
-        JFileChooser chooser = new JFileChooser();
-        FileNameExtensionFilter filter = new FileNameExtensionFilter("iCalendar files", "ics");
-        chooser.setFileFilter(filter);
-        int retrieval = chooser.showOpenDialog(null);
-        try {
-            if (retrieval == JFileChooser.APPROVE_OPTION) {
-                Scanner scanner = new Scanner(chooser.getSelectedFile());
-                long datestamp = new Date().getTime();
+    static int loadSnapshot(Path file) throws IOException {
+        return engine.loadSnapshot(file);
+    }
 
-                while (scanner.hasNextLine()) {
-                    String line = scanner.next();
-                    if (line.startsWith("DTSTART:")) {
-                        Date date = formatter.parse(line.substring(8));
-                        long dateInMilliseconds = date.getTime();
+    /**
+     * Loads the alarms from a snapshot file or an iCalendar file, depending on its content.
+     *
+     * @param file File to load the alarms from.
+     * @return Number of alarms loaded.
+     * @throws IOException Thrown when the file cannot be read or is not valid.
+     */
+    static int loadAlarms(Path file) throws IOException {
+        return SnapshotFile.isSnapshot(file) ? loadSnapshot(file) : loadICalendar(file);
+    }
 
-                        if (dateInMilliseconds > datestamp) {
-                            addAlarm(dateInMilliseconds);
-                        }
-                    }
-                }
+    /**
+     * Adds an alarm to the queue.
+     *
+     * @param hour Hour of the alarm.
+     * @param minute Minute of the alarm.
+     * @return ID of the new alarm.
+     */
+    static long addAlarm(int hour, int minute) {
+        return addAlarm(hour, minute, null);
+    }
 
-                scanner.close();
-            }
-        } catch (FileNotFoundException e) {
-            JOptionPane.showMessageDialog(null, "Invalid file!", "Error", JOptionPane.ERROR_MESSAGE);
-        } catch (ParseException e) {
-            e.printStackTrace();
-        }
+    /**
+     * Adds an alarm that repeats by a rule, starting at the next time the clock shows the given time.
+     *
+     * @param hour Hour of the alarm.
+     * @param minute Minute of the alarm.
+     * @param recurrence Rule the alarm repeats by, or null for an alarm that goes off once.
+     * @return ID of the new alarm.
+     */
+    static long addAlarm(int hour, int minute, Recurrence recurrence) {
+        return addAlarm(hour, minute, recurrence, null);
     }
 
     /**
-     * Adds an alarm to the queue.
+     * Adds an alarm that runs an action, starting at the next time the clock shows the given time.
      *
      * @param hour Hour of the alarm.
      * @param minute Minute of the alarm.
+     * @param recurrence Rule the alarm repeats by, or null for an alarm that goes off once.
+     * @param action What the alarm does, or null to just show a message.
+     * @return ID of the new alarm.
      */
-    static void addAlarm(int hour, int minute) {
+    static long addAlarm(int hour, int minute, Recurrence recurrence, AlarmAction action) {
         long dateInMilliseconds = AlarmClock.getDateInMillisecondsForAlarm(hour, minute);
 
-        addAlarm(dateInMilliseconds);
+        return addAlarm(dateInMilliseconds, recurrence, action);
     }
 
     /**
      * Adds an alarm to the queue.
      *
      * @param dateInMilliseconds Date in milliseconds of the alarm.
+     * @return ID of the new alarm.
      */
-    static void addAlarm(long dateInMilliseconds) {
-        Alarm alarm = new Alarm(dateInMilliseconds);
-        priorityQueue.add(alarm, dateInMilliseconds);
+    static long addAlarm(long dateInMilliseconds) {
+        return addAlarm(dateInMilliseconds, null);
+    }
+
+    /**
+     * Adds an alarm that repeats by a rule. Only the first occurrence is queued; each following one
+     * is computed when the previous one goes off.
+     *
+     * @param dateInMilliseconds Date in milliseconds the alarm starts at.
+     * @param recurrence Rule the alarm repeats by, or null for an alarm that goes off once.
+     * @return ID of the new alarm.
+     */
+    static long addAlarm(long dateInMilliseconds, Recurrence recurrence) {
+        return addAlarm(dateInMilliseconds, recurrence, null);
+    }
+
+    /**
+     * Adds an alarm that runs an action when it fires, instead of showing a message.
+     * Actions live only in memory: they are not written to the journal or to saved files.
+     *
+     * @param dateInMilliseconds Date in milliseconds the alarm starts at.
+     * @param recurrence Rule the alarm repeats by, or null for an alarm that goes off once.
+     * @param action What the alarm does, or null to just show a message.
+     * @return ID of the new alarm.
+     */
+    static long addAlarm(long dateInMilliseconds, Recurrence recurrence, AlarmAction action) {
+        return engine.addAlarm(dateInMilliseconds, recurrence, action);
+    }
+
+    /**
+     * Adds a batch of alarms to the queue with a single heapify and a single change notification.
+     * The dates are sorted first, in parallel for large batches, and alarms at the same date are only
+     * added once; dates already queued are skipped, so adding the same batch again adds nothing.
+     * A sorted batch added to an empty queue is taken as a heap without moving anything.
+     *
+     * @param dates Dates in milliseconds of the alarms. The array is not changed.
+     * @return Number of alarms added, without the repeated and queued dates.
+     */
+    static int addAlarms(long[] dates) {
+        return engine.addAlarms(dates);
+    }
+
+    /**
+     * Adds a stream of alarm dates as one batch, like {@link #addAlarms(long[])}.
+     *
+     * @param dates Dates in milliseconds of the alarms.
+     * @return Number of alarms added, without the repeated and queued dates.
+     */
+    static int addAlarms(LongStream dates) {
+        return addAlarms(dates.toArray());
+    }
+
+    /**
+     * Adds a batch of alarms that already have IDs, such as alarms read from a file. An import never changes
+     * a queued alarm: an alarm whose ID is already queued at the same date is the same alarm loaded again and
+     * is skipped, while one whose ID is queued at another date, or taken earlier in the batch, is added as a
+     * new alarm with a new ID.
+     *
+     * @param batch Alarms to be added.
+     * @return Number of alarms added.
+     */
+    static int addAlarms(Alarm[] batch) {
+        return engine.addAlarms(batch);
+    }
+
+    /**
+     * Returns the event bus the queue changes are published on, shared with the clock's model.
+     *
+     * @return The event bus.
+     */
+    static ClockEventBus events() {
+        return engine.events();
     }
 
     /**
@@ -163,21 +434,7 @@ class AlarmClock {
      * @return Date in milliseconds for the alarm.
      */
     static long getDateInMillisecondsForAlarm(int hour, int minute) {
-        LocalDateTime currentDate = LocalDateTime.now();
-
-        // if the alarm date will be set in the past, add one day to the date
-        if (currentDate.getHour() >= hour && currentDate.getMinute() >= minute) {
-            currentDate = LocalDateTime.from(currentDate).plusDays(1);
-        }
-
-        DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy/MM/dd");
-        String formattedDate = dtf.format(currentDate);
-        String myDate = String.format("%s %02d:%02d:00", formattedDate, hour, minute);
-
-        return LocalDateTime.parse(myDate, DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss"))
-                .atZone(ZoneId.systemDefault())
-                .toInstant()
-                .toEpochMilli();
+        return engine.getDateInMillisecondsForAlarm(hour, minute);
     }
 
     /**
@@ -186,16 +443,30 @@ class AlarmClock {
      * @return Current datestamp in iCalendar format.
      */
     static String getDatestamp() {
-        return formatter.format(new Date());
+        return engine.getDatestamp();
+    }
+
+    /**
+     * Returns the earliest alarms within a range of dates. Cheaper than a snapshot right after the queue
+     * changed, since only the alarms returned are sorted.
+     *
+     * @param from Earliest date in milliseconds, inclusive.
+     * @param to Latest date in milliseconds, inclusive.
+     * @param limit Most alarms to return.
+     * @return Sorted snapshot of the alarms in the range.
+     */
+    static QueueSnapshot range(long from, long to, int limit) {
+        return engine.range(from, to, limit);
     }
 
     /**
-     * Returns a priority array from the queue.
+     * Returns a read-only snapshot of the queue, sorted from the earliest alarm.
+     * The snapshot is shared and only rebuilt after the queue changes.
      *
-     * @return A priority array from the queue.
+     * @return A snapshot of the queue.
      */
-    static Long[] getPriorityArray() {
-        return priorityQueue.getPriorityArray();
+    static QueueSnapshot snapshot() {
+        return engine.snapshot();
     }
 
     /**
@@ -204,49 +475,86 @@ class AlarmClock {
      * @return A result of the check.
      */
     static boolean isEmpty() {
-        return priorityQueue.isEmpty();
+        return engine.isEmpty();
+    }
+
+    /**
+     * Returns the number of queued alarms.
+     *
+     * @return Size of the queue.
+     */
+    static int size() {
+        return engine.size();
     }
 
     /**
-     * Returns a head of the queue.
+     * Returns the date of the head of the queue without allocating.
      *
-     * @return A head of the queue.
-     * @throws QueueUnderflowException Thrown when queue is empty.
+     * @return Date in milliseconds of the next alarm, or AlarmStore.NONE when the queue is empty.
      */
-    static String getHead() throws QueueUnderflowException {
-        if (isEmpty()) {
-            return "0";
-        }
+    static long headMillis() {
+        return engine.headMillis();
+    }
 
-        return priorityQueue.head().toString();
+    /**
+     * Returns the date of a queued alarm.
+     *
+     * @param id ID of the alarm.
+     * @return Date in milliseconds of the alarm, or AlarmStore.NONE when it is not queued.
+     */
+    static long dateOf(long id) {
+        return engine.dateOf(id);
     }
 
     /**
-     * Removes item from selected position from the queue.
+     * Removes an alarm from the queue.
+     *
+     * @param id ID of the alarm.
+     * @return Whether the alarm was removed; false when it already fired or was removed.
      */
-    static void remove(int position) throws QueueUnderflowException {
-        priorityQueue.remove(position);
+    static boolean cancel(long id) {
+        return engine.cancel(id);
     }
 
     /**
-     * Converts date in milliseconds to hours.
+     * Moves an alarm to another date, keeping its ID. A recurring alarm then recurs from the new date,
+     * at its time of day.
+     *
+     * @param id ID of the alarm.
+     * @param dateInMilliseconds New date in milliseconds.
+     * @return Whether the alarm was moved; false when it already fired or was removed.
+     */
+    static boolean reschedule(long id, long dateInMilliseconds) {
+        return engine.reschedule(id, dateInMilliseconds);
+    }
+
+    /**
+     * Converts date in milliseconds to the local hour. Does not allocate.
      *
      * @param dateInMilliseconds A date in milliseconds.
      * @return Hours.
      */
     static int millisecondsToHours(long dateInMilliseconds) {
-        int hours = (int) (dateInMilliseconds / (1000 * 60 * 60)) % 24 + 1;
-
-        return (hours == 24) ? 0 : hours;
+        return engine.millisecondsToHours(dateInMilliseconds);
     }
 
     /**
-     * Converts date in milliseconds to minutes.
+     * Converts date in milliseconds to the local minute. Does not allocate.
      *
      * @param dateInMilliseconds A date in milliseconds.
      * @return Minutes.
      */
     static int millisecondsToMinutes(long dateInMilliseconds) {
-        return (int) (dateInMilliseconds / (1000 * 60)) % 60;
+        return engine.millisecondsToMinutes(dateInMilliseconds);
+    }
+
+    /**
+     * Converts date in milliseconds to the local second. Does not allocate.
+     *
+     * @param dateInMilliseconds A date in milliseconds.
+     * @return Seconds.
+     */
+    static int millisecondsToSeconds(long dateInMilliseconds) {
+        return engine.millisecondsToSeconds(dateInMilliseconds);
     }
 }
@@ -3,9 +3,24 @@ package clock;
 import org.junit.Before;
 import org.junit.Test;
 import queuemanager.QueueUnderflowException;
-import queuemanager.SortedLinkedPriorityQueue;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Created by Aleksander Czarnowski on 20/05/2018
@@ -16,24 +31,23 @@ import static org.junit.Assert.assertEquals;
 public class AlarmClockTest {
     @Before
     public void setUp() {
-        AlarmClock.priorityQueue = new SortedLinkedPriorityQueue<>();
+        AlarmClock.setStore(new StripedAlarmStore());
+        AlarmClock.setMissedAlarmPolicy(MissedAlarmPolicy.FIRE_LATE, 60 * 1000);
+        AlarmClock.setTimeSource(TimeSource.SYSTEM);
+        AlarmClock.setZone(ZoneId.systemDefault());
     }
 
     /**
      * Test for checkAlarms method.
-     * Should remove the head of the queue which will throw an exception.
-     *
-     * @throws QueueUnderflowException Thrown when queue is empty.
+     * Should remove the head of the queue, leaving it empty.
      */
-    @Test(expected = QueueUnderflowException.class)
-    public void checkAlarms_WhenTimeIsCorrect_ShouldThrowException() throws QueueUnderflowException {
-        Alarm alarm = new Alarm(1526832268854L);
-        AlarmClock.priorityQueue.add(alarm, 1526832268854L);
+    @Test
+    public void checkAlarms_WhenTimeIsCorrect_ShouldRemoveAlarmFromQueue() {
+        AlarmClock.addAlarm(1526832268854L);
 
-        // 1526831164033L equals 17:04
+        AlarmClock.checkAlarms(1526832268854L);
 
-        AlarmClock.checkAlarms(17, 4);
-        AlarmClock.priorityQueue.head();
+        assertTrue(AlarmClock.isEmpty());
     }
 
     /**
@@ -42,12 +56,158 @@ public class AlarmClockTest {
      */
     @Test
     public void checkAlarms_WhenTimeIsIncorrect_ShouldNotRemoveAlarmFromQueueHead() throws QueueUnderflowException {
-        Alarm alarm = new Alarm(1526832268854L);
-        AlarmClock.priorityQueue.add(alarm, 1526832268854L);
+        AlarmClock.addAlarm(1526832268854L);
 
-        AlarmClock.checkAlarms(17, 3);
+        AlarmClock.checkAlarms(1526832268854L - 60 * 1000);
 
-        assertEquals("1526832268854", AlarmClock.priorityQueue.head().toString());
+        assertEquals(1526832268854L, AlarmClock.headMillis());
+    }
+
+    /**
+     * Test for checkAlarms method.
+     * With the drop policy, alarms missed by more than the grace period should be removed without firing.
+     */
+    @Test
+    public void checkAlarms_WhenAlarmsMissedAndPolicyIsDrop_ShouldRemoveThemWithoutFiring()
+            throws QueueUnderflowException {
+        AlarmClock.setMissedAlarmPolicy(MissedAlarmPolicy.DROP, 60 * 1000);
+        AlarmClock.addAlarm(1526832268854L);
+        AlarmClock.addAlarm(1526832328854L);
+        AlarmClock.addAlarm(1526839468854L);
+
+        List<AlarmEvent> fired = AlarmClock.checkAlarms(1526839468854L - 60 * 60 * 1000);
+
+        assertEquals(0, fired.size());
+        assertEquals(1526839468854L, AlarmClock.headMillis());
+    }
+
+    /**
+     * Test for checkAlarms method.
+     * A recurring alarm should fire once and go back in the queue at its next occurrence.
+     */
+    @Test
+    public void checkAlarms_WhenAlarmRecurs_ShouldQueueNextOccurrence() {
+        long id = AlarmClock.addAlarm(1526832268000L, Recurrence.DAILY);
+
+        List<AlarmEvent> fired = AlarmClock.checkAlarms(1526832268000L);
+
+        assertEquals(1, fired.size());
+        assertEquals(1526832268000L + 24 * 60 * 60 * 1000, AlarmClock.headMillis());
+        assertEquals(AlarmClock.headMillis(), AlarmClock.dateOf(id));
+    }
+
+    /**
+     * Test for checkAlarms method.
+     * A missed alarm with an action should run it even when missed alarms are coalesced.
+     */
+    @Test
+    public void checkAlarms_WhenMissedAlarmHasAction_ShouldRunIt() throws InterruptedException {
+        CountDownLatch ran = new CountDownLatch(2);
+        AlarmAction action = AlarmAction.callback(event -> ran.countDown(), AlarmAction.DEFAULT_TIMEOUT);
+        ActionRunner runner = new ActionRunner();
+        AlarmClock.setActionRunner(runner);
+        AlarmClock.setMissedAlarmPolicy(MissedAlarmPolicy.COALESCE, 60 * 1000);
+        try {
+            AlarmClock.addAlarm(1526832268000L, null, action);
+            AlarmClock.addAlarm(1526832269000L, null, action);
+            AlarmClock.addAlarm(1526832270000L);
+
+            List<AlarmEvent> fired = AlarmClock.checkAlarms(1526832268000L + 60 * 60 * 1000);
+
+            assertEquals(3, fired.size());
+            assertTrue(ran.await(5, TimeUnit.SECONDS));
+        } finally {
+            AlarmClock.setActionRunner(null);
+            runner.shutdown();
+        }
+    }
+
+    /**
+     * Test for addAlarm method.
+     * An alarm added while another thread cancels the last alarm should still fire, even when the
+     * cancelling thread wakes the scheduler after the adding one.
+     */
+    @Test
+    public void addAlarm_WhenAddedWhileLastAlarmCancelled_ShouldStillFire() throws InterruptedException {
+        long far = AlarmClock.addAlarm(System.currentTimeMillis() + 60 * 60 * 1000);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        CountDownLatch added = new CountDownLatch(1);
+        Thread canceller = new Thread(() -> AlarmClock.cancel(far));
+        AlarmStore store = AlarmClock.getStore();
+        AlarmClock.setStore(new StripedAlarmStore() {
+            @Override
+            public long headMillis() {
+                long head = store.headMillis();
+                if (Thread.currentThread() == canceller) {
+                    try {
+                        added.await(1, TimeUnit.SECONDS); // the empty head is only used after the add
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return head;
+            }
+
+            @Override
+            public void add(Alarm alarm) {
+                store.add(alarm);
+            }
+
+            @Override
+            public Alarm pollDue(long currentTime) {
+                return store.pollDue(currentTime);
+            }
+
+            @Override
+            public boolean cancel(long id) {
+                boolean removed = store.cancel(id);
+                cancelled.countDown();
+                return removed;
+            }
+        });
+        CountDownLatch fired = new CountDownLatch(1);
+        AlarmClock.start(events -> fired.countDown());
+        try {
+            canceller.start();
+            assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+            AlarmClock.addAlarm(System.currentTimeMillis() + 10);
+            added.countDown();
+            canceller.join();
+
+            assertTrue(fired.await(5, TimeUnit.SECONDS));
+        } finally {
+            AlarmClock.stop();
+        }
+    }
+
+    /**
+     * Test for loadICalendar method.
+     * A large file should be queued in several batches while it is read, with progress reaching the end.
+     */
+    @Test
+    public void loadICalendar_WhenFileLarge_ShouldQueueAlarmsInBatches() throws IOException {
+        AlarmStore source = new StripedAlarmStore();
+        for (int i = 0; i < 3 * AlarmClock.IMPORT_BATCH; i++) {
+            source.add(new Alarm(4102444800000L + i * 60000L));
+        }
+        Path file = Files.createTempFile("alarms", ".ics");
+        AtomicInteger queueChanges = new AtomicInteger();
+        ClockEventBus.Subscription subscription = AlarmClock.events().subscribe(
+                ClockEventBus.Topic.QUEUE_CHANGED, Runnable::run, version -> queueChanges.incrementAndGet());
+        double[] progress = new double[1];
+
+        try {
+            ICalendarWriter.writeFile(file, source);
+
+            assertEquals(3 * AlarmClock.IMPORT_BATCH, AlarmClock.loadICalendar(file, fraction -> progress[0] = fraction));
+        } finally {
+            subscription.cancel();
+            Files.delete(file);
+        }
+
+        assertEquals(3 * AlarmClock.IMPORT_BATCH, AlarmClock.snapshot().size());
+        assertEquals(3, queueChanges.get());
+        assertEquals(1.0, progress[0], 0);
     }
 
     /**
@@ -56,14 +216,13 @@ public class AlarmClockTest {
      */
     @Test
     public void generateICalendar_WhenOneAlarm_ShouldReturnICalendarFile() {
-        Alarm alarm = new Alarm(1526832268854L);
-        AlarmClock.priorityQueue.add(alarm, 1526832268854L);
+        long id = AlarmClock.addAlarm(1526832268854L);
 
         String iCalendarFile = "BEGIN:VCALENDAR\r\n" +
                 "VERSION:2.0\r\n" +
                 "PRODID:Alarm Clock\r\n" +
                 "BEGIN:VEVENT\r\n" +
-                "UID:0\r\n" +
+                "UID:" + id + "\r\n" +
                 "DTSTAMP:" + AlarmClock.getDatestamp() + "Z\r\n" +
                 "DTSTART:20180520T170428Z\r\n" +
                 "DTEND:20180520T170428Z\r\n" +
@@ -73,13 +232,200 @@ public class AlarmClockTest {
         assertEquals(iCalendarFile, AlarmClock.generateICalendar());
     }
 
+    /**
+     * Test for generateICalendar and loadICalendar methods.
+     * Dates and rules should be written and read back as local time of the zone set on the clock.
+     */
+    @Test
+    public void generateICalendar_WhenZoneSet_ShouldUseItsLocalTime() throws IOException {
+        AlarmClock.setZone(ZoneId.of("Asia/Tokyo"));
+        long date = 1526832268000L; // 2018-05-21 01:04:28 in Tokyo
+        AlarmClock.setTimeSource(() -> date - 1000);
+        AlarmClock.addAlarm(date, Recurrence.parse("FREQ=DAILY;UNTIL=20180601T010428Z", date, AlarmClock.getZone()));
+        String file = AlarmClock.generateICalendar();
+
+        AlarmClock.setStore(new StripedAlarmStore());
+        AlarmClock.loadICalendar(Channels.newChannel(new ByteArrayInputStream(file.getBytes())));
+
+        assertTrue(file.contains("DTSTART:20180521T010428Z\r\n"));
+        assertTrue(file.contains("RRULE:FREQ=DAILY;UNTIL=20180601T010428Z\r\n"));
+        assertEquals(date, AlarmClock.headMillis());
+        assertEquals(Recurrence.parse("FREQ=DAILY;UNTIL=20180601T010428Z", date, AlarmClock.getZone()),
+                AlarmClock.snapshot().recurrence(0));
+    }
+
+    /**
+     * Test for addAlarms method.
+     * Alarms read from an iCalendar file should be added to the queue in one batch, keeping their IDs.
+     */
+    @Test
+    public void addAlarms_WhenICalendarLoaded_ShouldAddAllAlarms() throws IOException {
+        long id = AlarmClock.addAlarm(1526832268854L);
+        byte[] file = AlarmClock.generateICalendar().getBytes();
+
+        AlarmClock.setStore(new StripedAlarmStore());
+        AlarmClock.addAlarm(1526839468854L);
+        AlarmClock.addAlarms(new ICalendarReader().read(Channels.newChannel(new ByteArrayInputStream(file)), 0));
+
+        assertEquals(2, AlarmClock.size());
+        assertEquals(1526832268000L, AlarmClock.dateOf(id));
+        assertEquals(1526832268000L, AlarmClock.headMillis());
+    }
+
+    /**
+     * Test for addAlarms method.
+     * Loading a file whose IDs are queued at other dates should add its alarms as new ones, leaving the queued
+     * alarms where they are.
+     */
+    @Test
+    public void addAlarms_WhenIdQueuedAtOtherDate_ShouldAddNewAlarm() throws IOException {
+        long id = AlarmClock.addAlarm(1526832268854L, Recurrence.parse("FREQ=DAILY", 1526832268854L, ZoneId.systemDefault()));
+        byte[] file = AlarmClock.generateICalendar().getBytes();
+        AlarmClock.reschedule(id, 1526839468854L);
+
+        int added = AlarmClock.addAlarms(new ICalendarReader().read(Channels.newChannel(new ByteArrayInputStream(file)), 0));
+
+        assertEquals(1, added);
+        assertEquals(2, AlarmClock.size());
+        assertEquals(1526839468854L, AlarmClock.dateOf(id));
+        assertEquals(1526832268000L, AlarmClock.headMillis());
+        assertEquals("FREQ=DAILY", AlarmClock.snapshot().recurrence(0).toString());
+    }
+
+    /**
+     * Test for addAlarms method.
+     * Loading the same file twice should skip the alarms that are already queued.
+     */
+    @Test
+    public void addAlarms_WhenSameFileLoadedTwice_ShouldSkipQueuedAlarms() throws IOException {
+        AlarmClock.addAlarm(1526832268000L);
+        AlarmClock.addAlarm(1526839468000L);
+        byte[] file = AlarmClock.generateICalendar().getBytes();
+
+        int added = AlarmClock.addAlarms(new ICalendarReader().read(Channels.newChannel(new ByteArrayInputStream(file)), 0));
+
+        assertEquals(0, added);
+        assertEquals(2, AlarmClock.size());
+    }
+
+    /**
+     * Test for addAlarms method.
+     * Adding the same batch of dates again, as a rerun provisioning script does, should add nothing.
+     */
+    @Test
+    public void addAlarms_WhenSameBatchAddedTwice_ShouldSkipQueuedDates() {
+        long[] dates = {1526839468000L, 1526832268000L, 1526836000000L, 1526832268000L};
+
+        assertEquals(3, AlarmClock.addAlarms(dates));
+        assertEquals(0, AlarmClock.addAlarms(dates));
+        assertEquals(1, AlarmClock.addAlarms(new long[]{1526836000000L, 1526836000001L}));
+
+        assertEquals(4, AlarmClock.size());
+    }
+
+    /**
+     * Test for addAlarms method.
+     * A batch of dates should be added in date order, with each repeated date added once.
+     */
+    @Test
+    public void addAlarms_WhenDatesRepeated_ShouldAddEachOnce() {
+        AlarmClock.addAlarm(1526832268000L);
+
+        int added = AlarmClock.addAlarms(LongStream.of(1526839468000L, 1526832328000L, 1526839468000L));
+
+        assertEquals(2, added);
+        assertArrayEquals(new long[]{1526832268000L, 1526832328000L, 1526839468000L},
+                AlarmClock.snapshot().toArray());
+    }
+
+    /**
+     * Test for cancel and reschedule methods.
+     * Alarms should be found by ID wherever they are in the queue, and not after they fired.
+     */
+    @Test
+    public void reschedule_WhenIdGiven_ShouldMoveThatAlarm() {
+        long first = AlarmClock.addAlarm(1526832268854L);
+        long second = AlarmClock.addAlarm(1526832328854L);
+        long third = AlarmClock.addAlarm(1526839468854L);
+
+        assertTrue(AlarmClock.reschedule(third, 1526832000000L));
+        assertEquals(1526832000000L, AlarmClock.headMillis());
+        assertTrue(AlarmClock.cancel(second));
+        assertFalse(AlarmClock.cancel(second));
+
+        AlarmClock.checkAlarms(1526832000000L);
+
+        assertFalse(AlarmClock.reschedule(third, 1526839468854L));
+        assertEquals(AlarmStore.NONE, AlarmClock.dateOf(third));
+        assertEquals(1526832268854L, AlarmClock.dateOf(first));
+        assertEquals(1, AlarmClock.size());
+    }
+
+    /**
+     * Test for reschedule method.
+     * A daily alarm moved to another time should keep recurring every day at the new time.
+     */
+    @Test
+    public void reschedule_WhenDailyAlarmMoved_ShouldRecurAtNewTime() {
+        ZoneId zone = ZoneId.of("Europe/London");
+        AlarmClock.setZone(zone);
+        long start = LocalDateTime.of(2018, 5, 20, 16, 0).atZone(zone).toInstant().toEpochMilli();
+        long moved = LocalDateTime.of(2018, 5, 21, 7, 30).atZone(zone).toInstant().toEpochMilli();
+        long id = AlarmClock.addAlarm(start, Recurrence.DAILY);
+
+        assertTrue(AlarmClock.reschedule(id, moved));
+        AlarmClock.checkAlarms(moved);
+        long next = AlarmClock.dateOf(id);
+        AlarmClock.checkAlarms(next);
+
+        assertEquals(LocalDateTime.of(2018, 5, 22, 7, 30).atZone(zone).toInstant().toEpochMilli(), next);
+        assertEquals(LocalDateTime.of(2018, 5, 23, 7, 30).atZone(zone).toInstant().toEpochMilli(),
+                AlarmClock.dateOf(id));
+    }
+
+    /**
+     * Test for getDateInMillisecondsForAlarm method.
+     * An alarm for a time later today should be set for today, an earlier time for tomorrow.
+     */
+    @Test
+    public void getDateInMillisecondsForAlarm_WhenTimeSourceFixed_ShouldUseItsDate() {
+        ZoneId zone = ZoneId.systemDefault();
+        AlarmClock.setTimeSource(() -> LocalDateTime.of(2018, 5, 20, 17, 4, 28).atZone(zone).toInstant().toEpochMilli());
+
+        assertEquals(LocalDateTime.of(2018, 5, 20, 18, 30).atZone(zone).toInstant().toEpochMilli(),
+                AlarmClock.getDateInMillisecondsForAlarm(18, 30));
+        assertEquals(LocalDateTime.of(2018, 5, 21, 17, 4).atZone(zone).toInstant().toEpochMilli(),
+                AlarmClock.getDateInMillisecondsForAlarm(17, 4));
+    }
+
+    /**
+     * Test for saveICalendar method.
+     * The file should be stamped with the date of the time source, not of the system clock.
+     */
+    @Test
+    public void saveICalendar_WhenTimeSourceFixed_ShouldStampFileWithItsDate() throws IOException {
+        AlarmClock.setTimeSource(() -> 1526832268000L);
+        AlarmClock.addAlarm(1526839468000L);
+        Path file = Files.createTempFile("alarms", ".ics");
+        try {
+            AlarmClock.saveICalendar(file);
+
+            assertTrue(Files.readString(file).contains("DTSTAMP:" + ICalendarWriter.format(1526832268000L, ZoneId.systemDefault()) + "Z\r\n"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
     /**
      * Test for millisecondsToHours method.
-     * Should return hours from a date in milliseconds.
+     * Should return local hours from a date in milliseconds, in summer and in winter time.
      */
     @Test
     public void millisecondsToHours(){
+        AlarmClock.setZone(ZoneId.of("Europe/London"));
+
         assertEquals(17, AlarmClock.millisecondsToHours(1526832268854L));
+        assertEquals(17, AlarmClock.millisecondsToHours(1516467600000L));
     }
 
     /**
@@ -88,6 +434,8 @@ public class AlarmClockTest {
      */
     @Test
     public void millisecondsToMinutes() {
+        AlarmClock.setZone(ZoneId.of("Europe/London"));
+
         assertEquals(4, AlarmClock.millisecondsToMinutes(1526832268854L));
     }
 
@@ -0,0 +1,111 @@
+package clock;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Headless entry point of the alarm clock.
+ * Loads the iCalendar or snapshot files given as arguments and prints every activated alarm to standard output.
+ * With --journal, the alarms are also recovered from and recorded in a journal directory, so they
+ * survive restarts. With --http, they can be managed over HTTP on a port of the loopback address (see ControlServer).
+ * Neither AWT nor Swing is loaded, so it starts quickly and can run on servers without a display.
+ *
+ * Usage: java -cp Clock.jar clock.AlarmDaemon [--missed=fire-late|coalesce|drop] [--journal=directory] [--http=port] [file.ics|file.alarms...]
+ */
+public class AlarmDaemon {
+
+    public static void main(String[] args) throws InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        if (Boolean.parseBoolean(System.getProperty("clock.metrics", "true"))) {
+            ClockMetrics.register();
+        }
+
+        List<Path> files = new ArrayList<>();
+        Path journalDirectory = null;
+        int httpPort = -1;
+        for (String arg : args) {
+            if (arg.startsWith("--http=")) {
+                httpPort = Integer.parseInt(arg.substring("--http=".length()));
+            } else if (arg.startsWith("--journal=")) {
+                journalDirectory = Paths.get(arg.substring("--journal=".length()));
+            } else if (arg.startsWith("--missed=")) {
+                String policy = arg.substring("--missed=".length()).toUpperCase().replace('-', '_');
+                AlarmClock.setMissedAlarmPolicy(MissedAlarmPolicy.valueOf(policy), 60 * 1000);
+            } else {
+                files.add(Paths.get(arg));
+            }
+        }
+
+        if (journalDirectory != null) {
+            try {
+                int count = AlarmClock.openJournal(journalDirectory);
+                System.err.println("Recovered " + count + " alarms from " + journalDirectory);
+            } catch (IOException e) {
+                System.err.println("Could not open the journal in " + journalDirectory + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        if (!start(files, new LogAlarmListener(System.out))) {
+            System.exit(1);
+        }
+
+        ControlServer server = null;
+        if (httpPort >= 0) {
+            try {
+                server = new ControlServer(httpPort);
+                server.start();
+                System.err.println("Listening on http://localhost:" + server.getPort() + " with token " + server.getToken());
+            } catch (IOException e) {
+                System.err.println("Could not listen on port " + httpPort + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        ControlServer startedServer = server;
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (startedServer != null) {
+                startedServer.stop();
+            }
+            AlarmClock.stop();
+            try {
+                AlarmClock.closeJournal();
+            } catch (IOException e) {
+                System.err.println("Could not write the journal: " + e.getMessage());
+            }
+            stopped.countDown();
+        }));
+        stopped.await();
+    }
+
+    /**
+     * Loads the alarms from the files and starts firing them.
+     * Can be used to embed the alarm clock, with any callback as the listener.
+     *
+     * @param files iCalendar or snapshot files to load the alarms from.
+     * @param listener Listener notified of the activated alarms.
+     * @return Whether every file was loaded.
+     */
+    static boolean start(List<Path> files, AlarmListener listener) {
+        boolean loaded = true;
+
+        for (Path file : files) {
+            try {
+                int count = AlarmClock.loadAlarms(file);
+                System.err.println("Loaded " + count + " alarms from " + file);
+            } catch (IOException e) {
+                System.err.println("Could not load " + file + ": " + e.getMessage());
+                loaded = false;
+            }
+        }
+
+        AlarmClock.start(listener);
+
+        return loaded;
+    }
+}
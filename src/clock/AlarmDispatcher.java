@@ -0,0 +1,124 @@
+package clock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers fired alarms to the listeners on its own thread.
+ * Publishing an alarm only puts it on a bounded queue, so firing never waits for a listener
+ * such as a modal dialog. Alarms published within a short window are delivered together as one batch.
+ */
+class AlarmDispatcher implements Runnable {
+    static final int DEFAULT_CAPACITY = 1024;
+    private static final long COALESCE_WINDOW = 50;
+
+    private final BlockingQueue<AlarmEvent> events;
+    private final List<AlarmListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread thread;
+
+    AlarmDispatcher() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    AlarmDispatcher(int capacity) {
+        events = new ArrayBlockingQueue<>(capacity);
+        thread = new Thread(this, "Alarm dispatcher");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts the dispatcher thread.
+     */
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Stops the dispatcher thread. Alarms still waiting on the queue are not delivered.
+     */
+    void stop() {
+        thread.interrupt();
+    }
+
+    void addListener(AlarmListener listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(AlarmListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Queues a fired alarm for delivery without blocking.
+     * If the queue is full the alarm is not delivered and is counted as dropped.
+     *
+     * @param event Fired alarm.
+     * @return Whether the alarm was queued.
+     */
+    boolean publish(AlarmEvent event) {
+        if (events.offer(event)) {
+            return true;
+        }
+
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Returns the number of alarms that were not delivered because the queue was full.
+     *
+     * @return Number of dropped alarms.
+     */
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public void run() {
+        List<AlarmEvent> batch = new ArrayList<>();
+
+        try {
+            while (true) {
+                batch.add(events.take());
+
+                // collects the rest of the burst, so simultaneous alarms make a single notification
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(COALESCE_WINDOW);
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    AlarmEvent event = events.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (event == null) {
+                        break;
+                    }
+                    batch.add(event);
+                    events.drainTo(batch);
+                }
+
+                deliver(new ArrayList<>(batch));
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Passes a batch to every listener. A failing listener does not stop the others.
+     *
+     * @param batch Alarms to deliver.
+     */
+    private void deliver(List<AlarmEvent> batch) {
+        for (AlarmListener listener : listeners) {
+            try {
+                listener.alarmsFired(batch);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package clock;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for AlarmDispatcher class.
+ */
+public class AlarmDispatcherTest {
+
+    /**
+     * Test for publish method.
+     * Alarms published together should reach the listener as one batch.
+     */
+    @Test
+    public void publish_WhenBurstOfAlarms_ShouldDeliverOneBatch() throws InterruptedException {
+        AlarmDispatcher dispatcher = new AlarmDispatcher();
+        List<List<AlarmEvent>> batches = new CopyOnWriteArrayList<>();
+        CountDownLatch delivered = new CountDownLatch(1);
+        dispatcher.addListener(events -> {
+            batches.add(events);
+            delivered.countDown();
+        });
+        dispatcher.start();
+
+        for (int i = 0; i < 3; i++) {
+            dispatcher.publish(new AlarmEvent(1526832268854L, 1526832268854L, 1));
+        }
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        dispatcher.stop();
+        assertEquals(1, batches.size());
+        assertEquals(3, batches.get(0).size());
+    }
+
+    /**
+     * Test for publish method.
+     * Should not block and should count the alarm as dropped when the queue is full.
+     */
+    @Test
+    public void publish_WhenQueueIsFull_ShouldDropAlarm() {
+        AlarmDispatcher dispatcher = new AlarmDispatcher(1);
+
+        assertTrue(dispatcher.publish(new AlarmEvent(0, 0, 1)));
+        assertFalse(dispatcher.publish(new AlarmEvent(0, 0, 1)));
+        assertEquals(1, dispatcher.getDroppedCount());
+    }
+}
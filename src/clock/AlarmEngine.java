@@ -0,0 +1,887 @@
+package clock;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+
+/**
+ * The alarms of one clock: its queue, the rules the alarms recur by, what happens to missed alarms,
+ * the actions they run and the journal their changes are recorded in.
+ * {@link AlarmClock} is the engine of the desktop application and the daemon, fired by its own
+ * {@link AlarmScheduler}. Any number of other engines, one per tenant, can be created by a
+ * {@link ShardedAlarmScheduler}, which keeps track of only the next alarm of each, so a shard thread
+ * serves thousands of engines.
+ */
+final class AlarmEngine {
+    // below this many dates a batch is sorted on the calling thread
+    private static final int PARALLEL_SORT_THRESHOLD = 1 << 13;
+    // alarms read from an iCalendar file are queued this many at a time
+    static final int IMPORT_BATCH = 4096;
+
+    private final String name;
+    private final AlarmListener listener;
+    private final ShardedAlarmScheduler.Shard shard;
+    private final ClockEventBus events = new ClockEventBus();
+    private final Object importLock = new Object();
+
+    private volatile AlarmStore alarms;
+    private volatile AlarmScheduler scheduler;
+    private volatile AlarmDispatcher dispatcher;
+    private volatile ActionRunner actionRunner;
+    private volatile MissedAlarmPolicy missedAlarmPolicy = MissedAlarmPolicy.FIRE_LATE;
+    private volatile long missedAlarmGrace = 60 * 1000;
+    private volatile TimeSource timeSource = TimeSource.SYSTEM;
+    private volatile LocalTimeConverter localTime = new LocalTimeConverter(ZoneId.systemDefault());
+    private volatile AlarmJournal journal;
+    // only the engine behind AlarmClock records into ClockMetrics, whose queue depth is that engine's;
+    // tenants would mix their adds, removes and lateness into it
+    private final boolean recordsMetrics;
+
+    // slot of the engine in its shard's heap, or -1 while it is being fired; only changed under the shard's lock
+    int slot = -1;
+
+    /**
+     * Creates an engine fired by its own scheduler once it is started.
+     *
+     * @param name Name of the engine.
+     */
+    AlarmEngine(String name) {
+        this(name, new StripedAlarmStore(), null, null);
+    }
+
+    /**
+     * Created by {@link ShardedAlarmScheduler#createEngine(String, AlarmListener)}.
+     *
+     * @param name Name of the tenant.
+     * @param listener Listener notified of the fired alarms, on the thread of the shard.
+     * @param shard Shard the engine belongs to.
+     */
+    AlarmEngine(String name, AlarmListener listener, ShardedAlarmScheduler.Shard shard) {
+        // a tenant has few alarms, which a single lock serves with less memory than stripes
+        this(name, new SynchronizedAlarmStore(), listener, shard);
+    }
+
+    private AlarmEngine(String name, AlarmStore store, AlarmListener listener, ShardedAlarmScheduler.Shard shard) {
+        this.name = name;
+        this.alarms = store;
+        this.listener = listener;
+        this.shard = shard;
+        this.recordsMetrics = (shard == null);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    ShardedAlarmScheduler.Shard shard() {
+        return shard;
+    }
+
+    /**
+     * Starts firing alarms: the scheduler waits for the due alarms and the dispatcher hands them to the listener.
+     * Alarms with an action run it on the action runner instead of being shown by the listener.
+     * Only for an engine that is not fired by a shard.
+     *
+     * @param alarmListener Listener notified of the activated alarms.
+     * @param capacity How many activated alarms can wait for the listener before they are dropped.
+     */
+    synchronized void start(AlarmListener alarmListener, int capacity) {
+        if (shard != null) {
+            throw new IllegalStateException("Engine " + name + " is fired by its shard");
+        }
+        if (scheduler != null) {
+            throw new IllegalStateException("Engine " + name + " already started");
+        }
+
+        AlarmDispatcher alarmDispatcher = new AlarmDispatcher(capacity);
+        alarmDispatcher.addListener(alarmListener);
+        alarmDispatcher.start();
+        setDispatcher(alarmDispatcher);
+        setActionRunner(new ActionRunner());
+
+        AlarmScheduler alarmScheduler = new AlarmScheduler(this, timeSource);
+        alarmScheduler.start();
+        setScheduler(alarmScheduler);
+    }
+
+    /**
+     * Stops firing alarms. Alarms stay in the queue.
+     */
+    synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.stop();
+            scheduler = null;
+        }
+        if (dispatcher != null) {
+            dispatcher.stop();
+            dispatcher = null;
+        }
+        if (actionRunner != null) {
+            actionRunner.shutdown();
+            actionRunner = null;
+        }
+    }
+
+    /**
+     * Recovers the alarms from the journal in a directory and records every later change of the queue in it.
+     * Alarms that became due while the engine was not running are fired according to the missed alarm policy.
+     *
+     * @param directory Directory of the journal, which no other engine may use.
+     * @return Number of alarms recovered.
+     * @throws IOException Thrown when the journal cannot be read or written.
+     */
+    synchronized int openJournal(Path directory) throws IOException {
+        if (journal != null) {
+            throw new IllegalStateException("Journal already open");
+        }
+
+        AlarmJournal opened = new AlarmJournal(directory);
+        Alarm[] recovered = opened.recover();
+        addAlarms(recovered); // before the journal is set, so the recovered alarms are not recorded again
+        opened.start(this::snapshot, timeSource);
+        journal = opened;
+
+        return recovered.length;
+    }
+
+    /**
+     * Writes the remaining journal records to disk and stops recording changes.
+     *
+     * @throws IOException Thrown when the journal could not be written.
+     */
+    synchronized void closeJournal() throws IOException {
+        AlarmJournal current = journal;
+        if (current == null) {
+            return;
+        }
+
+        journal = null;
+        try {
+            current.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    boolean isJournalOpen() {
+        return journal != null;
+    }
+
+    /**
+     * Replaces the queue, dropping the alarms it held. Meant for tests and benchmarks, while the engine is stopped.
+     *
+     * @param store The new queue.
+     */
+    void setStore(AlarmStore store) {
+        alarms = store;
+    }
+
+    AlarmStore getStore() {
+        return alarms;
+    }
+
+    void setTimeSource(TimeSource source) {
+        timeSource = source;
+    }
+
+    TimeSource getTimeSource() {
+        return timeSource;
+    }
+
+    void setZone(ZoneId zone) {
+        localTime = new LocalTimeConverter(zone);
+    }
+
+    ZoneId getZone() {
+        return localTime.getZone();
+    }
+
+    /**
+     * Sets the scheduler that is woken whenever the head of the queue may have changed.
+     *
+     * @param alarmScheduler Scheduler waiting for the next alarm.
+     */
+    void setScheduler(AlarmScheduler alarmScheduler) {
+        scheduler = alarmScheduler;
+        queueChanged();
+    }
+
+    void setDispatcher(AlarmDispatcher alarmDispatcher) {
+        dispatcher = alarmDispatcher;
+    }
+
+    void setActionRunner(ActionRunner runner) {
+        actionRunner = runner;
+    }
+
+    ActionRunner getActionRunner() {
+        return actionRunner;
+    }
+
+    void setMissedAlarmPolicy(MissedAlarmPolicy policy, long graceInMilliseconds) {
+        missedAlarmPolicy = policy;
+        missedAlarmGrace = graceInMilliseconds;
+    }
+
+    /**
+     * Returns the event bus the queue changes are published on.
+     *
+     * @return The event bus.
+     */
+    ClockEventBus events() {
+        return events;
+    }
+
+    /**
+     * Removes every alarm that is due at the given time from the queue and activates them in one batch.
+     * Activating an alarm only hands it to the dispatcher, which notifies the listeners on its own thread.
+     * Alarms overdue by more than the grace period are handled according to the missed alarm policy.
+     * Only one thread should check the alarms at a time.
+     *
+     * @param currentTime Current date in milliseconds.
+     * @return Alarms that were activated.
+     */
+    List<AlarmEvent> checkAlarms(long currentTime) {
+        long start = recordsMetrics ? ClockMetrics.start() : 0;
+        List<AlarmEvent> fired = new ArrayList<>();
+        long firstMissed = 0;
+        int missed = 0;
+        int polled = 0;
+
+        AlarmJournal currentJournal = journal;
+        while (true) {
+            Alarm alarm;
+            long dateInMilliseconds;
+            Recurrence recurrence;
+            lockJournal(currentJournal);
+            try {
+                alarm = alarms.pollDue(currentTime);
+                if (alarm == null) {
+                    break;
+                }
+                dateInMilliseconds = alarm.getDateInMilliseconds();
+
+                // a recurring alarm goes back in the queue at its next occurrence, skipping any that were missed
+                recurrence = alarm.getRecurrence();
+                long next = (recurrence == null) ? AlarmStore.NONE
+                        : recurrence.nextAfter(dateInMilliseconds, currentTime, getZone());
+                if (next != AlarmStore.NONE) {
+                    alarm.setDateInMilliseconds(next); // polled, so no longer in a heap
+                    alarms.add(alarm);
+                    if (currentJournal != null) {
+                        currentJournal.rescheduled(alarm.getId(), next);
+                    }
+                } else if (currentJournal != null) {
+                    currentJournal.fired(alarm);
+                }
+            } finally {
+                unlockJournal(currentJournal);
+            }
+
+            long lateness = currentTime - dateInMilliseconds;
+            polled++;
+            if (recordsMetrics) {
+                ClockMetrics.fired(lateness);
+            }
+            AlarmFiredEvent firedEvent = new AlarmFiredEvent();
+            if (firedEvent.isEnabled()) {
+                firedEvent.id = alarm.getId();
+                firedEvent.scheduled = dateInMilliseconds;
+                firedEvent.lateness = lateness;
+                firedEvent.recurring = recurrence != null;
+                firedEvent.commit();
+            }
+
+            // an action is not a notification, so it is never coalesced with others
+            AlarmAction action = alarm.getAction();
+            if (lateness <= missedAlarmGrace || missedAlarmPolicy == MissedAlarmPolicy.FIRE_LATE
+                    || (action != null && missedAlarmPolicy == MissedAlarmPolicy.COALESCE)) {
+                fired.add(new AlarmEvent(dateInMilliseconds, currentTime, 1, action));
+            } else if (missedAlarmPolicy == MissedAlarmPolicy.COALESCE) {
+                if (missed++ == 0) {
+                    firstMissed = dateInMilliseconds;
+                }
+            }
+        }
+
+        // the missed alarms are older than any alarm fired on time, so they go first
+        if (missed > 0) {
+            fired.add(0, new AlarmEvent(firstMissed, currentTime, missed));
+        }
+
+        if (polled > 0) {
+            queueChanged();
+        }
+
+        AlarmDispatcher currentDispatcher = dispatcher;
+        if (currentDispatcher != null) {
+            for (AlarmEvent event : fired) {
+                currentDispatcher.publish(event);
+            }
+        }
+
+        ActionRunner runner = actionRunner;
+        if (runner != null) {
+            for (AlarmEvent event : fired) {
+                runner.submit(event);
+            }
+        }
+
+        if (recordsMetrics) {
+            ClockMetrics.removed(polled);
+        }
+        ClockMetrics.checkedAlarms(start);
+
+        return fired;
+    }
+
+    /**
+     * Activates the due alarms like {@link #checkAlarms(long)} and hands them to the listener of the tenant.
+     * Called by one shard thread at a time. A listener that fails is counted in the metrics, and never stops
+     * the shard.
+     *
+     * @param currentTime Current date in milliseconds.
+     * @return Number of alarms activated.
+     */
+    int fireDue(long currentTime) {
+        List<AlarmEvent> fired = checkAlarms(currentTime);
+        if (fired.isEmpty() || listener == null) {
+            return fired.size();
+        }
+
+        try {
+            listener.alarmsFired(fired);
+        } catch (RuntimeException e) {
+            ClockMetrics.listenerFailed();
+        }
+
+        return fired.size();
+    }
+
+    /**
+     * Generates the iCalendar file.
+     *
+     * @return iCalendar content with one event per alarm.
+     */
+    String generateICalendar() {
+        StringWriter content = new StringWriter();
+
+        try {
+            new ICalendarWriter(content, timeSource.millis(), getZone()).write(alarms);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a StringWriter never fails
+        }
+
+        return content.toString();
+    }
+
+    /**
+     * Writes the alarms as iCalendar content, event by event, so the content is never held in memory.
+     *
+     * @param out Writer the content is written to.
+     * @return Number of alarms written.
+     * @throws IOException Thrown when the content cannot be written.
+     */
+    int writeICalendar(Writer out) throws IOException {
+        QueueSnapshot snapshot = alarms.snapshot();
+        new ICalendarWriter(out, timeSource.millis(), getZone()).write(snapshot);
+
+        return snapshot.size();
+    }
+
+    /**
+     * Saves the alarms to an iCalendar file, reporting progress. Interrupting the thread cancels the save
+     * and leaves the previous file as it was.
+     *
+     * @param file File to save the alarms to.
+     * @param progress Receiver of the fraction of the alarms written so far, from 0 to 1, or null.
+     * @throws IOException Thrown when the file cannot be written.
+     * @throws java.io.InterruptedIOException Thrown when the save was cancelled.
+     */
+    void saveICalendar(Path file, DoubleConsumer progress) throws IOException {
+        long start = recordsMetrics ? ClockMetrics.start() : 0;
+        QueueSnapshot snapshot = alarms.snapshot();
+        int size = Math.max(1, snapshot.size());
+        ICalendarWriter.writeFile(file, snapshot, timeSource.millis(), getZone(),
+                (progress == null) ? null : written -> progress.accept((double) written / size));
+
+        if (start != 0) {
+            ClockMetrics.saved(snapshot.size(), Files.size(file), start);
+        }
+    }
+
+    /**
+     * Loads the alarms from an iCalendar file, queueing them in batches while the file is read, so alarms
+     * keep firing during a long load. Interrupting the thread cancels the load, keeping the alarms queued so far.
+     * Alarms from the past are not loaded, and queued alarms are never changed: see {@link #addAlarms(Alarm[])}.
+     *
+     * @param file File to load the alarms from.
+     * @param progress Receiver of the fraction of the file read so far, from 0 to 1, or null.
+     * @return Number of alarms loaded.
+     * @throws IOException Thrown when the file cannot be read or is not a valid iCalendar file.
+     * @throws java.io.InterruptedIOException Thrown when the load was cancelled.
+     */
+    int loadICalendar(Path file, DoubleConsumer progress) throws IOException {
+        long start = recordsMetrics ? ClockMetrics.start() : 0;
+        ICalendarParsedEvent event = new ICalendarParsedEvent();
+        event.begin();
+
+        ICalendarReader reader = new ICalendarReader(getZone());
+        int[] loaded = new int[1];
+        long bytes;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            bytes = channel.size();
+            double size = Math.max(1, bytes);
+            reader.read(channel, timeSource.millis(), IMPORT_BATCH, batch -> loaded[0] += addAlarms(batch),
+                    (progress == null) ? null : read -> progress.accept(read / size));
+        }
+        event.end();
+
+        if (event.shouldCommit() || ClockMetrics.isEnabled()) {
+            ClockMetrics.loaded(loaded[0], bytes, start);
+            event.file = file.toString();
+            event.alarms = loaded[0];
+            event.skipped = reader.skipped();
+            event.bytes = bytes;
+            event.commit();
+        }
+
+        return loaded[0];
+    }
+
+    /**
+     * Loads the alarms from iCalendar content read from a channel, such as the body of a request,
+     * in the same way as from a file.
+     *
+     * @param channel Channel with the iCalendar content.
+     * @return Number of alarms loaded.
+     * @throws IOException Thrown when the channel cannot be read or the content is not valid.
+     */
+    int loadICalendar(ReadableByteChannel channel) throws IOException {
+        int[] loaded = new int[1];
+        new ICalendarReader(getZone()).read(channel, timeSource.millis(), IMPORT_BATCH,
+                batch -> loaded[0] += addAlarms(batch), null);
+
+        return loaded[0];
+    }
+
+    /**
+     * Saves the alarms to a binary snapshot file, which loads much faster than an iCalendar file.
+     *
+     * @param file File to save the alarms to.
+     * @throws IOException Thrown when the file cannot be written.
+     */
+    void saveSnapshot(Path file) throws IOException {
+        SnapshotFile.write(file, alarms.snapshot(), timeSource.millis());
+    }
+
+    /**
+     * Loads the alarms from a binary snapshot file.
+     * Alarms from the past are not loaded to the priority queue, except recurring ones, which are moved
+     * to their next occurrence.
+     *
+     * @param file File to load the alarms from.
+     * @return Number of alarms loaded.
+     * @throws IOException Thrown when the file cannot be read or is not a valid snapshot file.
+     */
+    int loadSnapshot(Path file) throws IOException {
+        QueueSnapshot snapshot = SnapshotFile.read(file);
+
+        // the dates are sorted, so the alarms from the past are all at the start
+        int first = 0;
+        long now = timeSource.millis();
+        while (first < snapshot.size() && snapshot.get(first) <= now) {
+            first++;
+        }
+
+        Alarm[] loaded = new Alarm[snapshot.size()];
+        int count = 0;
+        if (snapshot.hasRecurrences()) {
+            for (int i = 0; i < first; i++) {
+                Recurrence recurrence = snapshot.recurrence(i);
+                long next = (recurrence == null) ? AlarmStore.NONE
+                        : recurrence.nextAfter(snapshot.get(i), now, getZone());
+                if (next != AlarmStore.NONE) {
+                    loaded[count] = new Alarm(snapshot.id(i), next);
+                    loaded[count++].setRecurrence(recurrence);
+                }
+            }
+        }
+        for (int i = first; i < snapshot.size(); i++) {
+            loaded[count] = new Alarm(snapshot.id(i), snapshot.get(i));
+            loaded[count++].setRecurrence(snapshot.recurrence(i));
+        }
+
+        return addAlarms(Arrays.copyOf(loaded, count));
+    }
+
+    /**
+     * Adds an alarm that repeats by a rule and runs an action when it fires, instead of showing a message.
+     * Only the first occurrence is queued; each following one is computed when the previous one goes off.
+     * Actions live only in memory: they are not written to the journal or to saved files.
+     *
+     * @param dateInMilliseconds Date in milliseconds the alarm starts at.
+     * @param recurrence Rule the alarm repeats by, or null for an alarm that goes off once.
+     * @param action What the alarm does, or null to just show a message.
+     * @return ID of the new alarm.
+     */
+    long addAlarm(long dateInMilliseconds, Recurrence recurrence, AlarmAction action) {
+        if (recordsMetrics) {
+            ClockMetrics.added(1);
+        }
+        Alarm alarm = new Alarm(dateInMilliseconds);
+        if (recurrence != null) {
+            // a rule on some days of the week starts on the first of those days
+            ZoneId zone = getZone();
+            Recurrence bound = recurrence.startingAt(dateInMilliseconds, zone);
+            long first = bound.first(dateInMilliseconds, zone);
+            alarm.setDateInMilliseconds((first == AlarmStore.NONE) ? dateInMilliseconds : first);
+            alarm.setRecurrence(bound);
+        }
+        alarm.setAction(action);
+        AlarmJournal current = journal;
+        lockJournal(current);
+        try {
+            alarms.add(alarm);
+            if (current != null) {
+                current.added(alarm);
+            }
+        } finally {
+            unlockJournal(current);
+        }
+        queueChanged();
+
+        return alarm.getId();
+    }
+
+    /**
+     * Adds an alarm that goes off once.
+     *
+     * @param dateInMilliseconds Date in milliseconds of the alarm.
+     * @return ID of the new alarm.
+     */
+    long addAlarm(long dateInMilliseconds) {
+        return addAlarm(dateInMilliseconds, null, null);
+    }
+
+    /**
+     * Adds a batch of alarms to the queue with a single heapify and a single change notification.
+     * The dates are sorted first, in parallel for large batches, and alarms at the same date are only
+     * added once; dates already queued are skipped, so adding the same batch again adds nothing. A sorted batch added to an empty queue is taken as a heap without moving anything.
+     *
+     * @param dates Dates in milliseconds of the alarms. The array is not changed.
+     * @return Number of alarms added, without the repeated and queued dates.
+     */
+    int addAlarms(long[] dates) {
+        long[] sorted = Arrays.copyOf(dates, dates.length);
+        if (sorted.length >= PARALLEL_SORT_THRESHOLD) {
+            Arrays.parallelSort(sorted);
+        } else {
+            Arrays.sort(sorted);
+        }
+
+        // two batches of the same dates cannot both find them free
+        AlarmJournal current = journal;
+        int count = 0;
+        synchronized (importLock) {
+            // one pass merging the batch with the queued dates, both sorted, dropping repeated and queued dates
+            QueueSnapshot queued = alarms.isEmpty() ? QueueSnapshot.EMPTY : alarms.snapshot();
+            int position = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                long date = sorted[i];
+                while (position < queued.size() && queued.get(position) < date) {
+                    position++;
+                }
+                if ((count == 0 || date != sorted[count - 1]) && (position == queued.size() || queued.get(position) != date)) {
+                    sorted[count++] = date;
+                }
+            }
+
+            Alarm[] batch = new Alarm[count];
+            for (int i = 0; i < count; i++) {
+                batch[i] = new Alarm(sorted[i]);
+            }
+
+            lockJournal(current);
+            try {
+                alarms.addAll(batch);
+                if (current != null) {
+                    current.added(batch);
+                }
+            } finally {
+                unlockJournal(current);
+            }
+        }
+        if (recordsMetrics) {
+            ClockMetrics.added(count);
+        }
+        queueChanged();
+
+        return count;
+    }
+
+    /**
+     * Adds a batch of alarms that already have IDs, such as alarms read from a file. An import never changes
+     * a queued alarm: an alarm whose ID is already queued at the same date is the same alarm loaded again and
+     * is skipped, while one whose ID is queued at another date, or taken earlier in the batch, is added as a
+     * new alarm with a new ID.
+     *
+     * @param batch Alarms to be added.
+     * @return Number of alarms added.
+     */
+    int addAlarms(Alarm[] batch) {
+        AlarmIndex added = new AlarmIndex();
+        added.ensureCapacity(batch.length);
+        Alarm[] fresh = new Alarm[batch.length];
+        int count = 0;
+
+        // two imports of the same IDs cannot both find them free
+        AlarmJournal current = journal;
+        synchronized (importLock) {
+            boolean empty = alarms.isEmpty(); // no ID can be taken, which saves a lookup per alarm
+            for (Alarm alarm : batch) {
+                long date = alarm.getDateInMilliseconds();
+                long queued = empty ? AlarmStore.NONE : alarms.dateOf(alarm.getId());
+                Alarm previous = added.get(alarm.getId());
+                if (queued == date || (previous != null && previous.getDateInMilliseconds() == date)) {
+                    continue;
+                }
+                if (queued != AlarmStore.NONE || previous != null) {
+                    alarm = alarm.withNewId();
+                }
+
+                added.put(alarm);
+                fresh[count++] = alarm;
+            }
+
+            fresh = Arrays.copyOf(fresh, count);
+            lockJournal(current);
+            try {
+                alarms.addAll(fresh);
+                if (current != null) {
+                    current.added(fresh);
+                }
+            } finally {
+                unlockJournal(current);
+            }
+        }
+
+        if (recordsMetrics) {
+            ClockMetrics.added(count);
+        }
+        queueChanged();
+
+        return count;
+    }
+
+    /**
+     * Removes an alarm from the queue.
+     *
+     * @param id ID of the alarm.
+     * @return Whether the alarm was removed; false when it already fired or was removed.
+     */
+    boolean cancel(long id) {
+        boolean cancelled;
+        AlarmJournal current = journal;
+        lockJournal(current);
+        try {
+            cancelled = alarms.cancel(id);
+            if (cancelled && current != null) {
+                current.cancelled(id);
+            }
+        } finally {
+            unlockJournal(current);
+        }
+
+        if (cancelled) {
+            if (recordsMetrics) {
+                ClockMetrics.removed(1);
+            }
+            queueChanged();
+        }
+
+        return cancelled;
+    }
+
+    /**
+     * Moves an alarm to another date, keeping its ID. A recurring alarm then recurs from the new date,
+     * at its time of day.
+     *
+     * @param id ID of the alarm.
+     * @param dateInMilliseconds New date in milliseconds.
+     * @return Whether the alarm was moved; false when it already fired or was removed.
+     */
+    boolean reschedule(long id, long dateInMilliseconds) {
+        Alarm alarm;
+        AlarmJournal current = journal;
+        lockJournal(current);
+        try {
+            alarm = alarms.reschedule(id, dateInMilliseconds, getZone());
+            if (alarm != null && current != null) {
+                current.rescheduled(id, dateInMilliseconds);
+                Recurrence recurrence = alarm.getRecurrence();
+                if (recurrence != null) {
+                    current.ruled(id, recurrence);
+                }
+            }
+        } finally {
+            unlockJournal(current);
+        }
+
+        boolean rescheduled = alarm != null;
+        if (rescheduled) {
+            queueChanged();
+        }
+
+        return rescheduled;
+    }
+
+    /**
+     * Holds the journal while the queue is changed, so that the change is recorded in the order it was made.
+     *
+     * @param current The open journal, or null when there is none.
+     */
+    private static void lockJournal(AlarmJournal current) {
+        if (current != null) {
+            current.lock();
+        }
+    }
+
+    private static void unlockJournal(AlarmJournal current) {
+        if (current != null) {
+            current.unlock();
+        }
+    }
+
+    /**
+     * Wakes whatever fires the engine to read the new head of the queue and tells the subscribers of the
+     * event bus, unless the queue did not actually change.
+     */
+    private void queueChanged() {
+        AlarmScheduler current = scheduler;
+        if (current != null) {
+            current.headChanged();
+        }
+        if (shard != null) {
+            shard.headChanged(this);
+        }
+        events.publish(ClockEventBus.Topic.QUEUE_CHANGED, alarms.version());
+    }
+
+    /**
+     * Returns a date in milliseconds for an alarm at a time of day.
+     *
+     * @param hour Alarm's hour.
+     * @param minute Alarm's minute.
+     * @return Date in milliseconds for the alarm.
+     */
+    long getDateInMillisecondsForAlarm(int hour, int minute) {
+        // if the alarm date would be in the past, it is set for the next day
+        return localTime.nextTimeOfDay(timeSource.millis(), hour, minute);
+    }
+
+    /**
+     * Returns current datestamp in iCalendar format.
+     *
+     * @return Current datestamp in iCalendar format.
+     */
+    String getDatestamp() {
+        return ICalendarWriter.format(timeSource.millis(), getZone());
+    }
+
+    /**
+     * Returns the earliest alarms within a range of dates. Cheaper than a snapshot right after the queue
+     * changed, since only the alarms returned are sorted.
+     *
+     * @param from Earliest date in milliseconds, inclusive.
+     * @param to Latest date in milliseconds, inclusive.
+     * @param limit Most alarms to return.
+     * @return Sorted snapshot of the alarms in the range.
+     */
+    QueueSnapshot range(long from, long to, int limit) {
+        return alarms.range(from, to, limit);
+    }
+
+    /**
+     * Returns a read-only snapshot of the queue, sorted from the earliest alarm.
+     * The snapshot is shared and only rebuilt after the queue changes.
+     *
+     * @return A snapshot of the queue.
+     */
+    QueueSnapshot snapshot() {
+        return alarms.snapshot();
+    }
+
+    boolean isEmpty() {
+        return alarms.isEmpty();
+    }
+
+    int size() {
+        return alarms.size();
+    }
+
+    /**
+     * Returns the date of the head of the queue without allocating.
+     *
+     * @return Date in milliseconds of the next alarm, or AlarmStore.NONE when the queue is empty.
+     */
+    long headMillis() {
+        return alarms.headMillis();
+    }
+
+    /**
+     * Returns the date of a queued alarm.
+     *
+     * @param id ID of the alarm.
+     * @return Date in milliseconds of the alarm, or AlarmStore.NONE when it is not queued.
+     */
+    long dateOf(long id) {
+        return alarms.dateOf(id);
+    }
+
+    /**
+     * Converts date in milliseconds to the local hour. Does not allocate.
+     *
+     * @param dateInMilliseconds A date in milliseconds.
+     * @return Hours.
+     */
+    int millisecondsToHours(long dateInMilliseconds) {
+        return localTime.hourOf(dateInMilliseconds);
+    }
+
+    /**
+     * Converts date in milliseconds to the local minute. Does not allocate.
+     *
+     * @param dateInMilliseconds A date in milliseconds.
+     * @return Minutes.
+     */
+    int millisecondsToMinutes(long dateInMilliseconds) {
+        return localTime.minuteOf(dateInMilliseconds);
+    }
+
+    /**
+     * Converts date in milliseconds to the local second. Does not allocate.
+     *
+     * @param dateInMilliseconds A date in milliseconds.
+     * @return Seconds.
+     */
+    int millisecondsToSeconds(long dateInMilliseconds) {
+        return localTime.secondOf(dateInMilliseconds);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
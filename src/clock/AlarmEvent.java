@@ -0,0 +1,103 @@
+package clock;
+
+/**
+ * An alarm that has been fired, possibly on behalf of several coalesced alarms.
+ */
+class AlarmEvent {
+    private final long dateInMilliseconds;
+    private final long firedAt;
+    private final int count;
+    private final AlarmAction action;
+
+    /**
+     * @param dateInMilliseconds Date in milliseconds the (first) alarm was scheduled for.
+     * @param firedAt Date in milliseconds the alarm was actually fired.
+     * @param count Number of alarms this event stands for.
+     */
+    AlarmEvent(long dateInMilliseconds, long firedAt, int count) {
+        this(dateInMilliseconds, firedAt, count, null);
+    }
+
+    /**
+     * @param dateInMilliseconds Date in milliseconds the alarm was scheduled for.
+     * @param firedAt Date in milliseconds the alarm was actually fired.
+     * @param count Number of alarms this event stands for.
+     * @param action What the alarm does, or null when it just shows a message.
+     */
+    AlarmEvent(long dateInMilliseconds, long firedAt, int count, AlarmAction action) {
+        this.dateInMilliseconds = dateInMilliseconds;
+        this.firedAt = firedAt;
+        this.count = count;
+        this.action = action;
+    }
+
+    long getDateInMilliseconds() {
+        return dateInMilliseconds;
+    }
+
+    long getFiredAt() {
+        return firedAt;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    AlarmAction getAction() {
+        return action;
+    }
+
+    /**
+     * Returns how late the alarm was fired.
+     *
+     * @return Lateness in milliseconds.
+     */
+    long getLateness() {
+        return firedAt - dateInMilliseconds;
+    }
+
+    /**
+     * Returns a message describing the alarm, shown to the user.
+     *
+     * @return A message describing the alarm.
+     */
+    String getMessage() {
+        String lateness = describeLateness(getLateness());
+
+        if (count > 1) {
+            return count + " missed alarms activated" + (lateness.isEmpty() ? "." : ", the first one" + lateness + ".");
+        }
+
+        return "Alarm activated" + lateness + ".";
+    }
+
+    @Override
+    public String toString() {
+        return getMessage();
+    }
+
+    /**
+     * Describes the lateness in the largest whole unit, or returns an empty string when the alarm was on time.
+     *
+     * @param lateness Lateness in milliseconds.
+     * @return Description of the lateness.
+     */
+    private static String describeLateness(long lateness) {
+        long seconds = lateness / 1000;
+        if (seconds < 1) {
+            return "";
+        }
+
+        if (seconds < 60) {
+            return " " + seconds + (seconds == 1 ? " second" : " seconds") + " late";
+        }
+
+        long minutes = seconds / 60;
+        if (minutes < 60) {
+            return " " + minutes + (minutes == 1 ? " minute" : " minutes") + " late";
+        }
+
+        long hours = minutes / 60;
+        return " " + hours + (hours == 1 ? " hour" : " hours") + " late";
+    }
+}
@@ -0,0 +1,126 @@
+package clock;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Loads or saves an alarm file on a background thread while a progress monitor is shown,
+ * so the clock keeps painting and firing alarms. Pressing Cancel in the monitor interrupts the task:
+ * a cancelled load keeps the alarms queued so far, and a cancelled save leaves the previous file as it was.
+ */
+class AlarmFileTask extends SwingWorker<Integer, Void> {
+    // the monitor only appears for tasks taking longer than this
+    private static final int POPUP_DELAY = 300;
+    private static final int CANCEL_POLL_INTERVAL = 100;
+
+    private final Component parent;
+    private final Path file;
+    private final boolean save;
+    private ProgressMonitor monitor;
+    private Timer cancelPoll;
+
+    /**
+     * @param parent Component the monitor and error messages are shown over.
+     * @param file Alarm file.
+     * @param save Whether the alarms are saved to the file rather than loaded from it.
+     */
+    private AlarmFileTask(Component parent, Path file, boolean save) {
+        this.parent = parent;
+        this.file = file;
+        this.save = save;
+    }
+
+    /**
+     * Starts loading the alarms from an iCalendar or snapshot file. Called on the event dispatch thread.
+     *
+     * @param parent Component the monitor and error messages are shown over.
+     * @param file File to load the alarms from.
+     * @return The running task.
+     */
+    static AlarmFileTask load(Component parent, Path file) {
+        return new AlarmFileTask(parent, file, false).started();
+    }
+
+    /**
+     * Starts saving the alarms to a file, in the snapshot format when named with its extension and as
+     * iCalendar otherwise. Called on the event dispatch thread.
+     *
+     * @param parent Component the monitor and error messages are shown over.
+     * @param file File to save the alarms to.
+     * @return The running task.
+     */
+    static AlarmFileTask save(Component parent, Path file) {
+        return new AlarmFileTask(parent, file, true).started();
+    }
+
+    private AlarmFileTask started() {
+        String title = (save ? "Saving alarms to " : "Loading alarms from ") + file.getFileName();
+        monitor = new ProgressMonitor(parent, title, null, 0, 100);
+        monitor.setMillisToDecideToPopup(POPUP_DELAY);
+        monitor.setMillisToPopup(POPUP_DELAY);
+
+        addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                monitor.setProgress((Integer) e.getNewValue());
+            }
+        });
+
+        // the monitor has no listener for its Cancel button, and progress may not change for a while
+        cancelPoll = new Timer(CANCEL_POLL_INTERVAL, e -> {
+            if (monitor.isCanceled()) {
+                cancel(true);
+            }
+        });
+        cancelPoll.start();
+        execute();
+
+        return this;
+    }
+
+    @Override
+    protected Integer doInBackground() throws IOException {
+        boolean snapshot = save ? file.getFileName().toString().endsWith("." + SnapshotFile.EXTENSION)
+                : SnapshotFile.isSnapshot(file);
+
+        // snapshots are written and read in one go, fast enough not to need progress
+        if (save) {
+            if (snapshot) {
+                AlarmClock.saveSnapshot(file);
+            } else {
+                AlarmClock.saveICalendar(file, this::progressed);
+            }
+            return 0;
+        }
+
+        return snapshot ? AlarmClock.loadSnapshot(file) : AlarmClock.loadICalendar(file, this::progressed);
+    }
+
+    private void progressed(double fraction) {
+        setProgress((int) Math.min(100, Math.round(fraction * 100)));
+    }
+
+    @Override
+    protected void done() {
+        cancelPoll.stop();
+        monitor.close();
+
+        try {
+            get();
+        } catch (CancellationException | InterruptedException e) {
+            // cancelled by the user, who knows
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof InterruptedIOException || cause instanceof ClosedByInterruptException) {
+                return; // cancelled while reading or writing
+            }
+            JOptionPane.showMessageDialog(parent, save ? "Could not save the file!" : "Invalid file!",
+                    "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package clock;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+import jdk.jfr.Timestamp;
+
+/**
+ * Flight recorder event of an alarm taken off the queue to be fired.
+ */
+@Name("clock.AlarmFired")
+@Label("Alarm Fired")
+@Category("Alarm Clock")
+@Description("An alarm was taken off the queue to be fired")
+class AlarmFiredEvent extends jdk.jfr.Event {
+    @Label("Alarm ID")
+    long id;
+
+    @Label("Scheduled")
+    @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+    long scheduled;
+
+    @Label("Lateness")
+    @Timespan(Timespan.MILLISECONDS)
+    long lateness;
+
+    @Label("Recurring")
+    boolean recurring;
+}
@@ -0,0 +1,151 @@
+package clock;
+
+/**
+ * Hash table from alarm ID to alarm, with open addressing over primitive arrays so that IDs are never boxed.
+ * Together with the slot kept in each alarm, a store finds any queued alarm in O(1).
+ * Not thread-safe: every store guards its index with the same lock as its heap.
+ */
+final class AlarmIndex {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] ids;
+    private Alarm[] alarms;
+    private int size;
+
+    AlarmIndex() {
+        ids = new long[MIN_CAPACITY];
+        alarms = new Alarm[MIN_CAPACITY];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Makes room for more alarms at once, so that adding a batch does not resize the table repeatedly.
+     *
+     * @param count Number of alarms about to be added.
+     */
+    void ensureCapacity(int count) {
+        int capacity = ids.length;
+        while ((long) (size + count) * 2 > capacity) {
+            capacity *= 2;
+        }
+        if (capacity > ids.length) {
+            resize(capacity);
+        }
+    }
+
+    /**
+     * Returns the alarm with the given ID.
+     *
+     * @param id ID of the alarm.
+     * @return The alarm, or null when there is none.
+     */
+    Alarm get(long id) {
+        int mask = ids.length - 1;
+        for (int i = hash(id) & mask; alarms[i] != null; i = (i + 1) & mask) {
+            if (ids[i] == id) {
+                return alarms[i];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Adds an alarm, replacing any alarm with the same ID.
+     *
+     * @param alarm Alarm to be added.
+     */
+    void put(Alarm alarm) {
+        if ((size + 1) * 2 > ids.length) {
+            resize(ids.length * 2);
+        }
+
+        long id = alarm.getId();
+        int mask = ids.length - 1;
+        int i = hash(id) & mask;
+        while (alarms[i] != null) {
+            if (ids[i] == id) {
+                alarms[i] = alarm;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+
+        ids[i] = id;
+        alarms[i] = alarm;
+        size++;
+    }
+
+    /**
+     * Removes the alarm with the given ID.
+     *
+     * @param id ID of the alarm.
+     * @return The removed alarm, or null when there was none.
+     */
+    Alarm remove(long id) {
+        int mask = ids.length - 1;
+        int i = hash(id) & mask;
+        while (alarms[i] != null && ids[i] != id) {
+            i = (i + 1) & mask;
+        }
+
+        Alarm removed = alarms[i];
+        if (removed == null) {
+            return null;
+        }
+
+        // shifts the following entries of the cluster back, so that no lookup stops at the hole
+        int hole = i;
+        for (int j = (i + 1) & mask; alarms[j] != null; j = (j + 1) & mask) {
+            int home = hash(ids[j]) & mask;
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                ids[hole] = ids[j];
+                alarms[hole] = alarms[j];
+                hole = j;
+            }
+        }
+        alarms[hole] = null;
+        size--;
+
+        return removed;
+    }
+
+    /**
+     * Returns all alarms in the index, in no particular order.
+     *
+     * @return Alarms in the index.
+     */
+    Alarm[] values() {
+        Alarm[] values = new Alarm[size];
+        int count = 0;
+        for (Alarm alarm : alarms) {
+            if (alarm != null) {
+                values[count++] = alarm;
+            }
+        }
+
+        return values;
+    }
+
+    private void resize(int capacity) {
+        Alarm[] oldAlarms = alarms;
+        ids = new long[capacity];
+        alarms = new Alarm[capacity];
+        size = 0;
+
+        for (int i = 0; i < oldAlarms.length; i++) {
+            if (oldAlarms[i] != null) {
+                put(oldAlarms[i]);
+            }
+        }
+    }
+
+    private static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+
+        return (int) (h ^ (h >>> 32));
+    }
+}
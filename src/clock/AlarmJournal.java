@@ -0,0 +1,524 @@
+package clock;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of every change to the alarm queue, so that alarms survive an unclean exit.
+ * Each add, reschedule, cancel and fire is a fixed-size binary record with a checksum, and the rule of a
+ * recurring alarm follows its add record as two more records. Records are buffered in memory and written
+ * by the journal thread, which syncs everything that arrived while the previous sync was running in one
+ * go (group commit), so callers never wait for the disk.
+ * When the journal grows well beyond the size of the queue, it is compacted: the queue is written to
+ * a {@link SnapshotFile} and the journal starts over. On startup the snapshot is loaded and the journal replayed.
+ * Callers change the queue and append its records while holding the journal (see {@link #lock()}), so the
+ * records of an alarm are in the order its changes were made, and replay simply lets the last record win.
+ */
+class AlarmJournal implements Runnable {
+    static final String JOURNAL_FILE = "alarms.journal";
+    static final String SNAPSHOT_FILE = "alarms." + SnapshotFile.EXTENSION;
+    static final long DEFAULT_COMPACTION_SIZE = 4 * 1024 * 1024;
+
+    private static final int MAGIC = 0x414C4A31; // "ALJ1"
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 1 + 8 + 8 + 4;
+
+    private static final byte ADD = 1;
+    private static final byte RESCHEDULE = 2;
+    private static final byte CANCEL = 3;
+    private static final byte FIRE = 4;
+    private static final byte RULE = 5;
+    private static final byte UNTIL = 6;
+
+    private final Path journalFile;
+    private final Path snapshotFile;
+    private final long compactionSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Condition synced = lock.newCondition();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer pending = ByteBuffer.allocate(64 * RECORD_SIZE);
+    private ByteBuffer writing = ByteBuffer.allocate(64 * RECORD_SIZE);
+    private long appendedRecords;
+    private long syncedRecords;
+    private boolean closed;
+    private IOException failure;
+
+    // only used by the journal thread once it is started
+    private FileChannel channel;
+    private Supplier<QueueSnapshot> snapshots;
+    private TimeSource timeSource;
+    private long journalSize;
+    private long snapshotSize;
+    private Thread thread;
+
+    /**
+     * @param directory Directory of the journal and snapshot files, created if needed.
+     */
+    AlarmJournal(Path directory) {
+        this(directory, DEFAULT_COMPACTION_SIZE);
+    }
+
+    /**
+     * @param directory Directory of the journal and snapshot files, created if needed.
+     * @param compactionSize Size in bytes the journal may reach before it is compacted, at least.
+     */
+    AlarmJournal(Path directory, long compactionSize) {
+        this.journalFile = directory.resolve(JOURNAL_FILE);
+        this.snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        this.compactionSize = compactionSize;
+    }
+
+    /**
+     * Loads the snapshot and replays the journal on top of it.
+     * A torn or corrupt record at the end of the journal, left by a crash while writing, is cut off.
+     *
+     * @return Alarms that were queued when the journal was last written, in no particular order.
+     * @throws IOException Thrown when the files cannot be read or written.
+     */
+    Alarm[] recover() throws IOException {
+        Files.createDirectories(journalFile.getParent());
+        Replay replay = new Replay();
+
+        if (Files.exists(snapshotFile)) {
+            QueueSnapshot snapshot = SnapshotFile.read(snapshotFile);
+            for (int i = 0; i < snapshot.size(); i++) {
+                Alarm alarm = new Alarm(snapshot.id(i), snapshot.get(i));
+                alarm.setRecurrence(snapshot.recurrence(i));
+                replay.alarms.put(alarm);
+            }
+            snapshotSize = Files.size(snapshotFile);
+        }
+
+        channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        journalSize = replay.read(channel);
+        if (journalSize == 0) {
+            channel.truncate(0);
+            channel.write(header(), 0);
+            journalSize = HEADER_SIZE;
+        } else {
+            channel.truncate(journalSize);
+        }
+        channel.position(journalSize);
+        channel.force(true);
+
+        return replay.alarms.values();
+    }
+
+    /**
+     * Starts the journal thread. Must be called after {@link #recover()}.
+     *
+     * @param snapshots Source of the current queue, used for compaction.
+     */
+    void start(Supplier<QueueSnapshot> snapshots) {
+        start(snapshots, TimeSource.SYSTEM);
+    }
+
+    /**
+     * Starts the journal thread. Must be called after {@link #recover()}.
+     *
+     * @param snapshots Source of the current queue, used for compaction.
+     * @param timeSource Time source the snapshots written by compaction are dated by.
+     */
+    void start(Supplier<QueueSnapshot> snapshots, TimeSource timeSource) {
+        this.snapshots = snapshots;
+        this.timeSource = timeSource;
+        thread = new Thread(this, "Alarm journal");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Holds the journal, so that a change made to the queue meanwhile and the records appended for it are
+     * ordered the same way against changes made by other threads. Every change of the queue that is recorded
+     * must be made while holding it. Reentrant.
+     */
+    void lock() {
+        lock.lock();
+    }
+
+    void unlock() {
+        lock.unlock();
+    }
+
+    /**
+     * Records that an alarm was added.
+     *
+     * @param alarm Added alarm.
+     */
+    void added(Alarm alarm) {
+        lock.lock();
+        try {
+            appendAdd(alarm);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records that a batch of alarms was added.
+     *
+     * @param batch Added alarms.
+     */
+    void added(Alarm[] batch) {
+        lock.lock();
+        try {
+            for (Alarm alarm : batch) {
+                appendAdd(alarm);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records that an alarm was moved to another date.
+     *
+     * @param id ID of the alarm.
+     * @param dateInMilliseconds New date in milliseconds.
+     */
+    void rescheduled(long id, long dateInMilliseconds) {
+        lock.lock();
+        try {
+            append(RESCHEDULE, id, dateInMilliseconds);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the rule an alarm recurs by, after it was changed.
+     *
+     * @param id ID of the alarm.
+     * @param recurrence The new rule.
+     */
+    void ruled(long id, Recurrence recurrence) {
+        lock.lock();
+        try {
+            append(RULE, id, recurrence.pack());
+            append(UNTIL, id, recurrence.getUntil());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records that an alarm was cancelled.
+     *
+     * @param id ID of the alarm.
+     */
+    void cancelled(long id) {
+        lock.lock();
+        try {
+            append(CANCEL, id, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records that an alarm was taken off the queue to be fired, or dropped as missed.
+     *
+     * @param alarm Fired alarm.
+     */
+    void fired(Alarm alarm) {
+        lock.lock();
+        try {
+            append(FIRE, alarm.getId(), alarm.getDateInMilliseconds());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every record appended so far is on disk. The journal must have been started.
+     *
+     * @throws IOException Thrown when the journal could not be written.
+     * @throws InterruptedException Thrown when the thread is interrupted while waiting.
+     */
+    void sync() throws IOException, InterruptedException {
+        lock.lock();
+        try {
+            long target = appendedRecords;
+            while (syncedRecords < target && failure == null) {
+                synced.await();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the remaining records and closes the journal.
+     *
+     * @throws IOException Thrown when the journal could not be written.
+     * @throws InterruptedException Thrown when the thread is interrupted while waiting.
+     */
+    void close() throws IOException, InterruptedException {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        if (thread != null) {
+            thread.join();
+        }
+        if (channel != null) {
+            channel.close();
+        }
+
+        lock.lock();
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            long batchEnd;
+            boolean last;
+
+            lock.lock();
+            try {
+                while (pending.position() == 0 && !closed) {
+                    changed.awaitUninterruptibly();
+                }
+
+                // swaps the buffers, so appending goes on while this batch is written
+                ByteBuffer full = pending;
+                pending = writing;
+                writing = full;
+                batchEnd = appendedRecords;
+                last = closed;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                writing.flip();
+                while (writing.hasRemaining()) {
+                    journalSize += channel.write(writing);
+                }
+                writing.clear();
+                channel.force(false);
+
+                if (journalSize > Math.max(compactionSize, 2 * snapshotSize)) {
+                    compact();
+                }
+            } catch (IOException e) {
+                lock.lock();
+                try {
+                    failure = e;
+                    closed = true;
+                    synced.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+
+            lock.lock();
+            try {
+                syncedRecords = batchEnd;
+                synced.signalAll();
+                if (last && pending.position() == 0) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes the current queue to the snapshot file and empties the journal.
+     * Every record already written was appended after its change was made to the queue, so the snapshot
+     * covers it. Records still pending are written to the emptied journal afterwards.
+     *
+     * @throws IOException Thrown when the files cannot be written.
+     */
+    private void compact() throws IOException {
+        SnapshotFile.write(snapshotFile, snapshots.get(), timeSource.millis());
+
+        snapshotSize = Files.size(snapshotFile);
+        channel.truncate(HEADER_SIZE);
+        channel.position(HEADER_SIZE);
+        channel.force(true);
+        journalSize = HEADER_SIZE;
+    }
+
+    /**
+     * Adds the records of an added alarm to the pending buffer. Must be called under the lock.
+     */
+    private void appendAdd(Alarm alarm) {
+        append(ADD, alarm.getId(), alarm.getDateInMilliseconds());
+
+        Recurrence recurrence = alarm.getRecurrence();
+        if (recurrence != null) {
+            append(RULE, alarm.getId(), recurrence.pack());
+            append(UNTIL, alarm.getId(), recurrence.getUntil());
+        }
+    }
+
+    /**
+     * Adds a record to the pending buffer. Must be called under the lock.
+     */
+    private void append(byte type, long id, long dateInMilliseconds) {
+        if (closed) {
+            return;
+        }
+
+        if (pending.remaining() < RECORD_SIZE) {
+            ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2);
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+
+        boolean wasEmpty = pending.position() == 0;
+        putRecord(pending, type, id, dateInMilliseconds, crc);
+        appendedRecords++;
+        if (wasEmpty) {
+            changed.signal();
+        }
+    }
+
+    private static void putRecord(ByteBuffer buffer, byte type, long id, long dateInMilliseconds, CRC32 crc) {
+        int start = buffer.position();
+        buffer.put(type).putLong(id).putLong(dateInMilliseconds);
+
+        crc.reset();
+        crc.update(buffer.array(), buffer.arrayOffset() + start, RECORD_SIZE - 4);
+        buffer.putInt((int) crc.getValue());
+    }
+
+    private static ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(RECORD_SIZE).flip();
+
+        return header;
+    }
+
+    /**
+     * Rebuilds the queue from the records of the snapshot and the journal.
+     */
+    private static class Replay {
+        final AlarmIndex alarms = new AlarmIndex();
+
+        private final CRC32 crc = new CRC32();
+
+        /**
+         * Applies the records of a journal, stopping at the first one that is incomplete or corrupt.
+         *
+         * @param in File to read from the start.
+         * @return Number of bytes up to the end of the last valid record, or 0 when the file has no header yet.
+         * @throws IOException Thrown when the file cannot be read or is not a journal.
+         */
+        long read(FileChannel in) throws IOException {
+            long size = in.size();
+            if (size < HEADER_SIZE) {
+                return 0;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(4096 * RECORD_SIZE);
+            buffer.limit(HEADER_SIZE);
+            readFully(in, buffer, 0);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != RECORD_SIZE) {
+                throw new IOException("Not an alarm journal: " + in);
+            }
+
+            long position = HEADER_SIZE;
+            while (size - position >= RECORD_SIZE) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), (size - position) / RECORD_SIZE * RECORD_SIZE));
+                readFully(in, buffer, position);
+                buffer.flip();
+
+                while (buffer.remaining() >= RECORD_SIZE) {
+                    if (!apply(buffer)) {
+                        return position;
+                    }
+                    position += RECORD_SIZE;
+                }
+            }
+
+            // anything after the last whole record is torn
+            return position;
+        }
+
+        private static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (in.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of " + in);
+                }
+            }
+        }
+
+        private boolean apply(ByteBuffer buffer) {
+            int start = buffer.position();
+            crc.reset();
+            crc.update(buffer.array(), buffer.arrayOffset() + start, RECORD_SIZE - 4);
+
+            byte type = buffer.get();
+            long id = buffer.getLong();
+            long dateInMilliseconds = buffer.getLong();
+            if (buffer.getInt() != (int) crc.getValue()) {
+                return false;
+            }
+
+            // records of an alarm are in the order of its changes, so the last one wins
+            Alarm alarm;
+            switch (type) {
+                case ADD:
+                    alarms.put(new Alarm(id, dateInMilliseconds));
+                    return true;
+                case RESCHEDULE:
+                    alarm = alarms.get(id);
+                    if (alarm != null) {
+                        alarm.setDateInMilliseconds(dateInMilliseconds);
+                    }
+                    return true;
+                case CANCEL:
+                case FIRE:
+                    alarms.remove(id);
+                    return true;
+                case RULE:
+                    // the date field holds the packed rule, and the next record its UNTIL
+                    alarm = alarms.get(id);
+                    if (alarm != null) {
+                        alarm.setRecurrence(Recurrence.unpack(dateInMilliseconds, AlarmStore.NONE));
+                    }
+                    return true;
+                case UNTIL:
+                    alarm = alarms.get(id);
+                    if (alarm != null && alarm.getRecurrence() != null) {
+                        alarm.setRecurrence(alarm.getRecurrence().withUntil(dateInMilliseconds));
+                    }
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package clock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for AlarmJournal class.
+ */
+public class AlarmJournalTest {
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static long[] dates(Alarm[] alarms) {
+        return Arrays.stream(alarms).mapToLong(Alarm::getDateInMilliseconds).sorted().toArray();
+    }
+
+    /**
+     * Test for recover method.
+     * Adds, reschedules, cancels and fires should all be replayed after the journal is reopened.
+     */
+    @Test
+    public void recover_WhenReopened_ShouldReplayAllChanges() throws IOException, InterruptedException {
+        AlarmJournal journal = new AlarmJournal(directory);
+        assertEquals(0, journal.recover().length);
+        journal.start(() -> QueueSnapshot.EMPTY);
+
+        Alarm first = new Alarm(1000);
+        Alarm second = new Alarm(2000);
+        Alarm third = new Alarm(3000);
+        journal.added(new Alarm[]{first, second, third});
+        journal.rescheduled(second.getId(), 2500);
+        journal.cancelled(third.getId());
+        journal.fired(first);
+        journal.added(new Alarm(4000));
+        journal.sync();
+        journal.close();
+
+        Alarm[] recovered = new AlarmJournal(directory).recover();
+
+        assertArrayEquals(new long[]{2500, 4000}, dates(recovered));
+    }
+
+    /**
+     * Test for recover method.
+     * An alarm added again after it was cancelled and fired should be replayed with its last date.
+     */
+    @Test
+    public void recover_WhenIdAddedAgainAfterRemoval_ShouldKeepLastAdd() throws IOException, InterruptedException {
+        AlarmJournal journal = new AlarmJournal(directory);
+        journal.recover();
+        journal.start(() -> QueueSnapshot.EMPTY);
+
+        Alarm alarm = new Alarm(1000);
+        journal.added(alarm);
+        journal.cancelled(alarm.getId());
+        journal.added(new Alarm(alarm.getId(), 2000));
+        journal.fired(alarm);
+        journal.added(new Alarm(alarm.getId(), 3000));
+        journal.sync();
+        journal.close();
+
+        Alarm[] recovered = new AlarmJournal(directory).recover();
+
+        assertEquals(1, recovered.length);
+        assertEquals(alarm.getId(), recovered[0].getId());
+        assertEquals(3000, recovered[0].getDateInMilliseconds());
+    }
+
+    /**
+     * Test for recover method.
+     * A record torn by a crash should be cut off, keeping the records before it.
+     */
+    @Test
+    public void recover_WhenLastRecordTorn_ShouldKeepTheRest() throws IOException, InterruptedException {
+        AlarmJournal journal = new AlarmJournal(directory);
+        journal.recover();
+        journal.start(() -> QueueSnapshot.EMPTY);
+        journal.added(new Alarm(1000));
+        journal.added(new Alarm(2000));
+        journal.close();
+
+        Path file = directory.resolve(AlarmJournal.JOURNAL_FILE);
+        long size = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        AlarmJournal reopened = new AlarmJournal(directory);
+        assertArrayEquals(new long[]{1000}, dates(reopened.recover()));
+        reopened.start(() -> QueueSnapshot.EMPTY);
+        reopened.added(new Alarm(3000));
+        reopened.close();
+
+        assertArrayEquals(new long[]{1000, 3000}, dates(new AlarmJournal(directory).recover()));
+    }
+
+    /**
+     * Test for compaction.
+     * Once the journal outgrows the limit it should be replaced by a snapshot of the queue.
+     */
+    @Test
+    public void added_WhenJournalOutgrowsLimit_ShouldCompactIntoSnapshot() throws IOException, InterruptedException {
+        AlarmStore store = new SynchronizedAlarmStore();
+        AlarmJournal journal = new AlarmJournal(directory, 256);
+        journal.recover();
+        journal.start(store::snapshot);
+
+        for (int i = 0; i < 100; i++) {
+            Alarm alarm = new Alarm(i);
+            store.add(alarm);
+            journal.added(alarm);
+            if (i % 2 == 0) {
+                store.cancel(alarm.getId());
+                journal.cancelled(alarm.getId());
+            }
+            journal.sync();
+        }
+        journal.close();
+
+        assertTrue(Files.exists(directory.resolve(AlarmJournal.SNAPSHOT_FILE)));
+        // without compaction the journal would hold all 150 records of 21 bytes
+        assertTrue(Files.size(directory.resolve(AlarmJournal.JOURNAL_FILE)) < 150 * 21);
+        assertArrayEquals(store.snapshot().toArray(), dates(new AlarmJournal(directory).recover()));
+    }
+}
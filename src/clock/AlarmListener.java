@@ -0,0 +1,17 @@
+package clock;
+
+import java.util.List;
+
+/**
+ * Receives alarms once they have been fired.
+ * Listeners are called by the AlarmDispatcher thread, never by the thread that fires the alarms.
+ */
+@FunctionalInterface
+interface AlarmListener {
+    /**
+     * Called with a burst of alarms fired at about the same time.
+     *
+     * @param events Fired alarms, oldest first. Never empty.
+     */
+    void alarmsFired(List<AlarmEvent> events);
+}
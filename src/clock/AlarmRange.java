@@ -0,0 +1,103 @@
+package clock;
+
+import java.util.Arrays;
+
+/**
+ * Collects the earliest alarms within a range of dates while a store scans its heaps.
+ * Only as many alarms as the limit are kept, in a heap with the latest on top, so asking for the next
+ * few alarms of a large queue costs a scan of the queue rather than a sort of all of it.
+ */
+final class AlarmRange {
+    private final long from;
+    private final long to;
+    private final int limit;
+    private Alarm[] alarms;
+    private long[] dates;
+    private int size;
+
+    /**
+     * @param from Earliest date in milliseconds, inclusive.
+     * @param to Latest date in milliseconds, inclusive.
+     * @param limit Most alarms to keep.
+     */
+    AlarmRange(long from, long to, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Negative limit: " + limit);
+        }
+
+        this.from = from;
+        this.to = to;
+        this.limit = limit;
+        int capacity = Math.min(limit, 16);
+        alarms = new Alarm[capacity];
+        dates = new long[capacity];
+    }
+
+    /**
+     * Returns whether an alarm at a date would be kept, so a store can skip loading the alarms that would not.
+     *
+     * @param date Date in milliseconds.
+     * @return Whether the date is in the range and earlier than the latest kept one, if the limit was reached.
+     */
+    boolean accepts(long date) {
+        return date >= from && date <= to && (size < limit || (limit > 0 && date < dates[0]));
+    }
+
+    /**
+     * Keeps an alarm if it is in the range and among the earliest seen so far.
+     *
+     * @param alarm A queued alarm.
+     * @param date Date in milliseconds of the alarm, its priority in the heap it was found in.
+     */
+    void offer(Alarm alarm, long date) {
+        if (!accepts(date)) {
+            return;
+        }
+
+        if (size < limit) {
+            if (size == alarms.length) {
+                int capacity = (int) Math.min(limit, size * 2L);
+                alarms = Arrays.copyOf(alarms, capacity);
+                dates = Arrays.copyOf(dates, capacity);
+            }
+            int child = size++;
+            while (child > 0 && dates[(child - 1) / 2] < date) {
+                int parent = (child - 1) / 2;
+                alarms[child] = alarms[parent];
+                dates[child] = dates[parent];
+                child = parent;
+            }
+            alarms[child] = alarm;
+            dates[child] = date;
+        } else {
+            int parent = 0;
+            while (true) {
+                int child = 2 * parent + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && dates[child + 1] > dates[child]) {
+                    child++;
+                }
+                if (dates[child] <= date) {
+                    break;
+                }
+                alarms[parent] = alarms[child];
+                dates[parent] = dates[child];
+                parent = child;
+            }
+            alarms[parent] = alarm;
+            dates[parent] = date;
+        }
+    }
+
+    /**
+     * Returns the kept alarms, sorted by date.
+     *
+     * @param version Version of the store the alarms were collected from.
+     * @return Snapshot of the kept alarms.
+     */
+    QueueSnapshot toSnapshot(long version) {
+        return QueueSnapshot.of(version, Arrays.copyOf(alarms, size));
+    }
+}
@@ -0,0 +1,103 @@
+package clock;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sleeps until the exact time of the next alarm instead of polling the queue.
+ * The scheduler is woken by its engine whenever the head of the queue may have changed, and reads the head
+ * itself under its lock every time it wakes. Producers change the store before they wake the scheduler, so
+ * however their wake-ups are ordered, it never sleeps past a head it has not seen.
+ * Due alarms are taken off the store on the scheduler thread, which is the only thread firing alarms.
+ */
+class AlarmScheduler implements Runnable {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final AlarmEngine engine;
+    private final TimeSource timeSource;
+    private final Thread thread;
+    private boolean running;
+
+    /**
+     * @param engine Engine whose alarms are fired.
+     * @param timeSource Time source the deadlines are measured against.
+     */
+    AlarmScheduler(AlarmEngine engine, TimeSource timeSource) {
+        this.engine = engine;
+        this.timeSource = timeSource;
+        thread = new Thread(this, "Alarm scheduler");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts the scheduler thread.
+     */
+    void start() {
+        lock.lock();
+        try {
+            running = true;
+        } finally {
+            lock.unlock();
+        }
+        thread.start();
+    }
+
+    /**
+     * Stops the scheduler thread.
+     */
+    void stop() {
+        lock.lock();
+        try {
+            running = false;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wakes the scheduler to read the head of the queue again. Must be called after the queue was changed.
+     */
+    void headChanged() {
+        lock.lock();
+        try {
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            lock.lock();
+            try {
+                while (running) {
+                    // a change made after this read signals only once this thread waits, so it is never missed
+                    long deadline = engine.headMillis();
+                    if (deadline == AlarmStore.NONE) {
+                        changed.await();
+                        continue;
+                    }
+
+                    long nanos = timeSource.nanosUntil(deadline);
+                    if (nanos <= 0) {
+                        break;
+                    }
+                    changed.awaitNanos(nanos);
+                }
+
+                if (!running) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            // fired outside the lock, so adding alarms never waits for the alarms being fired
+            engine.checkAlarms(timeSource.millis());
+        }
+    }
+}
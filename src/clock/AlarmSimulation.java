@@ -0,0 +1,142 @@
+package clock;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays a large number of alarms through the real scheduler and dispatcher in accelerated virtual time,
+ * then reports the throughput and how accurately the alarms were fired.
+ *
+ * Usage: java -cp Clock.jar clock.AlarmSimulation [alarms] [days] [seconds]
+ * By default one million alarms spread over a year are replayed in 20 seconds.
+ */
+public class AlarmSimulation {
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    // lateness histogram buckets in virtual milliseconds: 0, then powers of two up to about 12 days
+    private static final int BUCKETS = 32;
+
+    private final long[] histogram = new long[BUCKETS];
+    private final AtomicLong fired = new AtomicLong();
+    private long maxLateness;
+    private double totalLateness;
+
+    public static void main(String[] args) throws InterruptedException {
+        int alarms = (args.length > 0) ? Integer.parseInt(args[0]) : 1_000_000;
+        int days = (args.length > 1) ? Integer.parseInt(args[1]) : 365;
+        int seconds = (args.length > 2) ? Integer.parseInt(args[2]) : 20;
+
+        System.setProperty("java.awt.headless", "true");
+        new AlarmSimulation().run(alarms, days * DAY, seconds);
+    }
+
+    /**
+     * Runs the simulation and prints the results.
+     *
+     * @param alarms Number of alarms to replay.
+     * @param span Virtual time the alarms are spread over, in milliseconds.
+     * @param seconds Real time the span is replayed in.
+     */
+    void run(int alarms, long span, int seconds) throws InterruptedException {
+        long origin = System.currentTimeMillis();
+        long[] dates = new long[alarms];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < alarms; i++) {
+            dates[i] = origin + 1000 + random.nextLong(span);
+        }
+
+        // every alarm must be fired, however late, so that its lateness can be measured
+        AlarmClock.setMissedAlarmPolicy(MissedAlarmPolicy.FIRE_LATE, Long.MAX_VALUE);
+        int queued = AlarmClock.addAlarms(dates); // alarms at the same date are only queued once
+
+        // virtual time only starts now, or the setup would be replayed at full speed and make early alarms late
+        ScaledTimeSource timeSource = new ScaledTimeSource(origin, (double) span / (seconds * 1000L));
+        AlarmClock.setTimeSource(timeSource);
+
+        CountDownLatch done = new CountDownLatch(1);
+        long start = System.nanoTime();
+        AlarmClock.start(events -> {
+            record(events);
+            if (fired.get() >= queued) {
+                done.countDown();
+            }
+        }, alarms);
+
+        boolean finished = done.await(seconds * 2L + 30, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - start;
+        AlarmClock.stop();
+
+        System.out.printf("alarms fired:       %,d of %,d%s%n", fired.get(), queued, finished ? "" : " (timed out)");
+        System.out.printf("virtual span:       %,d days at %,.0fx real time%n", span / DAY, timeSource.getSpeed());
+        System.out.printf("real time:          %,.2f s%n", elapsed / 1e9);
+        System.out.printf("throughput:         %,.0f alarms/s%n", fired.get() / (elapsed / 1e9));
+        System.out.printf("lateness mean:      %,.1f ms virtual (%,.1f us real)%n",
+                getMeanLateness(), getMeanLateness() / timeSource.getSpeed() * 1000);
+        System.out.printf("lateness p50:       <= %,d ms virtual%n", percentile(0.50));
+        System.out.printf("lateness p99:       <= %,d ms virtual%n", percentile(0.99));
+        System.out.printf("lateness max:       %,d ms virtual (%,.1f us real)%n",
+                maxLateness, maxLateness / timeSource.getSpeed() * 1000);
+    }
+
+    long getFired() {
+        return fired.get();
+    }
+
+    /**
+     * Returns the mean lateness of the fired alarms.
+     *
+     * @return Mean lateness in virtual milliseconds.
+     */
+    double getMeanLateness() {
+        return totalLateness / Math.max(1, fired.get());
+    }
+
+    long getMaxLateness() {
+        return maxLateness;
+    }
+
+    /**
+     * Adds a batch of fired alarms to the statistics. Called by the dispatcher thread only.
+     *
+     * @param events Fired alarms.
+     */
+    private void record(List<AlarmEvent> events) {
+        for (AlarmEvent event : events) {
+            long lateness = Math.max(0, event.getLateness());
+            histogram[bucket(lateness)] += event.getCount();
+            maxLateness = Math.max(maxLateness, lateness);
+            totalLateness += (double) lateness * event.getCount();
+            fired.addAndGet(event.getCount());
+        }
+    }
+
+    /**
+     * Returns the upper bound of the lateness bucket containing the given percentile.
+     *
+     * @param fraction Percentile as a fraction, for example 0.99.
+     * @return Upper bound of the bucket in virtual milliseconds.
+     */
+    private long percentile(double fraction) {
+        long target = (long) Math.ceil(fired.get() * fraction);
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += histogram[i];
+            if (count >= target) {
+                return (i == 0) ? 0 : (1L << i) - 1;
+            }
+        }
+
+        return maxLateness;
+    }
+
+    private static int bucket(long lateness) {
+        if (lateness == 0) {
+            return 0;
+        }
+
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(lateness));
+    }
+}
@@ -0,0 +1,42 @@
+package clock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for AlarmSimulation class.
+ */
+public class AlarmSimulationTest {
+    @Before
+    public void setUp() {
+        AlarmClock.setStore(new StripedAlarmStore());
+    }
+
+    @After
+    public void tearDown() {
+        AlarmClock.setTimeSource(TimeSource.SYSTEM);
+        AlarmClock.setMissedAlarmPolicy(MissedAlarmPolicy.FIRE_LATE, 60 * 1000);
+        AlarmClock.setStore(new StripedAlarmStore());
+    }
+
+    /**
+     * Test for run method.
+     * A small replay should fire every alarm close to its date, without counting the setup as lateness.
+     */
+    @Test
+    public void run_WhenSmallReplay_ShouldFireAlarmsNearlyOnTime() throws InterruptedException {
+        AlarmSimulation simulation = new AlarmSimulation();
+
+        // ten virtual seconds in one real second, so 1000 virtual ms of lateness are 100 real ms
+        simulation.run(2000, 10 * 1000, 1);
+
+        assertEquals(0, AlarmClock.size());
+        assertTrue(simulation.getFired() > 0);
+        assertTrue("mean lateness " + simulation.getMeanLateness(), simulation.getMeanLateness() < 500);
+        assertTrue("max lateness " + simulation.getMaxLateness(), simulation.getMaxLateness() < 1000);
+    }
+}
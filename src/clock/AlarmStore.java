@@ -0,0 +1,101 @@
+package clock;
+
+import java.time.ZoneId;
+
+/**
+ * Storage of the pending alarms, ordered by date.
+ * Implementations are safe to use from many threads: alarms can be added by any thread
+ * while the firing thread takes the due ones off the head.
+ * Alarms are identified by their ID, which must be unique within a store.
+ */
+interface AlarmStore {
+    /**
+     * Returned by {@link #headMillis()} when there are no alarms.
+     */
+    long NONE = Long.MAX_VALUE;
+
+    /**
+     * Adds an alarm.
+     *
+     * @param alarm Alarm to be added.
+     */
+    void add(Alarm alarm);
+
+    /**
+     * Adds a batch of alarms.
+     *
+     * @param alarms Alarms to be added.
+     */
+    void addAll(Alarm[] alarms);
+
+    /**
+     * Removes and returns the earliest alarm if it is due.
+     *
+     * @param currentTime Current date in milliseconds.
+     * @return An alarm due at or before the current time, or null when there is none.
+     */
+    Alarm pollDue(long currentTime);
+
+    /**
+     * Returns the date of the earliest alarm.
+     *
+     * @return Date in milliseconds of the earliest alarm, or NONE when there are no alarms.
+     */
+    long headMillis();
+
+    /**
+     * Returns the date of a queued alarm.
+     *
+     * @param id ID of the alarm.
+     * @return Date in milliseconds of the alarm, or NONE when no alarm with that ID is queued.
+     */
+    long dateOf(long id);
+
+    /**
+     * Removes a queued alarm.
+     *
+     * @param id ID of the alarm.
+     * @return Whether the alarm was removed; false when it was not queued, for example because it already fired.
+     */
+    boolean cancel(long id);
+
+    /**
+     * Moves a queued alarm to another date in place, keeping its ID. A recurring alarm then recurs at the
+     * time of day of its new date.
+     *
+     * @param id ID of the alarm.
+     * @param dateInMilliseconds New date in milliseconds.
+     * @param zone Time zone the time of day of the recurrence is taken in.
+     * @return The moved alarm, or null when it was not queued.
+     */
+    Alarm reschedule(long id, long dateInMilliseconds, ZoneId zone);
+
+    boolean isEmpty();
+
+    int size();
+
+    /**
+     * Returns the version of the store, which changes whenever an alarm is added or removed.
+     *
+     * @return Version of the store.
+     */
+    long version();
+
+    /**
+     * Returns a sorted snapshot of the alarm dates.
+     * While the store does not change, the same snapshot is returned without copying.
+     *
+     * @return Snapshot of the current version.
+     */
+    QueueSnapshot snapshot();
+
+    /**
+     * Returns the earliest alarms within a range of dates, without sorting the rest of the store.
+     *
+     * @param from Earliest date in milliseconds, inclusive.
+     * @param to Latest date in milliseconds, inclusive.
+     * @param limit Most alarms to return.
+     * @return Sorted snapshot of the alarms in the range.
+     */
+    QueueSnapshot range(long from, long to, int limit);
+}
@@ -29,4 +29,17 @@ public class AlarmTest {
     public void toStringTest() {
         assertEquals(alarm.toString(), "1500000000");
     }
-}
\ No newline at end of file
+
+    /**
+     * Test for getId method.
+     * New IDs should be numbered from the time the run started, so they are above those of runs before 2018,
+     * and should be exact as doubles.
+     */
+    @Test
+    public void getId_WhenAlarmCreated_ShouldBeNumberedFromStartOfRun() {
+        long id = new Alarm(1500000000L).getId();
+
+        assertTrue(id > 1514764800L << 21);
+        assertTrue(id < 1L << 53);
+    }
+}
@@ -1,12 +1,40 @@
 package clock;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 public class Clock {
+    static final Path JOURNAL_DIRECTORY = Paths.get(System.getProperty("user.home"), ".alarmclock");
     
     public static void main(String[] args) {
+        if (Boolean.parseBoolean(System.getProperty("clock.metrics", "true"))) {
+            ClockMetrics.register();
+        }
+
+        int recovered = 0;
+        try {
+            recovered = AlarmClock.openJournal(JOURNAL_DIRECTORY);
+        } catch (IOException e) {
+            System.err.println("Could not open the alarm journal: " + e.getMessage());
+        }
+
+        Integer httpPort = Integer.getInteger("clock.http.port");
+        if (httpPort != null) {
+            try {
+                ControlServer server = new ControlServer(httpPort);
+                server.start();
+                System.err.println("Listening on http://localhost:" + server.getPort() + " with token " + server.getToken());
+            } catch (IOException e) {
+                System.err.println("Could not start the HTTP control server: " + e.getMessage());
+            }
+        }
+
         Model model = new Model();
         View view = new View(model);
-        model.addObserver(view);
         Controller controller = new Controller(model, view);
-        AlarmClock.loadICalendar(); // opens up s dialogue box to load the alarms when started
+        if (recovered == 0) {
+            view.loadAlarmsDialogue(); // opens up s dialogue box to load the alarms when started
+        }
     }
 }
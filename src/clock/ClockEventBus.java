@@ -0,0 +1,166 @@
+package clock;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongConsumer;
+
+/**
+ * Delivers clock events to subscribers without locks.
+ * Each event carries a single value, the latest state of its topic. A subscriber that has not handled
+ * an event yet when the next one of the same topic is published receives only the latest value, once,
+ * so a slow subscriber such as a busy event dispatch thread never has a backlog to work through.
+ * Publishing a value equal to the last one of the topic notifies nobody.
+ */
+final class ClockEventBus {
+    /**
+     * Kinds of events, each with its own subscribers.
+     */
+    enum Topic {
+        /**
+         * The second shown by the clock changed. The value is the time in milliseconds.
+         */
+        SECOND_TICK,
+
+        /**
+         * The minute shown by the clock changed. The value is the time in milliseconds.
+         */
+        MINUTE_TICK,
+
+        /**
+         * Alarms were added or removed. The value is the version of the alarm store.
+         */
+        QUEUE_CHANGED
+    }
+
+    private static final Subscription[] NONE = new Subscription[0];
+    private static final int TOPICS = Topic.values().length;
+
+    private final AtomicLongArray latest = new AtomicLongArray(TOPICS);
+    private final AtomicReferenceArray<Subscription[]> subscriptions = new AtomicReferenceArray<>(TOPICS);
+
+    ClockEventBus() {
+        for (int i = 0; i < TOPICS; i++) {
+            latest.set(i, Long.MIN_VALUE);
+            subscriptions.set(i, NONE);
+        }
+    }
+
+    /**
+     * Subscribes to a topic.
+     *
+     * @param topic Topic of the events.
+     * @param executor Executor the handler runs on, for example SwingUtilities::invokeLater, or Runnable::run
+     *                 to run it on the publishing thread.
+     * @param handler Handler given the latest value of the topic.
+     * @return The subscription, which can be cancelled.
+     */
+    Subscription subscribe(Topic topic, Executor executor, LongConsumer handler) {
+        Subscription subscription = new Subscription(topic, executor, handler);
+        Subscription[] current;
+        Subscription[] updated;
+        do {
+            current = subscriptions.get(topic.ordinal());
+            updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = subscription;
+        } while (!subscriptions.compareAndSet(topic.ordinal(), current, updated));
+
+        return subscription;
+    }
+
+    /**
+     * Publishes the new value of a topic to its subscribers.
+     *
+     * @param topic Topic of the event.
+     * @param value New value of the topic.
+     */
+    void publish(Topic topic, long value) {
+        if (latest.getAndSet(topic.ordinal(), value) == value) {
+            return;
+        }
+
+        for (Subscription subscription : subscriptions.get(topic.ordinal())) {
+            subscription.schedule();
+        }
+    }
+
+    /**
+     * Returns the last value published to a topic.
+     *
+     * @param topic Topic of the events.
+     * @return The value, or Long.MIN_VALUE when nothing was published yet.
+     */
+    long latest(Topic topic) {
+        return latest.get(topic.ordinal());
+    }
+
+    private void unsubscribe(Subscription subscription) {
+        int topic = subscription.topic.ordinal();
+        Subscription[] current;
+        Subscription[] updated;
+        do {
+            current = subscriptions.get(topic);
+            int index = Arrays.asList(current).indexOf(subscription);
+            if (index < 0) {
+                return;
+            }
+            updated = new Subscription[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, updated.length - index);
+        } while (!subscriptions.compareAndSet(topic, current, updated));
+    }
+
+    /**
+     * A handler of one topic. At most one delivery is waiting on its executor at any time.
+     */
+    final class Subscription {
+        private final Topic topic;
+        private final Executor executor;
+        private final LongConsumer handler;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final Runnable delivery = this::deliver;
+        private volatile boolean cancelled;
+        private long deliveries;
+
+        private Subscription(Topic topic, Executor executor, LongConsumer handler) {
+            this.topic = topic;
+            this.executor = executor;
+            this.handler = handler;
+        }
+
+        /**
+         * Stops delivering events. A delivery already waiting on the executor does nothing.
+         */
+        void cancel() {
+            cancelled = true;
+            unsubscribe(this);
+        }
+
+        /**
+         * Returns how many times the handler was called, which is fewer than the events published
+         * when some were coalesced. Only meaningful on the thread of the executor.
+         *
+         * @return Number of deliveries.
+         */
+        long getDeliveries() {
+            return deliveries;
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(delivery);
+            }
+        }
+
+        private void deliver() {
+            // cleared before reading the value, so a value published from now on schedules another delivery
+            scheduled.set(false);
+            if (!cancelled) {
+                deliveries++;
+                handler.accept(latest.get(topic.ordinal()));
+            }
+        }
+    }
+}
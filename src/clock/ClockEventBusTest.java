@@ -0,0 +1,106 @@
+package clock;
+
+import org.junit.Test;
+
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for ClockEventBus class.
+ */
+public class ClockEventBusTest {
+
+    /**
+     * Test for publish method.
+     * A subscriber that falls behind should get only the latest value, once.
+     */
+    @Test
+    public void publish_WhenSubscriberFallsBehind_ShouldDeliverLatestValueOnce() {
+        ClockEventBus bus = new ClockEventBus();
+        Queue<Runnable> pending = new ArrayDeque<>();
+        List<Long> received = new ArrayList<>();
+        ClockEventBus.Subscription subscription =
+                bus.subscribe(ClockEventBus.Topic.SECOND_TICK, pending::add, received::add);
+
+        for (long second = 1; second <= 100; second++) {
+            bus.publish(ClockEventBus.Topic.SECOND_TICK, second * 1000);
+        }
+        assertEquals(1, pending.size());
+        pending.poll().run();
+
+        bus.publish(ClockEventBus.Topic.SECOND_TICK, 101 * 1000);
+        pending.poll().run();
+
+        assertEquals(List.of(100 * 1000L, 101 * 1000L), received);
+        assertEquals(2, subscription.getDeliveries());
+    }
+
+    /**
+     * Test for publish method.
+     * Subscribers should only hear about their own topic, and not about a value that did not change.
+     */
+    @Test
+    public void publish_WhenValueUnchangedOrOtherTopic_ShouldNotNotify() {
+        ClockEventBus bus = new ClockEventBus();
+        AtomicLong queueChanges = new AtomicLong();
+        ClockEventBus.Subscription subscription =
+                bus.subscribe(ClockEventBus.Topic.QUEUE_CHANGED, Runnable::run, version -> queueChanges.incrementAndGet());
+
+        bus.publish(ClockEventBus.Topic.QUEUE_CHANGED, 7);
+        bus.publish(ClockEventBus.Topic.QUEUE_CHANGED, 7);
+        bus.publish(ClockEventBus.Topic.SECOND_TICK, 1000);
+        assertEquals(1, queueChanges.get());
+
+        subscription.cancel();
+        bus.publish(ClockEventBus.Topic.QUEUE_CHANGED, 8);
+        assertEquals(1, queueChanges.get());
+        assertEquals(8, bus.latest(ClockEventBus.Topic.QUEUE_CHANGED));
+    }
+
+    /**
+     * Test for update method of Model.
+     * Should publish a second tick every second but a minute tick only when the minute changes.
+     */
+    @Test
+    public void update_WhenSecondsPass_ShouldPublishMinuteTickOncePerMinute() {
+        ClockEventBus bus = new ClockEventBus();
+        AtomicLong now = new AtomicLong(1526832000000L); // 16:00:00 UTC
+        Model model = new Model(now::get, bus);
+        AtomicLong seconds = new AtomicLong();
+        AtomicLong minutes = new AtomicLong();
+        bus.subscribe(ClockEventBus.Topic.SECOND_TICK, Runnable::run, millis -> seconds.incrementAndGet());
+        bus.subscribe(ClockEventBus.Topic.MINUTE_TICK, Runnable::run, millis -> minutes.incrementAndGet());
+
+        for (int i = 0; i < 120; i++) {
+            now.addAndGet(1000);
+            model.update();
+        }
+
+        assertEquals(120, seconds.get());
+        assertEquals(2, minutes.get());
+    }
+
+    /**
+     * Test for update method of Model.
+     * The time shown should be the local time of the zone set on the alarm clock, like the alarm hand.
+     */
+    @Test
+    public void update_WhenZoneSet_ShouldShowItsLocalTime() {
+        try {
+            AlarmClock.setZone(ZoneId.of("Asia/Kolkata"));
+            Model model = new Model(() -> 1526832030000L, new ClockEventBus()); // 16:00:30 UTC
+
+            assertEquals(21, model.hour);
+            assertEquals(30, model.minute);
+            assertEquals(30, model.second);
+        } finally {
+            AlarmClock.setZone(ZoneId.systemDefault());
+        }
+    }
+}
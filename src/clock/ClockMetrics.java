@@ -0,0 +1,416 @@
+package clock;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the alarm engine, the clock face and the iCalendar files, exposed over JMX.
+ * Nothing is recorded until {@link #register()} is called, so the hooks in the engine cost a single
+ * volatile read when metrics are off. Counters are striped adders, so recording never contends.
+ */
+final class ClockMetrics implements ClockMetricsMXBean {
+    static final String OBJECT_NAME = "clock:type=AlarmClock";
+    static final int LATENESS_BUCKETS = 24;
+
+    private static final ClockMetrics INSTANCE = new ClockMetrics();
+    private static volatile boolean enabled;
+
+    private final Rate adds = new Rate();
+    private final Rate removes = new Rate();
+    private final LongAdder[] lateness = new LongAdder[LATENESS_BUCKETS];
+    private final LongAccumulator maxLateness = new LongAccumulator(Math::max, 0);
+    private final Duration checkAlarms = new Duration();
+    private final Duration frames = new Duration();
+    private final Rate repaintedPixels = new Rate();
+    private final LongAdder ticks = new LongAdder();
+    private final LongAdder tickLateness = new LongAdder();
+    private final LongAdder listenerFailures = new LongAdder();
+    private final Throughput loads = new Throughput();
+    private final Throughput saves = new Throughput();
+
+    private ClockMetrics() {
+        for (int i = 0; i < LATENESS_BUCKETS; i++) {
+            lateness[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Registers the MBean with the platform MBean server and starts recording. Does nothing when already
+     * registered. When the MBean cannot be registered nothing is recorded, since nobody could read it.
+     *
+     * @return The metrics.
+     */
+    static synchronized ClockMetrics register() {
+        if (!enabled) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+                enabled = true;
+            } catch (JMException e) {
+                System.err.println("Could not register the alarm clock MBean: " + e.getMessage());
+            }
+        }
+
+        return INSTANCE;
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the current time for timing a hook, or 0 without asking the clock when metrics are off.
+     *
+     * @return Current value of System.nanoTime(), or 0.
+     */
+    static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    static void added(int count) {
+        if (enabled) {
+            INSTANCE.adds.count.add(count);
+        }
+    }
+
+    static void removed(int count) {
+        if (enabled) {
+            INSTANCE.removes.count.add(count);
+        }
+    }
+
+    /**
+     * Records how late an alarm fired.
+     *
+     * @param latenessInMilliseconds Time between the date of the alarm and when it was taken off the queue.
+     */
+    static void fired(long latenessInMilliseconds) {
+        if (enabled) {
+            long late = Math.max(0, latenessInMilliseconds);
+            int bucket = Math.min(LATENESS_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(late));
+            INSTANCE.lateness[bucket].increment();
+            INSTANCE.maxLateness.accumulate(late);
+        }
+    }
+
+    /**
+     * Records that the listener of a tenant's engine threw while handling its alarms.
+     */
+    static void listenerFailed() {
+        if (enabled) {
+            INSTANCE.listenerFailures.increment();
+        }
+    }
+
+    /**
+     * Records a run of checkAlarms.
+     *
+     * @param start Value returned by {@link #start()} before the run.
+     */
+    static void checkedAlarms(long start) {
+        if (enabled && start != 0) {
+            INSTANCE.checkAlarms.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records a paint of the clock face.
+     *
+     * @param start Value returned by {@link #start()} before painting.
+     */
+    static void painted(long start) {
+        if (enabled && start != 0) {
+            INSTANCE.frames.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records the area repainted by a paint of the clock face.
+     *
+     * @param pixels Pixels inside the clip of the paint.
+     */
+    static void repainted(long pixels) {
+        if (enabled) {
+            INSTANCE.repaintedPixels.count.add(pixels);
+        }
+    }
+
+    /**
+     * Records a tick of the model.
+     *
+     * @param latenessInMilliseconds Time since the start of the second the tick shows.
+     */
+    static void ticked(long latenessInMilliseconds) {
+        if (enabled) {
+            INSTANCE.ticks.increment();
+            INSTANCE.tickLateness.add(latenessInMilliseconds);
+        }
+    }
+
+    /**
+     * Records the load of an iCalendar file.
+     *
+     * @param alarms Number of alarms read.
+     * @param bytes Size of the file.
+     * @param start Value returned by {@link #start()} before loading.
+     */
+    static void loaded(int alarms, long bytes, long start) {
+        if (enabled && start != 0) {
+            INSTANCE.loads.record(alarms, bytes, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records the save of an iCalendar file.
+     *
+     * @param alarms Number of alarms written.
+     * @param bytes Size of the file.
+     * @param start Value returned by {@link #start()} before saving.
+     */
+    static void saved(int alarms, long bytes, long start) {
+        if (enabled && start != 0) {
+            INSTANCE.saves.record(alarms, bytes, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return AlarmClock.size();
+    }
+
+    @Override
+    public long getAlarmsAdded() {
+        return adds.count.sum();
+    }
+
+    @Override
+    public long getAlarmsRemoved() {
+        return removes.count.sum();
+    }
+
+    @Override
+    public double getAddsPerSecond() {
+        return adds.perSecond();
+    }
+
+    @Override
+    public double getRemovesPerSecond() {
+        return removes.perSecond();
+    }
+
+    @Override
+    public long[] getFiringLatenessHistogram() {
+        long[] counts = new long[LATENESS_BUCKETS];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = lateness[i].sum();
+        }
+
+        return counts;
+    }
+
+    @Override
+    public long getFiringLatenessP50Millis() {
+        return latenessPercentile(0.5);
+    }
+
+    @Override
+    public long getFiringLatenessP99Millis() {
+        return latenessPercentile(0.99);
+    }
+
+    @Override
+    public long getFiringLatenessMaxMillis() {
+        return maxLateness.get();
+    }
+
+    /**
+     * Returns the upper bound of the bucket holding a percentile of the lateness.
+     */
+    private long latenessPercentile(double percentile) {
+        long[] counts = getFiringLatenessHistogram();
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < counts.length - 1; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return (i == 0) ? 0 : Math.min(1L << i, getFiringLatenessMaxMillis());
+            }
+        }
+
+        return getFiringLatenessMaxMillis();
+    }
+
+    @Override
+    public long getCheckAlarmsCount() {
+        return checkAlarms.count.sum();
+    }
+
+    @Override
+    public double getCheckAlarmsMeanMicros() {
+        return checkAlarms.meanMicros();
+    }
+
+    @Override
+    public double getCheckAlarmsMaxMicros() {
+        return checkAlarms.max.get() / 1000.0;
+    }
+
+    @Override
+    public long getFramesPainted() {
+        return frames.count.sum();
+    }
+
+    @Override
+    public double getFrameTimeMeanMicros() {
+        return frames.meanMicros();
+    }
+
+    @Override
+    public double getFrameTimeMaxMicros() {
+        return frames.max.get() / 1000.0;
+    }
+
+    @Override
+    public long getRepaintedPixels() {
+        return repaintedPixels.count.sum();
+    }
+
+    @Override
+    public double getRepaintedPixelsPerSecond() {
+        return repaintedPixels.perSecond();
+    }
+
+    @Override
+    public long getListenerFailures() {
+        return listenerFailures.sum();
+    }
+
+    @Override
+    public double getTickLatenessMeanMillis() {
+        long count = ticks.sum();
+        return (count == 0) ? 0 : (double) tickLateness.sum() / count;
+    }
+
+    @Override
+    public double getICalendarLoadAlarmsPerSecond() {
+        return loads.perSecond(loads.alarms);
+    }
+
+    @Override
+    public double getICalendarLoadBytesPerSecond() {
+        return loads.perSecond(loads.bytes);
+    }
+
+    @Override
+    public double getICalendarSaveAlarmsPerSecond() {
+        return saves.perSecond(saves.alarms);
+    }
+
+    @Override
+    public double getICalendarSaveBytesPerSecond() {
+        return saves.perSecond(saves.bytes);
+    }
+
+    @Override
+    public void reset() {
+        adds.count.reset();
+        removes.count.reset();
+        for (LongAdder bucket : lateness) {
+            bucket.reset();
+        }
+        maxLateness.reset();
+        checkAlarms.reset();
+        frames.reset();
+        repaintedPixels.count.reset();
+        ticks.reset();
+        tickLateness.reset();
+        listenerFailures.reset();
+        loads.reset();
+        saves.reset();
+    }
+
+    /**
+     * A counter with its rate between the last two reads that were at least a second apart.
+     */
+    private static final class Rate {
+        final LongAdder count = new LongAdder();
+        private long lastCount;
+        private long lastNanos = System.nanoTime();
+        private double rate;
+
+        synchronized double perSecond() {
+            long now = System.nanoTime();
+            long elapsed = now - lastNanos;
+            if (elapsed >= 1_000_000_000L) {
+                long current = count.sum();
+                rate = (current - lastCount) * 1e9 / elapsed;
+                lastCount = current;
+                lastNanos = now;
+            }
+
+            return rate;
+        }
+    }
+
+    /**
+     * Number, total and longest of a timed operation.
+     */
+    private static final class Duration {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        double meanMicros() {
+            long n = count.sum();
+            return (n == 0) ? 0 : totalNanos.sum() / 1000.0 / n;
+        }
+
+        void reset() {
+            count.reset();
+            totalNanos.reset();
+            max.reset();
+        }
+    }
+
+    /**
+     * Alarms and bytes moved by file operations, and the time they took.
+     */
+    private static final class Throughput {
+        final LongAdder alarms = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+
+        void record(int alarmCount, long byteCount, long elapsed) {
+            alarms.add(alarmCount);
+            bytes.add(byteCount);
+            nanos.add(elapsed);
+        }
+
+        double perSecond(LongAdder amount) {
+            long elapsed = nanos.sum();
+            return (elapsed == 0) ? 0 : amount.sum() * 1e9 / elapsed;
+        }
+
+        void reset() {
+            alarms.reset();
+            bytes.reset();
+            nanos.reset();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package clock;
+
+/**
+ * Management interface of the alarm clock, registered as clock:type=AlarmClock.
+ * Everything but the listener failures describes the engine behind AlarmClock only; the engines of
+ * tenants on a ShardedAlarmScheduler are not counted, so the counters agree with the queue depth.
+ * Rates are measured between two reads of at least a second apart, throughputs over all loads and saves.
+ */
+public interface ClockMetricsMXBean {
+    int getQueueDepth();
+
+    long getAlarmsAdded();
+
+    long getAlarmsRemoved();
+
+    double getAddsPerSecond();
+
+    double getRemovesPerSecond();
+
+    /**
+     * Returns how many alarms fired with a lateness in each bucket.
+     * Bucket 0 counts alarms late by less than 1 ms and bucket i alarms late by less than 2^i ms;
+     * the last bucket counts everything later.
+     *
+     * @return Count of fired alarms per bucket.
+     */
+    long[] getFiringLatenessHistogram();
+
+    long getFiringLatenessP50Millis();
+
+    long getFiringLatenessP99Millis();
+
+    long getFiringLatenessMaxMillis();
+
+    long getCheckAlarmsCount();
+
+    double getCheckAlarmsMeanMicros();
+
+    double getCheckAlarmsMaxMicros();
+
+    long getFramesPainted();
+
+    double getFrameTimeMeanMicros();
+
+    double getFrameTimeMaxMicros();
+
+    /**
+     * Returns how many pixels the clock face repainted, counting the clip of each paint.
+     * Only the hands are repainted on a tick, so this stays far below the area of the panel times the frames.
+     *
+     * @return Repainted pixels.
+     */
+    long getRepaintedPixels();
+
+    double getRepaintedPixelsPerSecond();
+
+    /**
+     * Returns how many times the listener of a tenant's engine failed while handling fired alarms,
+     * over all tenants.
+     *
+     * @return Failed listener calls.
+     */
+    long getListenerFailures();
+
+    double getTickLatenessMeanMillis();
+
+    double getICalendarLoadAlarmsPerSecond();
+
+    double getICalendarLoadBytesPerSecond();
+
+    double getICalendarSaveAlarmsPerSecond();
+
+    double getICalendarSaveBytesPerSecond();
+
+    /**
+     * Sets every counter back to zero.
+     */
+    void reset();
+}
@@ -0,0 +1,90 @@
+package clock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for ClockMetrics class.
+ */
+public class ClockMetricsTest {
+    private ClockMetrics metrics;
+
+    @Before
+    public void setUp() {
+        AlarmClock.setStore(new StripedAlarmStore());
+        AlarmClock.setMissedAlarmPolicy(MissedAlarmPolicy.FIRE_LATE, 60 * 1000);
+        metrics = ClockMetrics.register();
+        metrics.reset();
+    }
+
+    /**
+     * Test for fired method.
+     * Alarms fired by checkAlarms should be counted in the lateness bucket of their lateness.
+     */
+    @Test
+    public void fired_WhenAlarmsChecked_ShouldCountLateness() {
+        AlarmClock.addAlarms(new long[]{1000, 1990, 1999, 5000});
+
+        AlarmClock.checkAlarms(2000);
+
+        long[] histogram = metrics.getFiringLatenessHistogram();
+        assertEquals(1, histogram[1]); // 1 ms late
+        assertEquals(1, histogram[4]); // 10 ms late
+        assertEquals(1, histogram[10]); // 1000 ms late
+        assertEquals(1000, metrics.getFiringLatenessP99Millis());
+        assertEquals(4, metrics.getAlarmsAdded());
+        assertEquals(3, metrics.getAlarmsRemoved());
+        assertEquals(1, metrics.getCheckAlarmsCount());
+    }
+
+    /**
+     * Test for register method.
+     * The metrics should be readable through the platform MBean server.
+     */
+    @Test
+    public void register_WhenCalled_ShouldExposeMBean() throws JMException {
+        AlarmClock.addAlarm(Long.MAX_VALUE - 1);
+
+        Object depth = ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName(ClockMetrics.OBJECT_NAME), "QueueDepth");
+
+        assertEquals(1, depth);
+    }
+
+    /**
+     * Test for repainted method.
+     * Repainting only the hands on a tick should count fewer pixels than repainting the whole face.
+     */
+    @Test
+    public void repainted_WhenOnlyHandsRepainted_ShouldCountFewerPixelsThanFullRepaint() {
+        ClockPanel panel = new ClockPanel(new Model(() -> 0));
+        panel.setSize(200, 200);
+        BufferedImage image = new BufferedImage(200, 200, BufferedImage.TYPE_INT_RGB);
+
+        Graphics full = image.createGraphics();
+        panel.paintComponent(full);
+        full.dispose();
+        long fullPixels = metrics.getRepaintedPixels();
+
+        Rectangle hands = new Rectangle();
+        panel.handsRegion(hands);
+        Graphics tick = image.createGraphics();
+        tick.setClip(hands);
+        panel.paintComponent(tick);
+        tick.dispose();
+        long handPixels = metrics.getRepaintedPixels() - fullPixels;
+
+        assertEquals(200 * 200, fullPixels);
+        assertTrue(handPixels > 0);
+        assertTrue(handPixels < fullPixels);
+    }
+}
@@ -1,43 +1,256 @@
 package clock;
 
-import queuemanager.QueueUnderflowException;
-
 import java.awt.*;
 import java.awt.geom.*;
 import java.awt.font.*;
+import java.awt.image.BufferedImage;
 import javax.swing.*;
 
 public class ClockPanel extends JPanel {
-    
+
+    private static final BasicStroke TICK_STROKE = new BasicStroke(1);
+    private static final BasicStroke HOUR_STROKE = new BasicStroke(2.0f);
+    private static final BasicStroke MINUTE_STROKE = new BasicStroke(1.1f);
+    private static final BasicStroke SECOND_STROKE = new BasicStroke(0);
+    private static final BasicStroke ALARM_STROKE = new BasicStroke(0.5f);
+
+    // extra pixels around the hands, covering the stroke width and antialiasing
+    private static final int HAND_MARGIN = 3;
+
     Model model;
-    
+
+    // the tick marks and numbers only change when the panel is resized or moved to a display with another
+    // scale, so they are drawn once into an image with one pixel per device pixel
+    private BufferedImage face;
+    private int faceWidth;
+    private int faceHeight;
+    private double faceScaleX;
+    private double faceScaleY;
+    private final Line2D.Double hand = new Line2D.Double();
+
+    // bounds of the hands drawn by the last paint, which have to be erased by the next one
+    private final Rectangle paintedHands = new Rectangle();
+    private final Rectangle dirtyRegion = new Rectangle();
+    private final Rectangle clip = new Rectangle();
+
     public ClockPanel(Model m) {
         model = m;
         setPreferredSize(new Dimension(200, 200));
         setBackground(Color.white);
     }
-    
+
+    /**
+     * Repaints only the region covered by the hands before and after the last model update.
+     * The whole panel is repainted when the face has not been drawn for the current size yet.
+     */
+    void repaintHands() {
+        if (face == null || faceWidth != getWidth() || faceHeight != getHeight()) {
+            repaint();
+            return;
+        }
+
+        handsRegion(dirtyRegion);
+        repaint(dirtyRegion.x, dirtyRegion.y, dirtyRegion.width, dirtyRegion.height);
+    }
+
+    /**
+     * Sets the rectangle to the region covered by the hands before and after the last model update,
+     * which is all a tick has to repaint.
+     *
+     * @param region Rectangle to be set.
+     */
+    void handsRegion(Rectangle region) {
+        handBounds(region);
+        region.add(paintedHands);
+        region.grow(HAND_MARGIN, HAND_MARGIN);
+    }
+
     public void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        
-        Rectangle bounds = getBounds();
-        //System.out.println(bounds);
-        
+        int width = getWidth();
+        int height = getHeight();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        long start = ClockMetrics.start();
+        FramePaintedEvent event = new FramePaintedEvent();
+        event.begin();
+        paintClock(g, width, height);
+        event.end();
+
+        ClockMetrics.painted(start);
+        if (event.shouldCommit()) {
+            clip.setBounds(0, 0, width, height);
+            g.getClipBounds(clip);
+            event.width = clip.width;
+            event.height = clip.height;
+            event.commit();
+        }
+    }
+
+    private void paintClock(Graphics g, int width, int height) {
         Graphics2D gg = (Graphics2D) g;
-        int x0 = bounds.width / 2;
-        int y0 = bounds.height / 2;
-        
+        AffineTransform transform = gg.getTransform();
+        double scaleX = transform.getScaleX();
+        double scaleY = transform.getScaleY();
+        if (face == null || faceWidth != width || faceHeight != height || faceScaleX != scaleX || faceScaleY != scaleY) {
+            face = createFace(width, height, scaleX, scaleY);
+            faceWidth = width;
+            faceHeight = height;
+            faceScaleX = scaleX;
+            faceScaleY = scaleY;
+        }
+        if (ClockMetrics.isEnabled()) {
+            countRepaintedPixels(g, width, height);
+        }
+
+        // the face includes the background, so it replaces super.paintComponent;
+        // it is drawn unscaled, so that each of its pixels covers one device pixel
+        gg.scale(1 / scaleX, 1 / scaleY);
+        gg.drawImage(face, 0, 0, null);
+        gg.setTransform(transform);
+
+        int x0 = width / 2;
+        int y0 = height / 2;
+        int size = Math.min(x0, y0);
+        Color color = gg.getColor();
+        paintedHands.setBounds(x0, y0, 0, 0);
+
+        // Draw the hour hand
+        gg.setStroke(HOUR_STROKE);
+        drawHand(gg, x0, y0, 0.5 * size, hourDegrees());
+
+        // Draw the minute hand
+        gg.setStroke(MINUTE_STROKE);
+        drawHand(gg, x0, y0, 0.75 * size, minuteDegrees());
+
+        // Draw the second hand
+        gg.setColor(Color.red);
+        gg.setStroke(SECOND_STROKE);
+        drawHand(gg, x0, y0, 0.75 * size, secondDegrees());
+
+        // Draw the next alarm hand
+        long dateInMilliseconds = AlarmClock.headMillis();
+        if (dateInMilliseconds != AlarmStore.NONE) {
+            gg.setStroke(ALARM_STROKE);
+            drawHand(gg, x0, y0, 0.5 * size, alarmDegrees(dateInMilliseconds));
+        }
+
+        gg.setColor(color);
+    }
+
+    private double hourDegrees() {
+        return (model.hour + model.minute / 60.0) * 30;
+    }
+
+    private double minuteDegrees() {
+        return (model.minute + model.second / 60.0) * 6;
+    }
+
+    private double secondDegrees() {
+        return model.second * 6;
+    }
+
+    private static double alarmDegrees(long dateInMilliseconds) {
+        int hours = AlarmClock.millisecondsToHours(dateInMilliseconds);
+        int minutes = AlarmClock.millisecondsToMinutes(dateInMilliseconds);
+
+        return (hours + minutes / 60.0) * 30;
+    }
+
+    /**
+     * Draws a hand from the centre of the clock and adds it to the painted bounds.
+     *
+     * @param gg Graphics to draw on.
+     * @param x0 X coordinate of the centre.
+     * @param y0 Y coordinate of the centre.
+     * @param radius Length of the hand.
+     * @param degrees Angle of the hand, clockwise from 12 o'clock.
+     */
+    private void drawHand(Graphics2D gg, int x0, int y0, double radius, double degrees) {
+        double theta = (90 - degrees) / (180 / Math.PI);
+        hand.setLine(x0, y0, x0 + radius * Math.cos(theta), y0 - radius * Math.sin(theta));
+        gg.draw(hand);
+        addHand(paintedHands, x0, y0, radius, degrees);
+    }
+
+    /**
+     * Sets the rectangle to the bounds of all hands for the current state of the model, without the margin.
+     *
+     * @param bounds Rectangle to be set.
+     */
+    private void handBounds(Rectangle bounds) {
+        int x0 = getWidth() / 2;
+        int y0 = getHeight() / 2;
+        int size = Math.min(x0, y0);
+
+        bounds.setBounds(x0, y0, 0, 0);
+        addHand(bounds, x0, y0, 0.5 * size, hourDegrees());
+        addHand(bounds, x0, y0, 0.75 * size, minuteDegrees());
+        addHand(bounds, x0, y0, 0.75 * size, secondDegrees());
+
+        long dateInMilliseconds = AlarmClock.headMillis();
+        if (dateInMilliseconds != AlarmStore.NONE) {
+            addHand(bounds, x0, y0, 0.5 * size, alarmDegrees(dateInMilliseconds));
+        }
+    }
+
+    private static void addHand(Rectangle bounds, int x0, int y0, double radius, double degrees) {
+        double theta = (90 - degrees) / (180 / Math.PI);
+        double x1 = x0 + radius * Math.cos(theta);
+        double y1 = y0 - radius * Math.sin(theta);
+        bounds.add((int) Math.floor(x1), (int) Math.floor(y1));
+        bounds.add((int) Math.ceil(x1), (int) Math.ceil(y1));
+    }
+
+    /**
+     * Adds the area being painted to the repainted pixels of the metrics. Only called while metrics are recorded.
+     *
+     * @param g Graphics being painted.
+     * @param width Width of the panel.
+     * @param height Height of the panel.
+     */
+    private void countRepaintedPixels(Graphics g, int width, int height) {
+        // left as the whole panel when there is no clip
+        clip.setBounds(0, 0, width, height);
+        g.getClipBounds(clip);
+        ClockMetrics.repainted((long) clip.width * clip.height);
+    }
+
+    /**
+     * Draws the background, tick marks and numbers of the clock face into an image of the given size
+     * in device pixels, so that it stays sharp on a scaled display.
+     *
+     * @param width Width of the panel.
+     * @param height Height of the panel.
+     * @param scaleX Device pixels per pixel of the panel horizontally.
+     * @param scaleY Device pixels per pixel of the panel vertically.
+     * @return Image of the clock face.
+     */
+    private BufferedImage createFace(int width, int height, double scaleX, double scaleY) {
+        int imageWidth = (int) Math.ceil(width * scaleX);
+        int imageHeight = (int) Math.ceil(height * scaleY);
+        GraphicsConfiguration configuration = getGraphicsConfiguration();
+        BufferedImage image = (configuration != null)
+                ? configuration.createCompatibleImage(imageWidth, imageHeight, Transparency.OPAQUE)
+                : new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
+
+        Graphics2D gg = image.createGraphics();
+        gg.scale(scaleX, scaleY);
+        gg.setColor(getBackground());
+        gg.fillRect(0, 0, width, height);
+        gg.setColor(getForeground());
+
+        int x0 = width / 2;
+        int y0 = height / 2;
+
         int size = Math.min(x0, y0);
-        //gg.translate(x0, y0);
-        //gg.scale(size, size);
-        //gg.setStroke(new BasicStroke(0));
-        
-        gg.setStroke(new BasicStroke(1));
-        
-        // gg.draw(new Ellipse2D.Double(-1, -1, 2, 2));
-        
+
+        gg.setStroke(TICK_STROKE);
+
         double radius = 0;
         double theta = 0;
+        Line2D.Double tick = new Line2D.Double();
         // Draw the tick marks around the outside
         for (int n = 0; n < 60; n++) {
             theta = (90 - n * 6) / (180 / Math.PI);
@@ -51,10 +264,10 @@ public class ClockPanel extends JPanel {
             radius = 0.75 * size;
             double x2 = x0 + radius * Math.cos(theta);
             double y2 = y0 - radius * Math.sin(theta);
-            gg.draw(new Line2D.Double(x1, y1, x2, y2));
+            tick.setLine(x1, y1, x2, y2);
+            gg.draw(tick);
         }
         // Draw the numbers
-        // Font font = new Font("SansSerif", Font.BOLD, size / 5);
         Font font = new Font("SansSerif", Font.PLAIN, size / 5);
         gg.setFont(font);
         for (int n = 1; n <= 12; n++) {
@@ -67,55 +280,15 @@ public class ClockPanel extends JPanel {
             // the exact dimensions of the box
             FontRenderContext context = gg.getFontRenderContext();
             Rectangle2D msgbounds = font.getStringBounds(s, context);
-            double ascent = -msgbounds.getY();
             double descent = msgbounds.getHeight() + msgbounds.getY();
-            double height = msgbounds.getHeight();
-            double width = msgbounds.getWidth();
-            gg.drawString(s, new Float(x1 - width / 2),
-                    new Float(y1 + height / 2 - descent));
+            double textHeight = msgbounds.getHeight();
+            double textWidth = msgbounds.getWidth();
+            gg.drawString(s, (float) (x1 - textWidth / 2),
+                    (float) (y1 + textHeight / 2 - descent));
         }
-        // Draw the hour hand
-        gg.setStroke(new BasicStroke(2.0f));
-        theta = (90 - (model.hour + model.minute / 60.0) * 30) / (180 / Math.PI);
-        radius = 0.5 * size;
-        double x1 = x0 + radius * Math.cos(theta);
-        double y1 = y0 - radius * Math.sin(theta);
-        gg.draw(new Line2D.Double(x0, y0, x1, y1));
-        
-        // Draw the minute hand
-        gg.setStroke(new BasicStroke(1.1f));
-        theta = (90 - (model.minute + model.second / 60.0) * 6) / (180 / Math.PI);
-        radius = 0.75 * size;
-        x1 = x0 + radius * Math.cos(theta);
-        y1 = y0 - radius * Math.sin(theta);
-        gg.draw(new Line2D.Double(x0, y0, x1, y1));
-        
-        // Draw the second hand
-        gg.setColor(Color.red);
-        gg.setStroke(new BasicStroke(0));
-        theta = (90 - model.second * 6) / (180 / Math.PI);
-        x1 = x0 + radius * Math.cos(theta);
-        y1 = y0 - radius * Math.sin(theta);
-        gg.draw(new Line2D.Double(x0, y0, x1, y1));
 
-        // Draw the next alarm hand
-        try {
-            Long dateInMilliseconds = Long.valueOf(AlarmClock.getHead());
-
-            if (dateInMilliseconds != 0) {
-                int hours = AlarmClock.millisecondsToHours(dateInMilliseconds);
-                int minutes = AlarmClock.millisecondsToMinutes(dateInMilliseconds);
-
-                gg.setColor(Color.red);
-                gg.setStroke(new BasicStroke(0.5f));
-                theta = (90 - (hours + minutes / 60.0) * 30) / (180 / Math.PI);
-                radius = 0.5 * size;
-                x1 = x0 + radius * Math.cos(theta);
-                y1 = y0 - radius * Math.sin(theta);
-                gg.draw(new Line2D.Double(x0, y0, x1, y1));
-            }
-        } catch (QueueUnderflowException e) {
-            e.printStackTrace();
-        }
+        gg.dispose();
+
+        return image;
     }
 }
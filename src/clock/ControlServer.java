@@ -0,0 +1,351 @@
+package clock;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * HTTP interface to the alarm clock for scripts, bound to the loopback address only.
+ * Every request is handled on its own virtual thread. Bodies are read and written as streams,
+ * so importing or exporting a large calendar never holds it in memory as a whole.
+ *
+ * POST   /alarms?at=millis[&rrule=rule]         adds an alarm; or hour=h&minute=m for the next time the clock shows it
+ * POST   /alarms/batch                          adds the dates in milliseconds in the body, separated by whitespace
+ * GET    /alarms[?from=millis][&to=millis][&limit=n]  lists the alarms in a range, earliest first
+ * DELETE /alarms/id                             cancels an alarm
+ * GET    /calendar                              exports the alarms as an iCalendar file
+ * PUT    /calendar                              imports the iCalendar file in the body
+ *
+ * Results are JSON; errors are a status with the reason as plain text.
+ *
+ * Binding to loopback keeps other hosts out, but not web pages open in a local browser, which can send requests
+ * to localhost too. So each request must carry the token generated for this run in the X-Clock-Token header,
+ * name the loopback address as its Host, which a rebound DNS name does not, and have no Origin header,
+ * which browsers add to the requests of a page.
+ */
+class ControlServer {
+    static final String ALARMS = "/alarms";
+    static final String BATCH = "/alarms/batch";
+    static final String CALENDAR = "/calendar";
+    static final String TOKEN_HEADER = "X-Clock-Token";
+
+    private static final Set<String> LOOPBACK_HOSTS = Set.of("localhost", "127.0.0.1", "[::1]");
+
+    static {
+        // the JDK server leaves Nagle's algorithm on, which holds the last chunk of a listing back by ~40 ms
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String token;
+
+    /**
+     * Creates a server on a port of the loopback address, with a new random token.
+     * It does not accept requests until started.
+     *
+     * @param port Port to listen on, or 0 for any free port.
+     * @throws IOException Thrown when the port cannot be bound.
+     */
+    ControlServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        executor = VirtualThreads.newThreadPerTaskExecutor("HTTP control");
+        server.setExecutor(executor);
+        byte[] random = new byte[16];
+        new SecureRandom().nextBytes(random);
+        token = HexFormat.of().formatHex(random);
+        server.createContext(ALARMS, this::handle);
+        server.createContext(CALENDAR, this::handle);
+    }
+
+    void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests and waits up to a second for the ones being handled.
+     */
+    void stop() {
+        server.stop(1);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns the port the server listens on, useful when it was created with port 0.
+     *
+     * @return The port.
+     */
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns the token requests have to carry in the X-Clock-Token header.
+     *
+     * @return The token, as hexadecimal digits.
+     */
+    String getToken() {
+        return token;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        try {
+            String method = exchange.getRequestMethod();
+
+            if (!isLoopbackHost(exchange.getRequestHeaders().getFirst("Host"))) {
+                sendText(exchange, 403, "Host must be localhost");
+            } else if (exchange.getRequestHeaders().containsKey("Origin")) {
+                sendText(exchange, 403, "Requests from web pages are not allowed");
+            } else if (!hasToken(exchange.getRequestHeaders().getFirst(TOKEN_HEADER))) {
+                sendText(exchange, 401, "Missing or wrong " + TOKEN_HEADER);
+            } else if (path.equals(CALENDAR)) {
+                if (method.equals("GET")) {
+                    exportCalendar(exchange);
+                } else if (method.equals("PUT")) {
+                    sendJson(exchange, 200, "{\"loaded\":"
+                            + AlarmClock.loadICalendar(Channels.newChannel(exchange.getRequestBody())) + "}");
+                } else {
+                    sendText(exchange, 405, "Use GET or PUT");
+                }
+            } else if (path.equals(BATCH)) {
+                if (method.equals("POST")) {
+                    sendJson(exchange, 200, "{\"added\":" + AlarmClock.addAlarms(readDates(exchange.getRequestBody())) + "}");
+                } else {
+                    sendText(exchange, 405, "Use POST");
+                }
+            } else if (path.equals(ALARMS)) {
+                if (method.equals("GET")) {
+                    list(exchange, parameters(exchange.getRequestURI().getRawQuery()));
+                } else if (method.equals("POST")) {
+                    add(exchange);
+                } else {
+                    sendText(exchange, 405, "Use GET or POST");
+                }
+            } else if (path.startsWith(ALARMS + "/")) {
+                if (method.equals("DELETE")) {
+                    long id = Long.parseLong(path.substring(ALARMS.length() + 1));
+                    if (AlarmClock.cancel(id)) {
+                        exchange.sendResponseHeaders(204, -1);
+                    } else {
+                        sendText(exchange, 404, "No alarm " + id);
+                    }
+                } else {
+                    sendText(exchange, 405, "Use DELETE");
+                }
+            } else {
+                sendText(exchange, 404, "Not found");
+            }
+        } catch (IllegalArgumentException e) {
+            // also thrown for numbers that do not parse
+            sendText(exchange, 400, "Invalid request: " + e.getMessage());
+        } catch (IOException e) {
+            // the content of an import is checked while it is read, so a bad file only shows up here
+            if (exchange.getResponseCode() == -1) {
+                sendText(exchange, 400, (path.equals(CALENDAR) ? "Invalid iCalendar content: " : "Could not read the request: ")
+                        + e.getMessage());
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Returns whether a Host header names the loopback address, with or without this server's port.
+     */
+    private boolean isLoopbackHost(String host) {
+        if (host == null) {
+            return false;
+        }
+
+        int colon = host.lastIndexOf(':');
+        if (colon > host.lastIndexOf(']')) {
+            if (!host.substring(colon + 1).equals(Integer.toString(getPort()))) {
+                return false;
+            }
+            host = host.substring(0, colon);
+        }
+
+        return LOOPBACK_HOSTS.contains(host.toLowerCase());
+    }
+
+    private boolean hasToken(String value) {
+        // compared in constant time, so the token cannot be guessed from how long a wrong one takes
+        return value != null && MessageDigest.isEqual(token.getBytes(StandardCharsets.US_ASCII), value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private void add(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+        String form = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        parameters.putAll(parameters(form));
+
+        long id;
+        String rule = parameters.get("rrule");
+        if (parameters.containsKey("at")) {
+            long at = Long.parseLong(parameters.get("at"));
+            Recurrence recurrence = null;
+            if (rule != null) {
+                recurrence = Recurrence.parse(rule, at, AlarmClock.getZone());
+                if (recurrence == null) {
+                    throw new IllegalArgumentException("unsupported rule " + rule);
+                }
+            }
+            id = AlarmClock.addAlarm(at, recurrence);
+        } else if (parameters.containsKey("hour") && parameters.containsKey("minute")) {
+            int hour = Integer.parseInt(parameters.get("hour"));
+            int minute = Integer.parseInt(parameters.get("minute"));
+            if (hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+                throw new IllegalArgumentException("no time " + hour + ":" + minute);
+            }
+            if (rule != null) {
+                throw new IllegalArgumentException("rrule needs at");
+            }
+            id = AlarmClock.addAlarm(hour, minute);
+        } else {
+            throw new IllegalArgumentException("at, or hour and minute, are needed");
+        }
+
+        sendJson(exchange, 201, "{\"id\":" + id + ",\"date\":" + AlarmClock.dateOf(id) + "}");
+    }
+
+    /**
+     * Writes the alarms in a range as a JSON array.
+     */
+    private void list(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+        long from = Long.parseLong(parameters.getOrDefault("from", String.valueOf(Long.MIN_VALUE)));
+        long to = Long.parseLong(parameters.getOrDefault("to", String.valueOf(Long.MAX_VALUE)));
+        int limit = Integer.parseInt(parameters.getOrDefault("limit", String.valueOf(Integer.MAX_VALUE)));
+        QueueSnapshot range = AlarmClock.range(from, to, limit);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, 0);
+        Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+        out.write('[');
+        for (int position = 0; position < range.size(); position++) {
+            if (position > 0) {
+                out.write(',');
+            }
+            out.write("{\"id\":");
+            out.write(Long.toString(range.id(position)));
+            out.write(",\"date\":");
+            out.write(Long.toString(range.get(position)));
+            Recurrence recurrence = range.recurrence(position);
+            if (recurrence != null) {
+                out.write(",\"rrule\":\"");
+                out.write(recurrence.toString(AlarmClock.getZone()));
+                out.write('"');
+            }
+            out.write('}');
+        }
+        out.write(']');
+        out.flush();
+    }
+
+    private void exportCalendar(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/calendar; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0); // chunked, since the length is not known until written
+        Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+        AlarmClock.writeICalendar(out);
+        out.flush();
+    }
+
+    /**
+     * Parses the dates of a bulk add as they arrive, without decoding the body to a string.
+     *
+     * @param in Body of the request.
+     * @return The dates in milliseconds, in body order.
+     * @throws IOException Thrown when the body cannot be read.
+     */
+    static long[] readDates(InputStream in) throws IOException {
+        long[] dates = new long[1024];
+        int count = 0;
+        long value = 0;
+        int digits = 0;
+        byte[] buffer = new byte[8192];
+
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                byte b = buffer[i];
+                if (b >= '0' && b <= '9') {
+                    if (digits++ == 18) {
+                        throw new NumberFormatException("date too large");
+                    }
+                    value = value * 10 + (b - '0');
+                } else if (b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == ',') {
+                    if (digits > 0) {
+                        if (count == dates.length) {
+                            dates = Arrays.copyOf(dates, count * 2);
+                        }
+                        dates[count++] = value;
+                        value = 0;
+                        digits = 0;
+                    }
+                } else {
+                    throw new NumberFormatException("unexpected character '" + (char) b + "'");
+                }
+            }
+        }
+
+        if (digits > 0) {
+            if (count == dates.length) {
+                dates = Arrays.copyOf(dates, count + 1);
+            }
+            dates[count++] = value;
+        }
+
+        return Arrays.copyOf(dates, count);
+    }
+
+    private static Map<String, String> parameters(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+
+        return parameters;
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        send(exchange, status, "application/json", json);
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        send(exchange, status, "text/plain; charset=utf-8", text);
+    }
+
+    private static void send(HttpExchange exchange, int status, String type, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+}
@@ -0,0 +1,151 @@
+package clock;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives a ControlServer with concurrent clients for a while, then reports the requests per second
+ * and the latency percentiles. Without a port, a local server is started with a queue of alarms to list.
+ * Four in five requests list a range of ten alarms, the others add an alarm.
+ *
+ * Usage: java -cp Clock.jar clock.ControlServerLoad [clients] [seconds] [port token]
+ * By default 64 clients run for 10 seconds against a local server holding 100,000 alarms.
+ */
+public class ControlServerLoad {
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private final AtomicLong errors = new AtomicLong();
+    private final String token;
+
+    /**
+     * Creates a load run against a server.
+     *
+     * @param token Token of the server, sent with every request.
+     */
+    ControlServerLoad(String token) {
+        this.token = token;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int clients = (args.length > 0) ? Integer.parseInt(args[0]) : 64;
+        int seconds = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+
+        System.setProperty("java.awt.headless", "true");
+        ControlServer server = null;
+        int port;
+        String token;
+        if (args.length > 3) {
+            port = Integer.parseInt(args[2]);
+            token = args[3];
+        } else {
+            long now = System.currentTimeMillis();
+            AlarmClock.addAlarms(ThreadLocalRandom.current().longs(100_000, now + DAY, now + 365 * DAY));
+            server = new ControlServer(0);
+            server.start();
+            port = server.getPort();
+            token = server.getToken();
+        }
+
+        try {
+            new ControlServerLoad(token).run(URI.create("http://localhost:" + port), clients, seconds);
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+
+    /**
+     * Runs the clients and prints the results.
+     *
+     * @param base Address of the server.
+     * @param clients Number of clients sending requests one after another.
+     * @param seconds How long the clients run, after a warm-up of a tenth of that.
+     */
+    void run(URI base, int clients, int seconds) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(VirtualThreads.newThreadPerTaskExecutor("Load client")).build();
+        long warmUpEnd = System.nanoTime() + seconds * 100_000_000L;
+        long end = warmUpEnd + seconds * 1_000_000_000L;
+
+        long[][] latencies = new long[clients][];
+        int[] counts = new int[clients];
+        Thread[] threads = new Thread[clients];
+        for (int i = 0; i < clients; i++) {
+            int index = i;
+            threads[i] = new Thread(() -> {
+                long[] recorded = new long[1024];
+                int count = 0;
+                long started;
+                while ((started = System.nanoTime()) < end) {
+                    request(client, base);
+                    if (started >= warmUpEnd) {
+                        if (count == recorded.length) {
+                            recorded = Arrays.copyOf(recorded, count * 2);
+                        }
+                        recorded[count++] = System.nanoTime() - started;
+                    }
+                }
+                latencies[index] = recorded;
+                counts[index] = count;
+            }, "Load client " + i);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for (int i = 0; i < clients; i++) {
+            System.arraycopy(latencies[i], 0, all, offset, counts[i]);
+            offset += counts[i];
+        }
+        Arrays.sort(all);
+
+        System.out.printf("%d clients, %d requests in %d s, %d errors%n", clients, total, seconds, errors.get());
+        System.out.printf("Throughput: %.0f requests/s%n", (double) total / seconds);
+        if (total > 0) {
+            System.out.printf("Latency: p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms%n",
+                    percentile(all, 0.5), percentile(all, 0.99), percentile(all, 0.999), all[total - 1] / 1e6);
+        }
+    }
+
+    /**
+     * Sends one request and waits for the whole response, counting anything but a success as an error.
+     */
+    private void request(HttpClient client, URI base) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long date = System.currentTimeMillis() + DAY + random.nextLong(365 * DAY);
+        HttpRequest request = (random.nextInt(5) == 0)
+                ? HttpRequest.newBuilder(base.resolve(ControlServer.ALARMS + "?at=" + date)).header(ControlServer.TOKEN_HEADER, token)
+                        .POST(HttpRequest.BodyPublishers.noBody()).build()
+                : HttpRequest.newBuilder(base.resolve(ControlServer.ALARMS + "?from=" + date + "&limit=10")).header(ControlServer.TOKEN_HEADER, token)
+                        .GET().build();
+
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() >= 300) {
+                errors.incrementAndGet();
+            }
+        } catch (IOException e) {
+            errors.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(sorted.length * percentile) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,158 @@
+package clock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for ControlServer class.
+ */
+public class ControlServerTest {
+    private static final long DATE = 4102444800000L; // 2100-01-01
+
+    private ControlServer server;
+    private HttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        AlarmClock.setStore(new StripedAlarmStore());
+        AlarmClock.setTimeSource(TimeSource.SYSTEM);
+        AlarmClock.setZone(ZoneId.systemDefault());
+        server = new ControlServer(0);
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Test for handle method.
+     * An added alarm should be listed in its range and be gone once cancelled.
+     */
+    @Test
+    public void handle_WhenAlarmAddedAndCancelled_ShouldListItOnlyUntilCancelled() throws Exception {
+        HttpResponse<String> added = send("POST", "/alarms?at=" + DATE, "");
+        assertEquals(201, added.statusCode());
+        long id = AlarmClock.snapshot().id(0);
+        assertEquals("{\"id\":" + id + ",\"date\":" + DATE + "}", added.body());
+
+        send("POST", "/alarms?at=" + (DATE + 1000) + "&rrule=FREQ%3DDAILY", "");
+        assertEquals("[{\"id\":" + id + ",\"date\":" + DATE + "}]",
+                send("GET", "/alarms?from=" + DATE + "&to=" + (DATE + 999), "").body());
+        assertEquals(2, countOccurrences(send("GET", "/alarms", "").body(), "\"id\""));
+
+        assertEquals(204, send("DELETE", "/alarms/" + id, "").statusCode());
+        assertEquals(404, send("DELETE", "/alarms/" + id, "").statusCode());
+        assertEquals(400, send("POST", "/alarms?at=soon", "").statusCode());
+        assertEquals(1, AlarmClock.snapshot().size());
+    }
+
+    /**
+     * Test for handle method.
+     * Alarms added in bulk should come back from an export, and importing it again should not duplicate them.
+     */
+    @Test
+    public void handle_WhenBatchExportedAndImported_ShouldKeepEachAlarmOnce() throws Exception {
+        HttpResponse<String> added = send("POST", "/alarms/batch", DATE + "\n" + (DATE + 60000) + " " + DATE + "\n");
+        assertEquals("{\"added\":2}", added.body());
+
+        String calendar = send("GET", "/calendar", "").body();
+        assertTrue(calendar.startsWith("BEGIN:VCALENDAR"));
+        assertEquals(2, countOccurrences(calendar, "BEGIN:VEVENT"));
+
+        assertEquals("{\"loaded\":0}", send("PUT", "/calendar", calendar).body());
+        assertEquals(2, AlarmClock.snapshot().size());
+        assertEquals(400, send("PUT", "/calendar", "BEGIN:VCALENDAR\r\nBEGIN:VEVENT\r\nDTSTART:x\r\n").statusCode());
+        assertEquals(405, send("POST", "/calendar", calendar).statusCode());
+    }
+
+    /**
+     * Test for handle method.
+     * Requests without the token, from a web page or for another host should be refused without touching the alarms.
+     */
+    @Test
+    public void handle_WhenNotFromLocalScript_ShouldRefuseRequest() throws Exception {
+        HttpRequest noToken = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/alarms?at=" + DATE))
+                .POST(HttpRequest.BodyPublishers.noBody()).build();
+        assertEquals(401, client.send(noToken, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpRequest wrongToken = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/alarms?at=" + DATE))
+                .header(ControlServer.TOKEN_HEADER, "wrong")
+                .POST(HttpRequest.BodyPublishers.noBody()).build();
+        assertEquals(401, client.send(wrongToken, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpRequest fromPage = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/alarms?at=" + DATE))
+                .header(ControlServer.TOKEN_HEADER, server.getToken()).header("Origin", "http://example.com")
+                .POST(HttpRequest.BodyPublishers.noBody()).build();
+        assertEquals(403, client.send(fromPage, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        // the client sets Host itself, so a rebound name is sent over a plain socket
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("POST /alarms?at=" + DATE + " HTTP/1.1\r\nHost: attacker.example:" + server.getPort() + "\r\n"
+                    + ControlServer.TOKEN_HEADER + ": " + server.getToken() + "\r\nContent-Length: 0\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            InputStream in = socket.getInputStream();
+            String status = new String(in.readNBytes(12), StandardCharsets.US_ASCII);
+            assertEquals("HTTP/1.1 403", status);
+        }
+
+        assertEquals(0, AlarmClock.snapshot().size());
+        assertEquals(201, send("POST", "/alarms?at=" + DATE, "").statusCode());
+    }
+
+    /**
+     * Test for readDates method.
+     * Should read dates separated by any whitespace or commas, and reject anything else.
+     */
+    @Test
+    public void readDates_WhenSeparatorsMixed_ShouldReadEveryDate() throws IOException {
+        byte[] body = "1\r\n22, 333\t4444".getBytes(StandardCharsets.US_ASCII);
+
+        assertArrayEquals(new long[]{1, 22, 333, 4444}, ControlServer.readDates(new ByteArrayInputStream(body)));
+
+        try {
+            ControlServer.readDates(new ByteArrayInputStream("12;3".getBytes(StandardCharsets.US_ASCII)));
+            fail();
+        } catch (NumberFormatException e) {
+            // expected
+        }
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .header(ControlServer.TOKEN_HEADER, server.getToken())
+                .method(method, body.isEmpty() ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static int countOccurrences(String text, String part) {
+        int count = 0;
+        for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+            count++;
+        }
+
+        return count;
+    }
+}
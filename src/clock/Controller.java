@@ -15,9 +15,27 @@ public class Controller {
         model = m;
         view = v;
         
-        listener = e -> model.update();
+        // the clock hands only move once a second, so the timer fires just after each second boundary
+        listener = e -> {
+            model.update();
+            timer.setInitialDelay(millisecondsToNextSecond());
+            timer.restart();
+        };
         
-        timer = new Timer(100, listener);
+        timer = new Timer(0, listener);
+        timer.setRepeats(false);
+        timer.setInitialDelay(millisecondsToNextSecond());
         timer.start();
+
+        AlarmClock.start(new DialogAlarmListener());
+    }
+
+    /**
+     * Returns the number of milliseconds left until the next full second.
+     *
+     * @return Milliseconds to the next second boundary.
+     */
+    private static int millisecondsToNextSecond() {
+        return (int) (1000 - System.currentTimeMillis() % 1000);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,64 @@
+package clock;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shows fired alarms to the user in a single dialog per burst.
+ * Alarms with an action are left to the action runner.
+ */
+class DialogAlarmListener implements AlarmListener {
+    private static final int MAX_LISTED = 5;
+
+    @Override
+    public void alarmsFired(List<AlarmEvent> events) {
+        List<AlarmEvent> shown = new ArrayList<>(events.size());
+        for (AlarmEvent event : events) {
+            if (event.getAction() == null) {
+                shown.add(event);
+            }
+        }
+        if (shown.isEmpty()) {
+            return;
+        }
+
+        String message = describe(shown);
+
+        SwingUtilities.invokeLater(() ->
+                JOptionPane.showMessageDialog(null, message,
+                        "Alarm Activated", JOptionPane.INFORMATION_MESSAGE)
+        );
+    }
+
+    /**
+     * Returns the dialog message for a burst of alarms.
+     * Long bursts are summarised instead of listing every alarm.
+     *
+     * @param events Fired alarms.
+     * @return The dialog message.
+     */
+    static String describe(List<AlarmEvent> events) {
+        if (events.size() == 1) {
+            return events.get(0).getMessage();
+        }
+
+        if (events.size() > MAX_LISTED) {
+            int count = 0;
+            for (AlarmEvent event : events) {
+                count += event.getCount();
+            }
+            return count + " alarms activated.";
+        }
+
+        StringBuilder message = new StringBuilder();
+        for (AlarmEvent event : events) {
+            if (message.length() > 0) {
+                message.append('\n');
+            }
+            message.append(event.getMessage());
+        }
+
+        return message.toString();
+    }
+}
@@ -0,0 +1,21 @@
+package clock;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of a paint of the clock face. The duration of the event is the frame time.
+ */
+@Name("clock.FramePainted")
+@Label("Frame Painted")
+@Category("Alarm Clock")
+@Description("The clock face was painted")
+class FramePaintedEvent extends jdk.jfr.Event {
+    @Label("Clip Width")
+    int width;
+
+    @Label("Clip Height")
+    int height;
+}
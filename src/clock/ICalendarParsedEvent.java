@@ -0,0 +1,30 @@
+package clock;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of an iCalendar file read into alarms. The duration of the event is the time taken.
+ */
+@Name("clock.ICalendarParsed")
+@Label("iCalendar Parsed")
+@Category("Alarm Clock")
+@Description("An iCalendar file was read into alarms")
+class ICalendarParsedEvent extends jdk.jfr.Event {
+    @Label("File")
+    String file;
+
+    @Label("Alarms")
+    int alarms;
+
+    @Label("Skipped Events")
+    @Description("Events skipped because their RRULE was malformed")
+    int skipped;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+}
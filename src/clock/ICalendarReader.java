@@ -0,0 +1,447 @@
+package clock;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Streaming iCalendar parser that turns the events into alarms.
+ * The input is read through a fixed buffer and unfolded into logical lines in place, and DTSTART values
+ * are turned into epoch milliseconds with plain arithmetic, so memory use does not grow with the file.
+ * DTSTART values are read as local time, matching what AlarmClock.generateICalendar writes.
+ * A numeric UID becomes the ID of the alarm, so alarms keep their IDs when saved and loaded again;
+ * events with any other UID get new IDs. AlarmClock never lets an imported ID replace a queued alarm.
+ * Only properties inside a VEVENT are read, so the start dates of to-dos, journal entries and nested
+ * components such as VALARM never become alarms.
+ * An event with a daily or weekly RRULE becomes a recurring alarm at its first occurrence after the given date;
+ * other rules are ignored and the event is read as a single alarm. An event whose RRULE is malformed is
+ * skipped and counted, rather than failing the whole file.
+ */
+class ICalendarReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] DTSTART = "DTSTART".getBytes();
+    private static final byte[] UID = "UID".getBytes();
+    private static final byte[] RRULE = "RRULE".getBytes();
+    private static final byte[] BEGIN_EVENT = "BEGIN:VEVENT".getBytes();
+    private static final byte[] END_EVENT = "END:VEVENT".getBytes();
+    private static final byte[] BEGIN = "BEGIN:".getBytes();
+    private static final byte[] END = "END:".getBytes();
+    private static final long NO_ID = -1;
+
+    private final ZoneId zone;
+    private final LocalTimeConverter localTime;
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private int lineNumber;
+    private int physicalLine;
+    private Alarm[] alarms;
+    private int count;
+    private int total;
+    private int skipped;
+    private long after;
+    private int batchSize;
+    private Consumer<Alarm[]> batches;
+
+    // the event being read, and how deep the current line is in components nested inside it
+    private boolean inEvent;
+    private int nested;
+    private boolean hasDate;
+    private long eventDate;
+    private long eventId = NO_ID;
+    private String eventRule;
+
+    ICalendarReader() {
+        this(ZoneId.systemDefault());
+    }
+
+    ICalendarReader(ZoneId zone) {
+        this.zone = zone;
+        localTime = new LocalTimeConverter(zone);
+    }
+
+    /**
+     * Reads all events in an iCalendar file as alarms.
+     *
+     * @param file iCalendar file.
+     * @param after Events starting at or before this date in milliseconds are skipped.
+     * @return Alarms at the start dates of the events, in file order.
+     * @throws IOException Thrown when the file cannot be read or is not a valid iCalendar file.
+     */
+    static Alarm[] readFile(Path file, long after) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new ICalendarReader().read(channel, after);
+        }
+    }
+
+    /**
+     * Reads all events from a channel as alarms.
+     *
+     * @param channel Channel with the iCalendar content.
+     * @param after Events starting at or before this date in milliseconds are skipped.
+     * @return Alarms at the start dates of the events, in file order.
+     * @throws IOException Thrown when the channel cannot be read or the content is not valid.
+     */
+    Alarm[] read(ReadableByteChannel channel, long after) throws IOException {
+        read(channel, after, Integer.MAX_VALUE, null, null);
+
+        return Arrays.copyOf(alarms, count);
+    }
+
+    /**
+     * Reads all events from a channel, handing the alarms over in batches as soon as each batch is full,
+     * so they can be queued while the rest is still being read. Checks for interruption after every
+     * buffer, so that a reader on another thread can be cancelled even on a channel that is not interruptible.
+     *
+     * @param channel Channel with the iCalendar content.
+     * @param after Events starting at or before this date in milliseconds are skipped.
+     * @param batchSize Number of alarms in each batch but the last.
+     * @param batches Receiver of the batches, in file order, or null to keep all alarms until the end.
+     * @param bytesRead Receiver of the number of bytes read so far after every buffer, or null.
+     * @return Number of alarms read.
+     * @throws IOException Thrown when the channel cannot be read or the content is not valid.
+     * @throws InterruptedIOException Thrown when the thread was interrupted.
+     */
+    int read(ReadableByteChannel channel, long after, int batchSize, Consumer<Alarm[]> batches,
+             LongConsumer bytesRead) throws IOException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+
+        this.after = after;
+        this.batchSize = batchSize;
+        this.batches = batches;
+        alarms = new Alarm[Math.min(64, batchSize)];
+        count = 0;
+        total = 0;
+        skipped = 0;
+        inEvent = false;
+        nested = 0;
+        hasDate = false;
+        eventId = NO_ID;
+        eventRule = null;
+        lineLength = 0;
+        lineNumber = 0;
+        physicalLine = 0;
+
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        byte[] bytes = buffer.array();
+        boolean lineStart = true;
+        long position = 0;
+
+        while (channel.read(buffer) != -1) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Reading cancelled before line " + physicalLine);
+            }
+
+            int end = buffer.position();
+            position += end;
+
+            for (int i = 0; i < end; i++) {
+                byte b = bytes[i];
+
+                if (b == '\r') {
+                    continue;
+                }
+                if (b == '\n') {
+                    lineStart = true;
+                    physicalLine++;
+                    continue;
+                }
+
+                if (lineStart) {
+                    lineStart = false;
+                    // a line starting with whitespace continues the previous one (line folding)
+                    if (b == ' ' || b == '\t') {
+                        continue;
+                    }
+                    endLine();
+                    lineNumber = physicalLine + 1;
+                }
+
+                if (lineLength == line.length) {
+                    line = Arrays.copyOf(line, line.length * 2);
+                }
+                line[lineLength++] = b;
+            }
+
+            buffer.clear();
+            if (bytesRead != null) {
+                bytesRead.accept(position);
+            }
+        }
+        endLine();
+        if (inEvent) {
+            endEvent(); // an event cut off at the end of the file still counts
+        }
+        if (batches != null && count > 0) {
+            batches.accept(Arrays.copyOf(alarms, count));
+        }
+
+        return total;
+    }
+
+    /**
+     * Processes the logical line collected so far.
+     *
+     * @throws IOException Thrown when the line has an invalid value.
+     */
+    private void endLine() throws IOException {
+        if (lineLength == 0) {
+            return;
+        }
+
+        if (equalsLine(BEGIN_EVENT)) {
+            if (inEvent) {
+                endEvent(); // an event that was never ended
+            }
+            inEvent = true;
+            nested = 0;
+        } else if (inEvent) {
+            if (equalsLine(END_EVENT)) {
+                endEvent();
+            } else if (startsWith(BEGIN)) {
+                nested++;
+            } else if (startsWith(END)) {
+                nested = Math.max(0, nested - 1);
+            } else if (nested == 0) {
+                readProperty();
+            }
+        }
+
+        lineLength = 0;
+    }
+
+    /**
+     * Reads a property of the event from the current line.
+     *
+     * @throws IOException Thrown when the property has an invalid value.
+     */
+    private void readProperty() throws IOException {
+        if (startsWith(DTSTART)) {
+            int colon = indexOf((byte) ':', DTSTART.length);
+            byte next = line[DTSTART.length];
+
+            // the name must end right after DTSTART, either with parameters or with the value
+            if (colon >= 0 && (next == ':' || next == ';')) {
+                eventDate = parseDate(colon + 1);
+                hasDate = true;
+            }
+        } else if (startsWith(UID)) {
+            int colon = indexOf((byte) ':', UID.length);
+            byte next = line[UID.length];
+
+            if (colon >= 0 && (next == ':' || next == ';')) {
+                eventId = parseId(colon + 1);
+            }
+        } else if (startsWith(RRULE)) {
+            int colon = indexOf((byte) ':', RRULE.length);
+            byte next = line[RRULE.length];
+
+            if (colon >= 0 && (next == ':' || next == ';')) {
+                eventRule = new String(line, colon + 1, lineLength - colon - 1, StandardCharsets.US_ASCII);
+            }
+        }
+    }
+
+    /**
+     * Adds the event read so far as an alarm, unless it has no start date, has a malformed rule
+     * or all its occurrences are too early.
+     */
+    private void endEvent() {
+        if (hasDate) {
+            Recurrence recurrence = null;
+            long date = eventDate;
+            if (eventRule != null) {
+                try {
+                    recurrence = Recurrence.parse(eventRule, eventDate, zone);
+                } catch (IllegalArgumentException e) {
+                    date = AlarmStore.NONE;
+                    skipped++;
+                }
+                if (recurrence != null) {
+                    date = recurrence.nextAfter(eventDate, after, zone);
+                }
+            }
+
+            if (date > after && date != AlarmStore.NONE) {
+                Alarm alarm = (eventId == NO_ID) ? new Alarm(date) : new Alarm(eventId, date);
+                alarm.setRecurrence(recurrence);
+                addAlarm(alarm);
+            }
+        }
+
+        inEvent = false;
+        hasDate = false;
+        eventId = NO_ID;
+        eventRule = null;
+    }
+
+    /**
+     * Returns how many events the last read skipped because their RRULE was malformed.
+     *
+     * @return Number of events skipped.
+     */
+    int skipped() {
+        return skipped;
+    }
+
+    /**
+     * Parses a UID written by ICalendarWriter, which is the decimal ID of an alarm.
+     * Larger numbers are not taken as IDs, since new alarms would then be numbered past them,
+     * beyond what JSON clients can read exactly and eventually past the end of a long.
+     *
+     * @param start Index of the value in the line.
+     * @return The ID, or NO_ID when the UID is not a decimal number of at most Alarm.MAX_ID.
+     */
+    private long parseId(int start) {
+        int length = lineLength - start;
+        if (length < 1 || length > 16) {
+            return NO_ID;
+        }
+
+        long id = 0;
+        for (int i = start; i < lineLength; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return NO_ID;
+            }
+            id = id * 10 + digit;
+        }
+
+        return (id <= Alarm.MAX_ID) ? id : NO_ID;
+    }
+
+    /**
+     * Parses a DATE (yyyyMMdd) or DATE-TIME (yyyyMMdd'T'HHmmss) value of the current line.
+     *
+     * @param start Index of the value in the line.
+     * @return Date in milliseconds.
+     * @throws IOException Thrown when the value is not a valid date.
+     */
+    private long parseDate(int start) throws IOException {
+        int length = lineLength - start;
+        if (length < 8) {
+            throw invalid();
+        }
+
+        int year = digits(start, 4);
+        int month = digits(start + 4, 2);
+        int day = digits(start + 6, 2);
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+
+        if (length >= 15 && line[start + 8] == 'T') {
+            hour = digits(start + 9, 2);
+            minute = digits(start + 11, 2);
+            second = digits(start + 13, 2);
+        }
+
+        if (month < 1 || month > 12 || day < 1 || day > 31 || hour > 23 || minute > 59 || second > 60) {
+            throw invalid();
+        }
+
+        long localSeconds = daysFromCivil(year, month, day) * 86400 + hour * 3600 + minute * 60 + second;
+        // in a gap the time is moved forward by the length of the gap
+        return localTime.toEpochMillis(localSeconds * 1000);
+    }
+
+    /**
+     * Returns the number of days from 1970-01-01 to the given date in the proleptic Gregorian calendar.
+     *
+     * @param year Year.
+     * @param month Month, 1 to 12.
+     * @param day Day of the month.
+     * @return Days since the epoch.
+     */
+    static long daysFromCivil(int year, int month, int day) {
+        year -= (month <= 2) ? 1 : 0;
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private int digits(int start, int length) throws IOException {
+        int value = 0;
+        for (int i = start; i < start + length; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw invalid();
+            }
+            value = value * 10 + digit;
+        }
+
+        return value;
+    }
+
+    private boolean startsWith(byte[] name) {
+        if (lineLength <= name.length) {
+            return false;
+        }
+
+        for (int i = 0; i < name.length; i++) {
+            // property names are case-insensitive
+            byte b = line[i];
+            if (b != name[i] && (b & ~0x20) != name[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean equalsLine(byte[] value) {
+        if (lineLength != value.length) {
+            return false;
+        }
+
+        for (int i = 0; i < value.length; i++) {
+            // letters are compared case-insensitively
+            byte b = line[i];
+            if (b != value[i] && (b & ~0x20) != value[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int indexOf(byte b, int from) {
+        for (int i = from; i < lineLength; i++) {
+            if (line[i] == b) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private void addAlarm(Alarm alarm) {
+        if (count == alarms.length) {
+            alarms = Arrays.copyOf(alarms, (int) Math.min(batchSize, count * 2L));
+        }
+        alarms[count++] = alarm;
+        total++;
+
+        if (count == batchSize && batches != null) {
+            batches.accept(Arrays.copyOf(alarms, count));
+            count = 0;
+        }
+    }
+
+    private IOException invalid() {
+        return new IOException("Invalid date on line " + lineNumber + ": " + new String(line, 0, lineLength));
+    }
+}
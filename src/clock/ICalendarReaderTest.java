@@ -0,0 +1,239 @@
+package clock;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedByInterruptException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test for ICalendarReader class.
+ */
+public class ICalendarReaderTest {
+    private static final ZoneId LONDON = ZoneId.of("Europe/London");
+
+    private static Alarm[] readAlarms(String content, long after) throws IOException {
+        return new ICalendarReader(LONDON).read(Channels.newChannel(new ByteArrayInputStream(content.getBytes())), after);
+    }
+
+    private static long[] read(String content, long after) throws IOException {
+        return Arrays.stream(readAlarms(content, after)).mapToLong(Alarm::getDateInMilliseconds).toArray();
+    }
+
+    private static long millis(String localDateTime) {
+        return LocalDateTime.parse(localDateTime).atZone(LONDON).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Test for read method.
+     * Should read DTSTART values with parameters, folded lines and plain dates.
+     */
+    @Test
+    public void read_WhenLinesFolded_ShouldUnfoldThem() throws IOException {
+        String content = "BEGIN:VCALENDAR\r\n" +
+                "BEGIN:VEVENT\r\n" +
+                "DTSTART:20180520T170428Z\r\n" +
+                "END:VEVENT\r\n" +
+                "BEGIN:VEVENT\r\n" +
+                "DTSTART;TZID=Europe/London:2018\r\n" +
+                " 1225T080000\r\n" +
+                "END:VEVENT\r\n" +
+                "BEGIN:VEVENT\n" +
+                "DTSTART;VALUE=DATE:20190101\n" +
+                "END:VEVENT\n" +
+                "END:VCALENDAR";
+
+        assertArrayEquals(new long[]{
+                millis("2018-05-20T17:04:28"),
+                millis("2018-12-25T08:00:00"),
+                millis("2019-01-01T00:00:00")
+        }, read(content, 0));
+    }
+
+    /**
+     * Test for read method.
+     * Events starting before the given date should be skipped.
+     */
+    @Test
+    public void read_WhenEventInThePast_ShouldSkipIt() throws IOException {
+        String content = "BEGIN:VEVENT\r\nDTSTART:20180520T170428Z\r\nEND:VEVENT\r\n" +
+                "BEGIN:VEVENT\r\nDTSTART:20180521T170428Z\r\nEND:VEVENT\r\n";
+
+        assertArrayEquals(new long[]{millis("2018-05-21T17:04:28")}, read(content, millis("2018-05-20T17:04:28")));
+    }
+
+    /**
+     * Test for read method.
+     * A numeric UID should become the ID of the alarm, wherever it is in the event, and other UIDs should be replaced.
+     */
+    @Test
+    public void read_WhenUidNumeric_ShouldKeepItAsId() throws IOException {
+        String content = "BEGIN:VEVENT\r\n" +
+                "DTSTART:20180520T170428Z\r\n" +
+                "UID:4000000001\r\n" +
+                "END:VEVENT\r\n" +
+                "BEGIN:VEVENT\r\n" +
+                "UID:4000000001@example.com\r\n" +
+                "DTSTART:20180521T170428Z\r\n" +
+                "END:VEVENT\r\n";
+
+        Alarm[] alarms = readAlarms(content, 0);
+
+        assertEquals(2, alarms.length);
+        assertEquals(4000000001L, alarms[0].getId());
+        assertNotEquals(4000000001L, alarms[1].getId());
+        assertEquals(millis("2018-05-21T17:04:28"), alarms[1].getDateInMilliseconds());
+    }
+
+    /**
+     * Test for read method.
+     * A recurring event that started in the past should become an alarm at its next occurrence, and
+     * should be written back with its rule.
+     */
+    @Test
+    public void read_WhenEventRecurs_ShouldStartAtNextOccurrence() throws IOException {
+        String content = "BEGIN:VEVENT\r\n" +
+                "DTSTART:20180514T070000Z\r\n" +
+                "RRULE:FREQ=WEEKLY;BYDAY=MO,WE\r\n" +
+                "END:VEVENT\r\n";
+
+        Alarm[] alarms = readAlarms(content, millis("2018-05-21T12:00:00"));
+
+        assertEquals(1, alarms.length);
+        assertEquals(millis("2018-05-23T07:00:00"), alarms[0].getDateInMilliseconds());
+        assertEquals("FREQ=WEEKLY;BYDAY=MO,WE", alarms[0].getRecurrence().toString());
+    }
+
+    /**
+     * Test for read method.
+     * Should throw an exception when a date is not valid.
+     */
+    @Test(expected = IOException.class)
+    public void read_WhenDateInvalid_ShouldThrowException() throws IOException {
+        read("BEGIN:VEVENT\r\nDTSTART:2018-05-20\r\nEND:VEVENT\r\n", 0);
+    }
+
+    /**
+     * Test for read method.
+     * A UID beyond the IDs alarms can have, or negative, should be replaced and not move the IDs of new alarms past it.
+     */
+    @Test
+    public void read_WhenUidOutOfIdRange_ShouldGiveNewId() throws IOException {
+        String content = "BEGIN:VEVENT\r\nDTSTART:20180520T170428Z\r\nUID:9007199254740993\r\nEND:VEVENT\r\n" +
+                "BEGIN:VEVENT\r\nDTSTART:20180521T170428Z\r\nUID:9223372036854775806\r\nEND:VEVENT\r\n" +
+                "BEGIN:VEVENT\r\nDTSTART:20180522T170428Z\r\nUID:-5\r\nEND:VEVENT\r\n";
+
+        Alarm[] alarms = readAlarms(content, 0);
+
+        assertEquals(3, alarms.length);
+        for (Alarm alarm : alarms) {
+            assertTrue(alarm.getId() >= 0);
+            assertTrue(alarm.getId() <= Alarm.MAX_ID);
+        }
+        assertTrue(new Alarm(0).getId() <= Alarm.MAX_ID);
+    }
+
+    /**
+     * Test for read method.
+     * Start dates of to-dos, journal entries and alarms nested in an event should not become alarms.
+     */
+    @Test
+    public void read_WhenDateOutsideEvent_ShouldIgnoreIt() throws IOException {
+        String content = "BEGIN:VCALENDAR\r\n" +
+                "BEGIN:VTODO\r\n" +
+                "DTSTART:20180520T080000Z\r\n" +
+                "END:VTODO\r\n" +
+                "BEGIN:VEVENT\r\n" +
+                "UID:4100000001\r\n" +
+                "BEGIN:VALARM\r\n" +
+                "UID:4100000002\r\n" +
+                "END:VALARM\r\n" +
+                "DTSTART:20180521T080000Z\r\n" +
+                "END:VEVENT\r\n" +
+                "BEGIN:VJOURNAL\r\n" +
+                "DTSTART:20180522T080000Z\r\n" +
+                "END:VJOURNAL\r\n" +
+                "END:VCALENDAR";
+
+        Alarm[] alarms = readAlarms(content, 0);
+
+        assertEquals(1, alarms.length);
+        assertEquals(millis("2018-05-21T08:00:00"), alarms[0].getDateInMilliseconds());
+        assertEquals(4100000001L, alarms[0].getId());
+    }
+
+    /**
+     * Test for read method.
+     * An event with a malformed rule should be skipped and counted, and the rest of the file read.
+     */
+    @Test
+    public void read_WhenRuleInvalid_ShouldSkipEvent() throws IOException {
+        String content = "BEGIN:VEVENT\r\n" +
+                "DTSTART:20180520T080000Z\r\n" +
+                "RRULE:FREQ=DAILY;INTERVAL=0\r\n" +
+                "END:VEVENT\r\n" +
+                "BEGIN:VEVENT\r\n" +
+                "DTSTART:20180521T080000Z\r\n" +
+                "END:VEVENT\r\n";
+        ICalendarReader reader = new ICalendarReader(LONDON);
+
+        Alarm[] alarms = reader.read(Channels.newChannel(new ByteArrayInputStream(content.getBytes())), 0);
+
+        assertEquals(1, alarms.length);
+        assertEquals(millis("2018-05-21T08:00:00"), alarms[0].getDateInMilliseconds());
+        assertEquals(1, reader.skipped());
+    }
+
+    /**
+     * Test for read method.
+     * Should hand the alarms over in full batches as they are read, and report every byte read.
+     */
+    @Test
+    public void read_WhenBatchSizeGiven_ShouldDeliverAlarmsInBatches() throws IOException {
+        StringBuilder content = new StringBuilder("BEGIN:VCALENDAR\r\n");
+        for (int day = 1; day <= 25; day++) {
+            content.append(String.format("BEGIN:VEVENT\r\nDTSTART:203001%02dT080000Z\r\nEND:VEVENT\r\n", day));
+        }
+        content.append("END:VCALENDAR");
+        byte[] bytes = content.toString().getBytes();
+        List<Integer> batchSizes = new ArrayList<>();
+        long[] bytesRead = new long[1];
+
+        int count = new ICalendarReader(LONDON).read(Channels.newChannel(new ByteArrayInputStream(bytes)), 0, 10,
+                batch -> batchSizes.add(batch.length), read -> bytesRead[0] = read);
+
+        assertEquals(25, count);
+        assertEquals(List.of(10, 10, 5), batchSizes);
+        assertEquals(bytes.length, bytesRead[0]);
+    }
+
+    /**
+     * Test for read method.
+     * Should stop reading when the thread is interrupted.
+     */
+    @Test
+    public void read_WhenInterrupted_ShouldStopReading() throws IOException {
+        Thread.currentThread().interrupt();
+        try {
+            readAlarms("BEGIN:VCALENDAR\r\nEND:VCALENDAR", 0);
+            fail();
+        } catch (InterruptedIOException | ClosedByInterruptException e) {
+            // expected, from the reader or from an interruptible channel
+        } finally {
+            Thread.interrupted();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package clock;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.function.IntConsumer;
+
+/**
+ * Streams alarms as an iCalendar file.
+ * Events are written one by one from a shared snapshot of the store, so no copy of the alarms
+ * and no copy of the file is kept in memory.
+ * Dates are written as local time, the way ICalendarReader reads them back, and the UID of each event
+ * is the ID of its alarm. A recurring alarm is written as an event with an RRULE starting at its next occurrence.
+ */
+class ICalendarWriter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PROGRESS_INTERVAL = 4096;
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+
+    private final Writer out;
+    private final String datestamp;
+    private final ZoneId zone;
+    private final DateTimeFormatter formatter;
+
+    /**
+     * Writes the dates as local time of the system time zone.
+     *
+     * @param out Writer the iCalendar content is written to.
+     * @param dateInMilliseconds Date in milliseconds used as the DTSTAMP of every event.
+     */
+    ICalendarWriter(Writer out, long dateInMilliseconds) {
+        this(out, dateInMilliseconds, ZoneId.systemDefault());
+    }
+
+    /**
+     * @param out Writer the iCalendar content is written to.
+     * @param dateInMilliseconds Date in milliseconds used as the DTSTAMP of every event.
+     * @param zone Time zone whose local time the dates are written in.
+     */
+    ICalendarWriter(Writer out, long dateInMilliseconds, ZoneId zone) {
+        this.out = out;
+        this.zone = zone;
+        this.formatter = FORMATTER.withZone(zone);
+        this.datestamp = formatter.format(Instant.ofEpochMilli(dateInMilliseconds));
+    }
+
+    /**
+     * Formats a date in iCalendar format. Safe to call from any thread.
+     *
+     * @param dateInMilliseconds A date in milliseconds.
+     * @param zone Time zone whose local time the date is written in.
+     * @return The date in iCalendar format.
+     */
+    static String format(long dateInMilliseconds, ZoneId zone) {
+        return FORMATTER.withZone(zone).format(Instant.ofEpochMilli(dateInMilliseconds));
+    }
+
+    /**
+     * Saves the alarms of a store to a file.
+     * The file is written next to the target under a temporary name and then renamed over it,
+     * so a crash while saving leaves the previous file intact.
+     *
+     * @param file File to save the alarms to.
+     * @param store Store of the alarms.
+     * @throws IOException Thrown when the file cannot be written.
+     */
+    static void writeFile(Path file, AlarmStore store) throws IOException {
+        writeFile(file, store.snapshot());
+    }
+
+    /**
+     * Saves the alarms of a snapshot to a file, replacing it the same way as {@link #writeFile(Path, AlarmStore)}.
+     *
+     * @param file File to save the alarms to.
+     * @param snapshot Snapshot of the alarms.
+     * @throws IOException Thrown when the file cannot be written.
+     */
+    static void writeFile(Path file, QueueSnapshot snapshot) throws IOException {
+        writeFile(file, snapshot, TimeSource.SYSTEM.millis(), ZoneId.systemDefault(), null);
+    }
+
+    /**
+     * Saves the alarms of a snapshot to a file, reporting progress. When the thread is interrupted
+     * the temporary file is deleted and the previous file is left as it was.
+     *
+     * @param file File to save the alarms to.
+     * @param snapshot Snapshot of the alarms.
+     * @param dateInMilliseconds Date in milliseconds used as the DTSTAMP of every event.
+     * @param zone Time zone whose local time the dates are written in.
+     * @param written Receiver of the number of events written so far, or null.
+     * @throws IOException Thrown when the file cannot be written.
+     * @throws InterruptedIOException Thrown when the thread was interrupted.
+     */
+    static void writeFile(Path file, QueueSnapshot snapshot, long dateInMilliseconds, ZoneId zone,
+                          IntConsumer written) throws IOException {
+        Path target = file.toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                Writer out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1),
+                        BUFFER_SIZE);
+                new ICalendarWriter(out, dateInMilliseconds, zone).write(snapshot, written);
+                out.flush();
+                channel.force(true);
+            }
+
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Writes a calendar with one event per alarm in the store.
+     *
+     * @param store Store of the alarms.
+     * @throws IOException Thrown when the content cannot be written.
+     */
+    void write(AlarmStore store) throws IOException {
+        write(store.snapshot());
+    }
+
+    /**
+     * Writes a calendar with one event per alarm in a snapshot.
+     *
+     * @param snapshot Snapshot of the alarms.
+     * @throws IOException Thrown when the content cannot be written.
+     */
+    void write(QueueSnapshot snapshot) throws IOException {
+        write(snapshot, null);
+    }
+
+    /**
+     * Writes a calendar with one event per alarm in a snapshot, reporting progress and checking for
+     * interruption every PROGRESS_INTERVAL events.
+     *
+     * @param snapshot Snapshot of the alarms.
+     * @param written Receiver of the number of events written so far, or null.
+     * @throws IOException Thrown when the content cannot be written.
+     * @throws InterruptedIOException Thrown when the thread was interrupted.
+     */
+    void write(QueueSnapshot snapshot, IntConsumer written) throws IOException {
+        out.write("BEGIN:VCALENDAR\r\n" +
+                "VERSION:2.0\r\n" +
+                "PRODID:Alarm Clock\r\n");
+
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (i % PROGRESS_INTERVAL == 0 && i > 0) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Writing cancelled after " + i + " events");
+                }
+                if (written != null) {
+                    written.accept(i);
+                }
+            }
+            writeEvent(snapshot.id(i), snapshot.get(i), snapshot.recurrence(i));
+        }
+
+        out.write("END:VCALENDAR");
+        if (written != null) {
+            written.accept(snapshot.size());
+        }
+    }
+
+    /**
+     * Writes a single event.
+     *
+     * @param uid Unique identifier of the event, the ID of the alarm.
+     * @param dateInMilliseconds Date in milliseconds of the alarm.
+     * @param recurrence Rule of the alarm, or null when it goes off once.
+     * @throws IOException Thrown when the content cannot be written.
+     */
+    private void writeEvent(long uid, long dateInMilliseconds, Recurrence recurrence) throws IOException {
+        Instant date = Instant.ofEpochMilli(dateInMilliseconds);
+
+        out.write("BEGIN:VEVENT\r\nUID:");
+        out.write(Long.toString(uid));
+        out.write("\r\nDTSTAMP:");
+        out.write(datestamp);
+        out.write("Z\r\nDTSTART:");
+        formatter.formatTo(date, out);
+        out.write("Z\r\nDTEND:");
+        formatter.formatTo(date, out);
+        out.write("Z\r\n");
+        if (recurrence != null) {
+            out.write("RRULE:");
+            out.write(recurrence.toString(zone));
+            out.write("\r\n");
+        }
+        out.write("END:VEVENT\r\n");
+    }
+}
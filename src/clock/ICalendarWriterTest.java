@@ -0,0 +1,86 @@
+package clock;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for ICalendarWriter class.
+ */
+public class ICalendarWriterTest {
+
+    /**
+     * Test for writeFile method.
+     * Alarms written to a file should be read back unchanged with their IDs, replacing the old file.
+     */
+    @Test
+    public void writeFile_WhenFileExists_ShouldReplaceItWithAllAlarms() throws IOException {
+        AlarmStore store = new StripedAlarmStore();
+        Alarm first = new Alarm(1526832268000L);
+        store.add(first);
+        store.add(new Alarm(1526839468000L));
+        store.add(new Alarm(1526832328000L));
+
+        Path directory = Files.createTempDirectory("alarms");
+        Path file = directory.resolve("alarms.ics");
+        Files.write(file, "old content".getBytes());
+
+        try {
+            ICalendarWriter.writeFile(file, store);
+
+            Alarm[] alarms = ICalendarReader.readFile(file, 0);
+
+            assertArrayEquals(new long[]{1526832268000L, 1526832328000L, 1526839468000L},
+                    Arrays.stream(alarms).mapToLong(Alarm::getDateInMilliseconds).toArray());
+            assertEquals(first.getId(), alarms[0].getId());
+            assertEquals(1, new File(directory.toString()).list().length); // no temporary file left behind
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Test for writeFile method.
+     * A save interrupted part way should leave the old file and no temporary file behind.
+     */
+    @Test
+    public void writeFile_WhenInterrupted_ShouldKeepOldFile() throws IOException {
+        AlarmStore store = new StripedAlarmStore();
+        for (int i = 0; i < 10000; i++) {
+            store.add(new Alarm(1526832268000L + i * 60000L));
+        }
+
+        Path directory = Files.createTempDirectory("alarms");
+        Path file = directory.resolve("alarms.ics");
+        Files.write(file, "old content".getBytes());
+        List<Integer> progress = new ArrayList<>();
+
+        try {
+            ICalendarWriter.writeFile(file, store.snapshot(), 0, ZoneId.systemDefault(), written -> {
+                progress.add(written);
+                Thread.currentThread().interrupt(); // as if the user cancelled after the first progress report
+            });
+            fail();
+        } catch (InterruptedIOException | ClosedByInterruptException e) {
+            assertEquals("old content", new String(Files.readAllBytes(file)));
+            assertEquals(1, new File(directory.toString()).list().length);
+            assertEquals(List.of(4096), progress);
+        } finally {
+            Thread.interrupted();
+            Files.deleteIfExists(file);
+            Files.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package clock;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * Converts between dates in milliseconds and local time of day in one time zone with plain arithmetic.
+ * The offset is looked up once per period between two transitions of the zone (a DST change, usually)
+ * and cached with the bounds of that period, so converting a date inside it does not allocate.
+ * Safe to use from any thread; a thread that crosses a transition just caches the new period.
+ */
+final class LocalTimeConverter {
+    static final long MILLIS_PER_MINUTE = 60 * 1000;
+    static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    private final ZoneId zone;
+    private final ZoneRules rules;
+    private volatile Period period;
+
+    /**
+     * @param zone Time zone of the local times.
+     */
+    LocalTimeConverter(ZoneId zone) {
+        this.zone = zone;
+        this.rules = zone.getRules();
+        this.period = rules.isFixedOffset()
+                ? new Period(Long.MIN_VALUE, Long.MAX_VALUE, rules.getOffset(Instant.EPOCH).getTotalSeconds() * 1000)
+                : load(System.currentTimeMillis());
+    }
+
+    ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * Returns the offset of local time from UTC at a date.
+     *
+     * @param dateInMilliseconds A date in milliseconds.
+     * @return Offset in milliseconds.
+     */
+    int offsetMillis(long dateInMilliseconds) {
+        Period current = period;
+        if (dateInMilliseconds < current.from || dateInMilliseconds >= current.until) {
+            current = load(dateInMilliseconds);
+            period = current;
+        }
+
+        return current.offset;
+    }
+
+    /**
+     * Returns the local date-time of a date, counted in milliseconds since 1970-01-01T00:00 local time.
+     *
+     * @param dateInMilliseconds A date in milliseconds.
+     * @return Local milliseconds.
+     */
+    long toLocalMillis(long dateInMilliseconds) {
+        return dateInMilliseconds + offsetMillis(dateInMilliseconds);
+    }
+
+    /**
+     * Returns the date at which the local clock shows a local date-time. A time skipped by a DST change
+     * is moved forward by the length of the gap, and a time that happens twice gives the later one.
+     *
+     * @param localMillis Local milliseconds since 1970-01-01T00:00 local time.
+     * @return Date in milliseconds.
+     */
+    long toEpochMillis(long localMillis) {
+        int offset = offsetMillis(localMillis);
+        long dateInMilliseconds = localMillis - offset;
+        int actual = offsetMillis(dateInMilliseconds);
+
+        return (actual == offset) ? dateInMilliseconds : localMillis - actual;
+    }
+
+    /**
+     * Returns the local hour of a date.
+     *
+     * @param dateInMilliseconds A date in milliseconds.
+     * @return Hour, 0 to 23.
+     */
+    int hourOf(long dateInMilliseconds) {
+        return (int) (Math.floorMod(toLocalMillis(dateInMilliseconds), MILLIS_PER_DAY) / MILLIS_PER_HOUR);
+    }
+
+    /**
+     * Returns the local minute of a date.
+     *
+     * @param dateInMilliseconds A date in milliseconds.
+     * @return Minute, 0 to 59.
+     */
+    int minuteOf(long dateInMilliseconds) {
+        return (int) (Math.floorMod(toLocalMillis(dateInMilliseconds), MILLIS_PER_HOUR) / MILLIS_PER_MINUTE);
+    }
+
+    /**
+     * Returns the local second of a date, which differs from the second in UTC only in zones whose offset
+     * is not a whole number of minutes.
+     *
+     * @param dateInMilliseconds A date in milliseconds.
+     * @return Second, 0 to 59.
+     */
+    int secondOf(long dateInMilliseconds) {
+        return (int) (Math.floorMod(toLocalMillis(dateInMilliseconds), MILLIS_PER_MINUTE) / 1000);
+    }
+
+    /**
+     * Returns the next date at which the local clock shows a time of day. A time that has already
+     * been reached today, including the current minute, is taken from tomorrow.
+     *
+     * @param now Current date in milliseconds.
+     * @param hour Hour, 0 to 23.
+     * @param minute Minute, 0 to 59.
+     * @return Date in milliseconds.
+     */
+    long nextTimeOfDay(long now, int hour, int minute) {
+        long local = toLocalMillis(now);
+        long target = local - Math.floorMod(local, MILLIS_PER_DAY) + hour * MILLIS_PER_HOUR + minute * MILLIS_PER_MINUTE;
+        if (target <= local) {
+            target += MILLIS_PER_DAY;
+        }
+
+        return toEpochMillis(target);
+    }
+
+    private Period load(long dateInMilliseconds) {
+        Instant instant = Instant.ofEpochMilli(dateInMilliseconds);
+        int offset = rules.getOffset(instant).getTotalSeconds() * 1000;
+
+        // the period starts at a transition at the date itself, so look before the next millisecond
+        ZoneOffsetTransition previous = rules.previousTransition(instant.plusMillis(1));
+        ZoneOffsetTransition next = rules.nextTransition(instant);
+        long from = (previous == null) ? Long.MIN_VALUE : previous.toEpochSecond() * 1000;
+        long until = (next == null) ? Long.MAX_VALUE : next.toEpochSecond() * 1000;
+
+        return new Period(from, until, offset);
+    }
+
+    /**
+     * A period with the same offset, from one transition up to the next.
+     */
+    private static final class Period {
+        final long from;
+        final long until;
+        final int offset;
+
+        Period(long from, long until, int offset) {
+            this.from = from;
+            this.until = until;
+            this.offset = offset;
+        }
+    }
+}
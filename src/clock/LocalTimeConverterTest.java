@@ -0,0 +1,52 @@
+package clock;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test for LocalTimeConverter class.
+ */
+public class LocalTimeConverterTest {
+    private static final ZoneId LONDON = ZoneId.of("Europe/London");
+
+    private static long millis(String localDateTime, ZoneId zone) {
+        return LocalDateTime.parse(localDateTime).atZone(zone).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Test for hourOf method.
+     * Should give the local hour on both sides of a DST change, and in zones with half-hour offsets.
+     */
+    @Test
+    public void hourOf_WhenDstChanges_ShouldFollowLocalTime() {
+        LocalTimeConverter converter = new LocalTimeConverter(LONDON);
+
+        assertEquals(0, converter.hourOf(millis("2018-03-25T00:59:00", LONDON)));
+        assertEquals(2, converter.hourOf(millis("2018-03-25T02:00:00", LONDON)));
+        assertEquals(1, converter.hourOf(millis("2018-10-28T01:30:00", LONDON)));
+        assertEquals(0, converter.hourOf(millis("2018-03-25T00:59:00", LONDON)));
+
+        ZoneId kolkata = ZoneId.of("Asia/Kolkata");
+        LocalTimeConverter halfHour = new LocalTimeConverter(kolkata);
+        assertEquals(9, halfHour.hourOf(millis("2018-05-20T09:45:00", kolkata)));
+        assertEquals(45, halfHour.minuteOf(millis("2018-05-20T09:45:00", kolkata)));
+    }
+
+    /**
+     * Test for nextTimeOfDay method.
+     * A time skipped by the change to summer time should be moved forward by an hour.
+     */
+    @Test
+    public void nextTimeOfDay_WhenTimeInGap_ShouldMoveItForward() {
+        LocalTimeConverter converter = new LocalTimeConverter(LONDON);
+        long now = millis("2018-03-24T22:00:00", LONDON);
+
+        assertEquals(millis("2018-03-25T02:30:00", LONDON), converter.nextTimeOfDay(now, 1, 30));
+        assertEquals(millis("2018-03-25T07:00:00", LONDON), converter.nextTimeOfDay(now, 7, 0));
+        assertEquals(millis("2018-03-24T23:15:00", LONDON), converter.nextTimeOfDay(now, 23, 15));
+    }
+}
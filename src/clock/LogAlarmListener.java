@@ -0,0 +1,27 @@
+package clock;
+
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Writes one line per fired alarm to a stream.
+ */
+class LogAlarmListener implements AlarmListener {
+    private final PrintStream out;
+    private final SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+    LogAlarmListener(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void alarmsFired(List<AlarmEvent> events) {
+        for (AlarmEvent event : events) {
+            out.println(formatter.format(new Date(event.getDateInMilliseconds())) + " " + event.getMessage()
+                    + " (lateness " + event.getLateness() + " ms)");
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,389 @@
+package clock;
+
+import queuemanager.PriorityQueue;
+import queuemanager.QueueUnderflowException;
+
+import java.util.Arrays;
+
+/**
+ * A priority queue implemented as an implicit d-ary min-heap keyed by a primitive long (epoch milliseconds).
+ * Priorities and items are kept in parallel arrays, so no priority is ever boxed and no node objects are
+ * allocated per entry. Adding and removing are O(log n), reading the head is O(1), and a batch of entries
+ * can be added with a single O(n) heapify.
+ * An optional {@link SlotTracker} is told every time an item moves, so that callers can find an item's slot
+ * in O(1) and cancel or re-prioritise it in O(log n).
+ *
+ * @param <T> Type of the items stored in the queue.
+ */
+public class LongHeapPriorityQueue<T> implements PriorityQueue<T> {
+    private static final int ARITY = 4;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final SlotTracker<? super T> tracker;
+    private long[] priorities;
+    private Object[] items;
+    private int size;
+
+    public LongHeapPriorityQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongHeapPriorityQueue(int initialCapacity) {
+        this(initialCapacity, null);
+    }
+
+    /**
+     * @param initialCapacity Number of items the queue can hold before growing.
+     * @param tracker Told about the slot of every item it moves to, or null.
+     */
+    public LongHeapPriorityQueue(int initialCapacity, SlotTracker<? super T> tracker) {
+        int capacity = Math.max(1, initialCapacity);
+        this.tracker = tracker;
+        priorities = new long[capacity];
+        items = new Object[capacity];
+    }
+
+    /**
+     * Receives the slot of an item whenever it is placed in the heap or removed from it.
+     *
+     * @param <T> Type of the items stored in the queue.
+     */
+    @FunctionalInterface
+    public interface SlotTracker<T> {
+        /**
+         * @param item Item that moved.
+         * @param slot New slot of the item, or -1 when it was removed from the queue.
+         */
+        void moved(T item, int slot);
+    }
+
+    /**
+     * Adds an item to the queue.
+     *
+     * @param item Item to be added.
+     * @param priority Priority of the item, lower values are removed first.
+     */
+    @Override
+    public void add(T item, long priority) {
+        ensureCapacity(size + 1);
+        priorities[size] = priority;
+        items[size] = item;
+        siftUp(size++);
+    }
+
+    /**
+     * Adds a batch of items to the queue.
+     * When the batch is large compared to the queue, the whole heap is rebuilt in linear time instead of
+     * sifting every item up separately. A sorted batch added to an empty queue is taken as it is.
+     *
+     * @param newItems Items to be added.
+     * @param newPriorities Priorities of the items, in the same order as the items.
+     * @param count Number of items to take from the arrays.
+     */
+    public void addAll(T[] newItems, long[] newPriorities, int count) {
+        if (count <= 0) {
+            return;
+        }
+
+        ensureCapacity(size + count);
+        System.arraycopy(newItems, 0, items, size, count);
+        System.arraycopy(newPriorities, 0, priorities, size, count);
+
+        int oldSize = size;
+        size += count;
+        for (int i = oldSize; i < size; i++) {
+            placed(i);
+        }
+
+        if (oldSize == 0 && isSorted(newPriorities, count)) {
+            return; // a sorted array is already a heap
+        } else if (count > oldSize) {
+            heapify();
+        } else {
+            for (int i = oldSize; i < size; i++) {
+                siftUp(i);
+            }
+        }
+    }
+
+    private static boolean isSorted(long[] priorities, int count) {
+        for (int i = 1; i < count; i++) {
+            if (priorities[i] < priorities[i - 1]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the item with the lowest priority.
+     *
+     * @return The head of the queue.
+     * @throws QueueUnderflowException Thrown when queue is empty.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public T head() throws QueueUnderflowException {
+        if (size == 0) {
+            throw new QueueUnderflowException();
+        }
+
+        return (T) items[0];
+    }
+
+    /**
+     * Returns the lowest priority in the queue.
+     *
+     * @return The priority of the head of the queue.
+     * @throws QueueUnderflowException Thrown when queue is empty.
+     */
+    public long headPriority() throws QueueUnderflowException {
+        if (size == 0) {
+            throw new QueueUnderflowException();
+        }
+
+        return priorities[0];
+    }
+
+    /**
+     * Removes the head of the queue.
+     *
+     * @throws QueueUnderflowException Thrown when queue is empty.
+     */
+    @Override
+    public void remove() throws QueueUnderflowException {
+        if (size == 0) {
+            throw new QueueUnderflowException();
+        }
+
+        removeAt(0);
+    }
+
+    /**
+     * Removes the item at the given position of the queue in priority order,
+     * the same order as returned by {@link #getPriorityArray()}.
+     *
+     * @param position Position of the item in priority order.
+     * @throws QueueUnderflowException Thrown when there is no item at that position.
+     */
+    @Override
+    public void remove(int position) throws QueueUnderflowException {
+        if (position < 0 || position >= size) {
+            throw new QueueUnderflowException();
+        }
+
+        long[] sorted = Arrays.copyOf(priorities, size);
+        Arrays.sort(sorted);
+        long priority = sorted[position];
+
+        for (int i = 0; i < size; i++) {
+            if (priorities[i] == priority) {
+                removeAt(i);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the priority stored at a slot of the heap.
+     * Slots from 0 to size() - 1 cover every item once, in no particular order.
+     *
+     * @param slot Index of the item in the heap.
+     * @return Priority of the item.
+     */
+    public long priorityAt(int slot) {
+        if (slot < 0 || slot >= size) {
+            throw new IndexOutOfBoundsException("Slot " + slot + " of " + size);
+        }
+
+        return priorities[slot];
+    }
+
+    /**
+     * Returns the item stored at a slot of the heap.
+     *
+     * @param slot Index of the item in the heap.
+     * @return The item.
+     */
+    @SuppressWarnings("unchecked")
+    public T itemAt(int slot) {
+        if (slot < 0 || slot >= size) {
+            throw new IndexOutOfBoundsException("Slot " + slot + " of " + size);
+        }
+
+        return (T) items[slot];
+    }
+
+    /**
+     * Changes the priority of the item at a heap slot and moves it up or down to restore the heap property.
+     *
+     * @param slot Index of the item in the heap, as used by {@link #priorityAt(int)}.
+     * @param priority New priority of the item.
+     */
+    public void changePriority(int slot, long priority) {
+        if (slot < 0 || slot >= size) {
+            throw new IndexOutOfBoundsException("Slot " + slot + " of " + size);
+        }
+
+        long old = priorities[slot];
+        priorities[slot] = priority;
+        if (priority < old) {
+            siftUp(slot);
+        } else if (priority > old) {
+            siftDown(slot);
+        }
+    }
+
+    /**
+     * Returns the priorities of all items in the queue, sorted from the lowest.
+     *
+     * @return Sorted priorities of the queue.
+     */
+    @Override
+    public Long[] getPriorityArray() {
+        long[] sorted = Arrays.copyOf(priorities, size);
+        Arrays.sort(sorted);
+
+        Long[] result = new Long[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = sorted[i];
+        }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                result.append(", ");
+            }
+            result.append('(').append(items[i]).append(", ").append(priorities[i]).append(')');
+        }
+
+        return result.append(']').toString();
+    }
+
+    /**
+     * Removes the item at the given heap slot and restores the heap property.
+     *
+     * @param slot Index of the item in the heap, as used by {@link #priorityAt(int)}.
+     */
+    public void removeAt(int slot) {
+        if (slot < 0 || slot >= size) {
+            throw new IndexOutOfBoundsException("Slot " + slot + " of " + size);
+        }
+
+        int last = --size;
+        if (tracker != null) {
+            tracker.moved(item(slot), -1);
+        }
+        if (slot != last) {
+            priorities[slot] = priorities[last];
+            items[slot] = items[last];
+        }
+        items[last] = null;
+
+        if (slot != last) {
+            siftDown(slot);
+            siftUp(slot);
+        }
+    }
+
+    /**
+     * Rebuilds the heap property over the whole array, bottom-up (Floyd's method).
+     */
+    private void heapify() {
+        for (int i = (size - 2) / ARITY; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    private void siftUp(int slot) {
+        long priority = priorities[slot];
+        Object item = items[slot];
+
+        while (slot > 0) {
+            int parent = (slot - 1) / ARITY;
+            if (priorities[parent] <= priority) {
+                break;
+            }
+            priorities[slot] = priorities[parent];
+            items[slot] = items[parent];
+            placed(slot);
+            slot = parent;
+        }
+
+        priorities[slot] = priority;
+        items[slot] = item;
+        placed(slot);
+    }
+
+    private void siftDown(int slot) {
+        long priority = priorities[slot];
+        Object item = items[slot];
+
+        while (true) {
+            int firstChild = slot * ARITY + 1;
+            if (firstChild >= size) {
+                break;
+            }
+
+            // finds the smallest of up to ARITY children
+            int smallest = firstChild;
+            int lastChild = Math.min(firstChild + ARITY, size);
+            for (int child = firstChild + 1; child < lastChild; child++) {
+                if (priorities[child] < priorities[smallest]) {
+                    smallest = child;
+                }
+            }
+
+            if (priorities[smallest] >= priority) {
+                break;
+            }
+            priorities[slot] = priorities[smallest];
+            items[slot] = items[smallest];
+            placed(slot);
+            slot = smallest;
+        }
+
+        priorities[slot] = priority;
+        items[slot] = item;
+        placed(slot);
+    }
+
+    /**
+     * Tells the tracker, if any, the slot of the item now stored in it.
+     *
+     * @param slot Index of the item in the heap.
+     */
+    private void placed(int slot) {
+        if (tracker != null) {
+            tracker.moved(item(slot), slot);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T item(int slot) {
+        return (T) items[slot];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > priorities.length) {
+            int newCapacity = Math.max(capacity, priorities.length + (priorities.length >> 1));
+            priorities = Arrays.copyOf(priorities, newCapacity);
+            items = Arrays.copyOf(items, newCapacity);
+        }
+    }
+}
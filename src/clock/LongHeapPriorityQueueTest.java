@@ -0,0 +1,122 @@
+package clock;
+
+import org.junit.Before;
+import org.junit.Test;
+import queuemanager.QueueUnderflowException;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for LongHeapPriorityQueue class.
+ */
+public class LongHeapPriorityQueueTest {
+    private LongHeapPriorityQueue<Alarm> queue;
+
+    @Before
+    public void setUp() {
+        queue = new LongHeapPriorityQueue<>(2);
+    }
+
+    /**
+     * Test for head method.
+     * Should throw an exception when the queue is empty.
+     *
+     * @throws QueueUnderflowException Thrown when queue is empty.
+     */
+    @Test(expected = QueueUnderflowException.class)
+    public void head_WhenEmpty_ShouldThrowException() throws QueueUnderflowException {
+        queue.head();
+    }
+
+    /**
+     * Test for add and remove methods.
+     * Items should come out in priority order regardless of the order they were added in.
+     */
+    @Test
+    public void remove_WhenRandomItemsAdded_ShouldReturnThemInOrder() throws QueueUnderflowException {
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            long priority = random.nextInt(500);
+            queue.add(new Alarm(priority), priority);
+        }
+
+        long previous = Long.MIN_VALUE;
+        while (!queue.isEmpty()) {
+            long priority = queue.head().getDateInMilliseconds();
+            assertTrue(priority >= previous);
+            assertEquals(priority, queue.headPriority());
+            previous = priority;
+            queue.remove();
+        }
+    }
+
+    /**
+     * Test for addAll method.
+     * A batch added to a non-empty queue should be merged in priority order.
+     */
+    @Test
+    public void addAll_WhenQueueNotEmpty_ShouldKeepPriorityOrder() throws QueueUnderflowException {
+        queue.add(new Alarm(50), 50);
+        queue.add(new Alarm(10), 10);
+
+        long[] priorities = {40, 5, 30, 20};
+        Alarm[] alarms = new Alarm[priorities.length];
+        for (int i = 0; i < priorities.length; i++) {
+            alarms[i] = new Alarm(priorities[i]);
+        }
+        queue.addAll(alarms, priorities, priorities.length);
+
+        assertEquals(6, queue.size());
+        assertEquals("5", queue.head().toString());
+        assertEquals("[5, 10, 20, 30, 40, 50]", java.util.Arrays.toString(queue.getPriorityArray()));
+    }
+
+    /**
+     * Test for remove method with a position.
+     * Should remove the item at the given position in priority order.
+     */
+    @Test
+    public void remove_WhenPositionGiven_ShouldRemoveThatItem() throws QueueUnderflowException {
+        for (long priority : new long[]{30, 10, 20}) {
+            queue.add(new Alarm(priority), priority);
+        }
+
+        queue.remove(1);
+
+        assertEquals("[10, 30]", java.util.Arrays.toString(queue.getPriorityArray()));
+    }
+
+    /**
+     * Test for changePriority method.
+     * The tracker should always know the slot of every item, and changed items should move to their new place.
+     */
+    @Test
+    public void changePriority_WhenSlotsTracked_ShouldKeepSlotsAndOrder() throws QueueUnderflowException {
+        queue = new LongHeapPriorityQueue<>(2, (alarm, slot) -> alarm.slot = slot);
+        Random random = new Random(42);
+        Alarm[] alarms = new Alarm[200];
+        for (int i = 0; i < alarms.length; i++) {
+            alarms[i] = new Alarm(random.nextInt(1000));
+            queue.add(alarms[i], alarms[i].getDateInMilliseconds());
+        }
+
+        for (int i = 0; i < alarms.length; i += 2) {
+            queue.changePriority(alarms[i].slot, random.nextInt(1000));
+        }
+        queue.removeAt(alarms[1].slot);
+
+        assertEquals(-1, alarms[1].slot);
+        for (int i = 2; i < alarms.length; i++) {
+            assertSame(alarms[i], queue.itemAt(alarms[i].slot));
+        }
+
+        long previous = Long.MIN_VALUE;
+        while (!queue.isEmpty()) {
+            assertTrue(queue.headPriority() >= previous);
+            previous = queue.headPriority();
+            queue.remove();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package clock;
+
+/**
+ * What to do with alarms that are found overdue by more than the grace period,
+ * for example after the computer was suspended.
+ */
+enum MissedAlarmPolicy {
+    /**
+     * Fires every missed alarm separately, reporting how late it is.
+     */
+    FIRE_LATE,
+
+    /**
+     * Fires a single alarm on behalf of all alarms missed since the last check.
+     */
+    COALESCE,
+
+    /**
+     * Removes missed alarms from the queue without firing them.
+     */
+    DROP
+}
@@ -1,39 +1,53 @@
 package clock;
 
-import queuemanager.QueueUnderflowException;
-
-import java.util.Calendar;
-import java.util.Observable;
-
-public class Model extends Observable {
+/**
+ * Time shown by the clock, in the time zone of the alarm clock so that it matches the alarm hand.
+ * Each update that changes the second or the minute is published on the event bus.
+ */
+public class Model {
     int hour = 0;
     int minute = 0;
     int second = 0;
 
+    private final TimeSource timeSource;
+    private final ClockEventBus events;
+
     public Model() {
+        this(TimeSource.SYSTEM);
+    }
+
+    Model(TimeSource timeSource) {
+        this(timeSource, AlarmClock.events());
+    }
+
+    /**
+     * @param timeSource Time source of the clock.
+     * @param events Bus the second and minute ticks are published on.
+     */
+    Model(TimeSource timeSource, ClockEventBus events) {
+        this.timeSource = timeSource;
+        this.events = events;
         update();
     }
-    
+
+    ClockEventBus events() {
+        return events;
+    }
+
     void update() {
-        Calendar date = Calendar.getInstance();
-        hour = date.get(Calendar.HOUR_OF_DAY);
+        long millis = timeSource.millis();
+        hour = AlarmClock.millisecondsToHours(millis);
 
-        // checks every minute if alarm needs to be activated
         int oldMinute = minute;
-        minute = date.get(Calendar.MINUTE);
-        if (oldMinute != minute) {
-            try {
-                AlarmClock.checkAlarms(hour, minute);
-            } catch (QueueUnderflowException e) {
-                e.printStackTrace();
-            }
-        }
-
+        minute = AlarmClock.millisecondsToMinutes(millis);
         int oldSecond = second;
-        second = date.get(Calendar.SECOND);
+        second = AlarmClock.millisecondsToSeconds(millis);
         if (oldSecond != second) {
-            setChanged();
-            notifyObservers();
+            ClockMetrics.ticked(Math.floorMod(millis, 1000L));
+            events.publish(ClockEventBus.Topic.SECOND_TICK, millis);
+        }
+        if (oldMinute != minute) {
+            events.publish(ClockEventBus.Topic.MINUTE_TICK, millis);
         }
     }
-}
\ No newline at end of file
+}
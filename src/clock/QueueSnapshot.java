@@ -0,0 +1,168 @@
+package clock;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * An immutable, sorted view of the alarm dates, IDs and rules at one version of an alarm store.
+ * The store hands out the same snapshot for as long as it does not change, so readers such as the
+ * iCalendar writer and the edit dialogue share it without copying or boxing.
+ */
+final class QueueSnapshot {
+    static final QueueSnapshot EMPTY = new QueueSnapshot(-1, new long[0], new long[0]);
+
+    private static final Comparator<Alarm> BY_DATE = Comparator.comparingLong(Alarm::getDateInMilliseconds);
+
+    private final long version;
+    private final long[] dates;
+    private final long[] ids;
+    private final Recurrence[] recurrences;
+
+    /**
+     * @param version Version of the store the snapshot was taken at.
+     * @param sortedDates Dates in milliseconds sorted from the earliest. The array is not copied and must not be changed.
+     * @param ids IDs of the alarms, in the same order as the dates. The array is not copied either.
+     */
+    QueueSnapshot(long version, long[] sortedDates, long[] ids) {
+        this(version, sortedDates, ids, null);
+    }
+
+    /**
+     * @param version Version of the store the snapshot was taken at.
+     * @param sortedDates Dates in milliseconds sorted from the earliest. The array is not copied and must not be changed.
+     * @param ids IDs of the alarms, in the same order as the dates. The array is not copied either.
+     * @param recurrences Rules of the alarms in the same order, or null when none of them recur. Not copied either.
+     */
+    QueueSnapshot(long version, long[] sortedDates, long[] ids, Recurrence[] recurrences) {
+        this.version = version;
+        this.dates = sortedDates;
+        this.ids = ids;
+        this.recurrences = recurrences;
+    }
+
+    /**
+     * Takes a snapshot of alarms in any order. The store must not change the alarms meanwhile.
+     *
+     * @param version Version of the store the snapshot is taken at.
+     * @param alarms Alarms of the store. The array is sorted in place.
+     * @return Snapshot of the alarms.
+     */
+    static QueueSnapshot of(long version, Alarm[] alarms) {
+        Arrays.sort(alarms, BY_DATE);
+
+        long[] dates = new long[alarms.length];
+        long[] ids = new long[alarms.length];
+        Recurrence[] recurrences = null;
+        for (int i = 0; i < alarms.length; i++) {
+            dates[i] = alarms[i].getDateInMilliseconds();
+            ids[i] = alarms[i].getId();
+
+            Recurrence recurrence = alarms[i].getRecurrence();
+            if (recurrence != null) {
+                if (recurrences == null) {
+                    recurrences = new Recurrence[alarms.length];
+                }
+                recurrences[i] = recurrence;
+            }
+        }
+
+        return new QueueSnapshot(version, dates, ids, recurrences);
+    }
+
+    long version() {
+        return version;
+    }
+
+    int size() {
+        return dates.length;
+    }
+
+    boolean isEmpty() {
+        return dates.length == 0;
+    }
+
+    /**
+     * Returns the date at a position in date order.
+     *
+     * @param position Position of the alarm.
+     * @return Date in milliseconds.
+     */
+    long get(int position) {
+        return dates[position];
+    }
+
+    /**
+     * Returns the ID of the alarm at a position in date order.
+     * Unlike the position, the ID stays valid when the store changes.
+     *
+     * @param position Position of the alarm.
+     * @return ID of the alarm.
+     */
+    long id(int position) {
+        return ids[position];
+    }
+
+    /**
+     * Returns the rule of the alarm at a position in date order.
+     *
+     * @param position Position of the alarm.
+     * @return The rule, or null when the alarm goes off once.
+     */
+    Recurrence recurrence(int position) {
+        return (recurrences == null) ? null : recurrences[position];
+    }
+
+    /**
+     * Returns whether any alarm in the snapshot recurs.
+     *
+     * @return Whether any alarm has a rule.
+     */
+    boolean hasRecurrences() {
+        return recurrences != null;
+    }
+
+    /**
+     * Returns the date of the earliest alarm.
+     *
+     * @return Date in milliseconds, or AlarmStore.NONE when the snapshot is empty.
+     */
+    long headMillis() {
+        return isEmpty() ? AlarmStore.NONE : dates[0];
+    }
+
+    /**
+     * Returns a cursor over the dates from the earliest. Use nextLong() to avoid boxing.
+     *
+     * @return Cursor over the dates in milliseconds.
+     */
+    PrimitiveIterator.OfLong cursor() {
+        return new PrimitiveIterator.OfLong() {
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                return position < dates.length;
+            }
+
+            @Override
+            public long nextLong() {
+                if (position >= dates.length) {
+                    throw new NoSuchElementException();
+                }
+
+                return dates[position++];
+            }
+        };
+    }
+
+    /**
+     * Returns a copy of the dates.
+     *
+     * @return Sorted dates in milliseconds.
+     */
+    long[] toArray() {
+        return Arrays.copyOf(dates, dates.length);
+    }
+}
@@ -0,0 +1,380 @@
+package clock;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Rule of a recurring alarm, a subset of the iCalendar RRULE: FREQ=DAILY or WEEKLY, INTERVAL, BYDAY,
+ * COUNT and UNTIL. Only the next occurrence of a recurring alarm is queued; the one after it is computed
+ * when it fires, so a schedule takes the same memory however far ahead it runs.
+ * Occurrences are computed in local time, so an alarm keeps its time of day across DST changes.
+ * COUNT is turned into the equivalent UNTIL when the rule is parsed, so no occurrence counter has to be kept.
+ */
+final class Recurrence {
+    enum Frequency {
+        DAILY, WEEKLY
+    }
+
+    private static final String[] DAY_NAMES = {"MO", "TU", "WE", "TH", "FR", "SA", "SU"};
+    private static final int WEEKDAYS = 0b0011111;
+    private static final int NO_TIME = -1;
+
+    /**
+     * Every day.
+     */
+    static final Recurrence DAILY = new Recurrence(Frequency.DAILY, 1, 0, AlarmStore.NONE, NO_TIME);
+
+    /**
+     * Every day from Monday to Friday.
+     */
+    static final Recurrence ON_WEEKDAYS = new Recurrence(Frequency.WEEKLY, 1, WEEKDAYS, AlarmStore.NONE, NO_TIME);
+
+    /**
+     * Every week on the same day.
+     */
+    static final Recurrence WEEKLY = new Recurrence(Frequency.WEEKLY, 1, 0, AlarmStore.NONE, NO_TIME);
+
+    private final Frequency frequency;
+    private final int interval;
+    private final int byDay;
+    private final long until;
+    private final int secondOfDay;
+
+    /**
+     * @param frequency Unit of the interval.
+     * @param interval Number of days or weeks between occurrences.
+     * @param byDay Days of the week the alarm occurs on, bit 0 for Monday to bit 6 for Sunday, or 0 for any.
+     * @param until Date in milliseconds after which there are no occurrences, or AlarmStore.NONE.
+     * @param secondOfDay Local time of day of the occurrences in seconds, or -1 to keep the time of the previous one.
+     */
+    Recurrence(Frequency frequency, int interval, int byDay, long until, int secondOfDay) {
+        if (interval < 1 || interval > 0xFFFF) {
+            throw new IllegalArgumentException("Invalid interval " + interval);
+        }
+
+        this.frequency = frequency;
+        this.interval = interval;
+        this.byDay = byDay & 0x7F;
+        this.until = until;
+        this.secondOfDay = secondOfDay;
+    }
+
+    Frequency getFrequency() {
+        return frequency;
+    }
+
+    long getUntil() {
+        return until;
+    }
+
+    /**
+     * Returns the rule fixed to the local time of day of its first occurrence, so that an occurrence moved
+     * forward by a DST gap does not move the following ones.
+     *
+     * @param start Date in milliseconds of the first occurrence.
+     * @param zone Time zone the occurrences are computed in.
+     * @return The rule at the time of day of the start.
+     */
+    Recurrence startingAt(long start, ZoneId zone) {
+        int second = LocalDateTime.ofInstant(Instant.ofEpochMilli(start), zone).toLocalTime().toSecondOfDay();
+
+        return new Recurrence(frequency, interval, byDay, until, second);
+    }
+
+    /**
+     * Returns the first occurrence at or after a date, which is the date itself unless it falls on a day
+     * the rule does not occur on.
+     *
+     * @param start Date in milliseconds the rule starts at.
+     * @param zone Time zone the occurrences are computed in.
+     * @return Date in milliseconds of the first occurrence, or AlarmStore.NONE when the rule has ended.
+     */
+    long first(long start, ZoneId zone) {
+        LocalDate date = LocalDateTime.ofInstant(Instant.ofEpochMilli(start), zone).toLocalDate();
+        if (byDay == 0 || occursOn(date.getDayOfWeek())) {
+            return (start > until) ? AlarmStore.NONE : start;
+        }
+
+        return next(start, zone);
+    }
+
+    /**
+     * Returns the occurrence following another one.
+     *
+     * @param previous Date in milliseconds of an occurrence.
+     * @param zone Time zone the occurrences are computed in.
+     * @return Date in milliseconds of the next occurrence, or AlarmStore.NONE when the rule has ended.
+     */
+    long next(long previous, ZoneId zone) {
+        LocalDateTime local = LocalDateTime.ofInstant(Instant.ofEpochMilli(previous), zone);
+        LocalTime time = (secondOfDay == NO_TIME) ? local.toLocalTime() : LocalTime.ofSecondOfDay(secondOfDay);
+        LocalDate date = nextDate(local.toLocalDate());
+
+        long next = LocalDateTime.of(date, time).atZone(zone).toInstant().toEpochMilli();
+
+        return (next > until) ? AlarmStore.NONE : next;
+    }
+
+    /**
+     * Returns the first occurrence after a date, counting from a given occurrence.
+     *
+     * @param start Date in milliseconds of an occurrence.
+     * @param after Date in milliseconds the occurrence must be later than.
+     * @param zone Time zone the occurrences are computed in.
+     * @return Date in milliseconds of the occurrence, or AlarmStore.NONE when the rule ends before.
+     */
+    long nextAfter(long start, long after, ZoneId zone) {
+        long occurrence = start;
+        if (byDay == 0 && after > start) {
+            // every period has one occurrence, so whole periods are skipped at once, up to one before the day
+            // of the date, and only the last step or two are taken one at a time
+            LocalDateTime local = LocalDateTime.ofInstant(Instant.ofEpochMilli(start), zone);
+            long periodDays = (frequency == Frequency.DAILY) ? interval : 7L * interval;
+            long days = ChronoUnit.DAYS.between(local.toLocalDate(), LocalDate.ofInstant(Instant.ofEpochMilli(after), zone));
+            long periods = days / periodDays - 1;
+            if (periods > 0) {
+                LocalTime time = (secondOfDay == NO_TIME) ? local.toLocalTime() : LocalTime.ofSecondOfDay(secondOfDay);
+                occurrence = LocalDateTime.of(local.toLocalDate().plusDays(periods * periodDays), time)
+                        .atZone(zone).toInstant().toEpochMilli();
+                if (occurrence > until) {
+                    return AlarmStore.NONE;
+                }
+            }
+        }
+
+        while (occurrence <= after && occurrence != AlarmStore.NONE) {
+            occurrence = next(occurrence, zone);
+        }
+
+        return occurrence;
+    }
+
+    private LocalDate nextDate(LocalDate date) {
+        if (frequency == Frequency.DAILY) {
+            do {
+                date = date.plusDays(interval);
+            } while (byDay != 0 && !occursOn(date.getDayOfWeek()));
+
+            return date;
+        }
+
+        if (byDay == 0) {
+            return date.plusWeeks(interval);
+        }
+
+        // the following days of the same week, then the first day of the next week the rule occurs in
+        for (LocalDate day = date.plusDays(1); day.getDayOfWeek() != DayOfWeek.MONDAY; day = day.plusDays(1)) {
+            if (occursOn(day.getDayOfWeek())) {
+                return day;
+            }
+        }
+
+        LocalDate monday = date.minusDays(date.getDayOfWeek().ordinal()).plusWeeks(interval);
+        return monday.plusDays(Integer.numberOfTrailingZeros(byDay));
+    }
+
+    private boolean occursOn(DayOfWeek day) {
+        return (byDay & (1 << day.ordinal())) != 0;
+    }
+
+    /**
+     * Parses the value of an RRULE property.
+     *
+     * @param rule Value of the property, for example FREQ=WEEKLY;BYDAY=MO,WE;COUNT=10.
+     * @param start Date in milliseconds of the first occurrence, the DTSTART of the event.
+     * @param zone Time zone the dates are read and the occurrences computed in.
+     * @return The rule, or null when it uses a frequency or part that is not supported.
+     * @throws IllegalArgumentException Thrown when the rule is not valid.
+     */
+    static Recurrence parse(String rule, long start, ZoneId zone) {
+        Frequency frequency = null;
+        int interval = 1;
+        int byDay = 0;
+        int count = 0;
+        long until = AlarmStore.NONE;
+
+        for (String part : rule.split(";")) {
+            int equals = part.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("Invalid rule part " + part);
+            }
+            String name = part.substring(0, equals).toUpperCase();
+            String value = part.substring(equals + 1).toUpperCase();
+
+            switch (name) {
+                case "FREQ":
+                    if (!value.equals("DAILY") && !value.equals("WEEKLY")) {
+                        return null;
+                    }
+                    frequency = Frequency.valueOf(value);
+                    break;
+                case "INTERVAL":
+                    interval = Integer.parseInt(value);
+                    break;
+                case "BYDAY":
+                    for (String day : value.split(",")) {
+                        byDay |= 1 << dayIndex(day);
+                    }
+                    break;
+                case "COUNT":
+                    count = Integer.parseInt(value);
+                    if (count < 1) {
+                        throw new IllegalArgumentException("Invalid count " + value);
+                    }
+                    break;
+                case "UNTIL":
+                    until = parseUntil(value, zone);
+                    break;
+                case "WKST":
+                    break; // weeks always start on Monday, which is the default
+                default:
+                    return null;
+            }
+        }
+
+        if (frequency == null) {
+            throw new IllegalArgumentException("Missing FREQ in " + rule);
+        }
+
+        Recurrence recurrence = new Recurrence(frequency, interval, byDay, until, NO_TIME).startingAt(start, zone);
+        if (count == 0) {
+            return recurrence;
+        }
+
+        // the last of COUNT occurrences is the same limit as UNTIL
+        long last = start;
+        for (int i = 1; i < count && last != AlarmStore.NONE; i++) {
+            last = recurrence.next(last, zone);
+        }
+
+        return (last == AlarmStore.NONE) ? recurrence : recurrence.withUntil(last);
+    }
+
+    /**
+     * Returns the rule ending at a date, or earlier if it already ends before.
+     *
+     * @param date Date in milliseconds after which there are no occurrences.
+     * @return The rule with the new end.
+     */
+    Recurrence withUntil(long date) {
+        return new Recurrence(frequency, interval, byDay, Math.min(until, date), secondOfDay);
+    }
+
+    private static int dayIndex(String day) {
+        for (int i = 0; i < DAY_NAMES.length; i++) {
+            if (DAY_NAMES[i].equals(day)) {
+                return i;
+            }
+        }
+
+        // numbered days such as 1MO only make sense in monthly and yearly rules
+        throw new IllegalArgumentException("Invalid day " + day);
+    }
+
+    /**
+     * Parses an UNTIL value. Like DTSTART, it is read as local time; a plain date includes the whole day.
+     */
+    private static long parseUntil(String value, ZoneId zone) {
+        if (value.length() < 8) {
+            throw new IllegalArgumentException("Invalid date " + value);
+        }
+
+        LocalDate date = LocalDate.of(Integer.parseInt(value.substring(0, 4)),
+                Integer.parseInt(value.substring(4, 6)), Integer.parseInt(value.substring(6, 8)));
+        LocalTime time = LocalTime.MAX;
+        if (value.length() >= 15 && value.charAt(8) == 'T') {
+            time = LocalTime.of(Integer.parseInt(value.substring(9, 11)),
+                    Integer.parseInt(value.substring(11, 13)), Integer.parseInt(value.substring(13, 15)));
+        }
+
+        return LocalDateTime.of(date, time).atZone(zone).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Packs everything but UNTIL into a long, for the journal and snapshot files.
+     *
+     * @return The packed rule.
+     */
+    long pack() {
+        return byDay
+                | (long) interval << 7
+                | (long) (frequency.ordinal() + 1) << 23
+                | (long) (secondOfDay + 1) << 25;
+    }
+
+    /**
+     * Unpacks a rule packed by {@link #pack()}.
+     *
+     * @param packed The packed rule.
+     * @param until Date in milliseconds after which there are no occurrences, or AlarmStore.NONE.
+     * @return The rule.
+     * @throws IllegalArgumentException Thrown when the value is not a packed rule.
+     */
+    static Recurrence unpack(long packed, long until) {
+        int frequency = (int) (packed >>> 23 & 0x3) - 1;
+        if (frequency < 0 || frequency >= Frequency.values().length) {
+            throw new IllegalArgumentException("Invalid packed rule " + packed);
+        }
+
+        return new Recurrence(Frequency.values()[frequency], (int) (packed >>> 7 & 0xFFFF), (int) (packed & 0x7F),
+                until, (int) (packed >>> 25 & 0x1FFFF) - 1);
+    }
+
+    /**
+     * Returns the rule as the value of an RRULE property, with UNTIL as local time of the system time zone.
+     *
+     * @return The value of the RRULE property.
+     */
+    @Override
+    public String toString() {
+        return toString(ZoneId.systemDefault());
+    }
+
+    /**
+     * Returns the rule as the value of an RRULE property. UNTIL is written as local time, like DTSTART.
+     *
+     * @param zone Time zone whose local time UNTIL is written in.
+     * @return The value of the RRULE property.
+     */
+    String toString(ZoneId zone) {
+        StringBuilder rule = new StringBuilder("FREQ=").append(frequency);
+        if (interval != 1) {
+            rule.append(";INTERVAL=").append(interval);
+        }
+        if (byDay != 0) {
+            rule.append(";BYDAY=");
+            for (int i = 0; i < DAY_NAMES.length; i++) {
+                if ((byDay & (1 << i)) != 0) {
+                    rule.append(DAY_NAMES[i]).append(',');
+                }
+            }
+            rule.setLength(rule.length() - 1);
+        }
+        if (until != AlarmStore.NONE) {
+            rule.append(";UNTIL=").append(ICalendarWriter.format(until, zone)).append('Z');
+        }
+
+        return rule.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Recurrence)) {
+            return false;
+        }
+
+        Recurrence other = (Recurrence) o;
+        return frequency == other.frequency && interval == other.interval && byDay == other.byDay
+                && until == other.until && secondOfDay == other.secondOfDay;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(pack()) * 31 + Long.hashCode(until);
+    }
+}
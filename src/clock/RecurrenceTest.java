@@ -0,0 +1,107 @@
+package clock;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test for Recurrence class.
+ */
+public class RecurrenceTest {
+    private static final ZoneId LONDON = ZoneId.of("Europe/London");
+
+    private static long millis(String localDateTime) {
+        return LocalDateTime.parse(localDateTime).atZone(LONDON).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Test for next method.
+     * A weekly rule on some days should go through those days, then skip to the same days after the interval.
+     */
+    @Test
+    public void next_WhenWeeklyByDay_ShouldVisitEachDay() {
+        // 2018-05-21 is a Monday
+        long start = millis("2018-05-21T07:30:00");
+        Recurrence recurrence = Recurrence.parse("FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,FR", start, LONDON);
+
+        long second = recurrence.next(start, LONDON);
+        long third = recurrence.next(second, LONDON);
+
+        assertEquals(millis("2018-05-25T07:30:00"), second);
+        assertEquals(millis("2018-06-04T07:30:00"), third);
+    }
+
+    /**
+     * Test for parse method.
+     * COUNT should end the rule after that many occurrences, counting the start.
+     */
+    @Test
+    public void parse_WhenCountGiven_ShouldEndAfterLastOccurrence() {
+        long start = millis("2018-05-20T07:30:00");
+        Recurrence recurrence = Recurrence.parse("FREQ=DAILY;COUNT=3", start, LONDON);
+
+        long third = recurrence.next(recurrence.next(start, LONDON), LONDON);
+
+        assertEquals(millis("2018-05-22T07:30:00"), third);
+        assertEquals(third, recurrence.getUntil());
+        assertEquals(AlarmStore.NONE, recurrence.next(third, LONDON));
+        assertEquals(recurrence, Recurrence.unpack(recurrence.pack(), recurrence.getUntil()));
+    }
+
+    /**
+     * Test for next method.
+     * A daily alarm should keep its local time across a DST change, and come back to it after a gap.
+     */
+    @Test
+    public void next_WhenDstChanges_ShouldKeepLocalTime() {
+        // clocks went forward at 01:00 on 2018-03-25, so 01:30 did not exist that day
+        long start = millis("2018-03-24T01:30:00");
+        Recurrence recurrence = Recurrence.parse("FREQ=DAILY", start, LONDON);
+
+        long inGap = recurrence.next(start, LONDON);
+        long after = recurrence.next(inGap, LONDON);
+
+        assertEquals(millis("2018-03-25T02:30:00"), inGap);
+        assertEquals(millis("2018-03-26T01:30:00"), after);
+
+        long morning = millis("2018-03-24T07:30:00");
+        assertEquals(23 * 60 * 60 * 1000, Recurrence.DAILY.next(morning, LONDON) - morning);
+    }
+
+    /**
+     * Test for parse method.
+     * Frequencies that are not supported should give no rule, so the event is read as a single alarm.
+     */
+    @Test
+    public void parse_WhenFrequencyNotSupported_ShouldReturnNull() {
+        assertNull(Recurrence.parse("FREQ=MONTHLY;BYMONTHDAY=1", 0, LONDON));
+    }
+
+    /**
+     * Test for nextAfter method.
+     * With a start ten years back, skipping whole periods should give the same occurrence as stepping
+     * through every one, across all the DST changes in between.
+     */
+    @Test
+    public void nextAfter_WhenStartTenYearsBack_ShouldMatchSteppingThroughEachOccurrence() {
+        long start = millis("2016-03-26T07:30:00");
+        long after = millis("2026-10-18T09:00:00");
+
+        for (String rule : new String[]{"FREQ=DAILY", "FREQ=DAILY;INTERVAL=3", "FREQ=WEEKLY;INTERVAL=2",
+                "FREQ=DAILY;UNTIL=20260101T000000", "FREQ=WEEKLY;BYDAY=MO,TH"}) {
+            Recurrence recurrence = Recurrence.parse(rule, start, LONDON);
+            long stepped = start;
+            while (stepped <= after && stepped != AlarmStore.NONE) {
+                stepped = recurrence.next(stepped, LONDON);
+            }
+
+            assertEquals(rule, stepped, recurrence.nextAfter(start, after, LONDON));
+        }
+
+        assertEquals(millis("2026-10-19T07:30:00"), Recurrence.parse("FREQ=DAILY", start, LONDON).nextAfter(start, after, LONDON));
+    }
+}
@@ -0,0 +1,37 @@
+package clock;
+
+/**
+ * A virtual clock that starts at a given date and runs a fixed number of times faster than real time.
+ */
+class ScaledTimeSource implements TimeSource {
+    private final long origin;
+    private final double speed;
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * @param origin Date in milliseconds the clock starts at.
+     * @param speed How many virtual milliseconds pass in one real millisecond.
+     */
+    ScaledTimeSource(long origin, double speed) {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("Speed must be positive: " + speed);
+        }
+
+        this.origin = origin;
+        this.speed = speed;
+    }
+
+    @Override
+    public long millis() {
+        return origin + (long) ((System.nanoTime() - startNanos) * speed / 1_000_000);
+    }
+
+    @Override
+    public long nanosUntil(long dateInMilliseconds) {
+        return (long) ((dateInMilliseconds - millis()) * 1_000_000 / speed);
+    }
+
+    double getSpeed() {
+        return speed;
+    }
+}
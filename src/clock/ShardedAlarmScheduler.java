@@ -0,0 +1,328 @@
+package clock;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fires the alarms of many {@link AlarmEngine}s with a fixed number of threads, one per shard.
+ * Engines are partitioned across the shards by name. Each shard keeps its engines in a heap ordered by
+ * their next alarm, so it sleeps until exactly the earliest one, like AlarmScheduler does for a single engine.
+ * An engine is taken out of the heap while it is fired and put back with its new next alarm, so no
+ * two threads ever fire the same engine.
+ * When a shard has more engines due than it can fire, it wakes an idle shard, which steals due engines
+ * from the busy one and fires them itself. Stolen engines go back to the shard they belong to.
+ */
+final class ShardedAlarmScheduler {
+    private final Shard[] shards;
+    private final TimeSource timeSource;
+    private final AtomicLong fired = new AtomicLong();
+    private final AtomicLong stolen = new AtomicLong();
+
+    /**
+     * Creates a scheduler with one shard per processor.
+     */
+    ShardedAlarmScheduler() {
+        this(Runtime.getRuntime().availableProcessors(), TimeSource.SYSTEM);
+    }
+
+    /**
+     * @param shardCount Number of shards, each with its own thread.
+     * @param timeSource Time source the alarms are fired by.
+     */
+    ShardedAlarmScheduler(int shardCount, TimeSource timeSource) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("At least one shard is needed");
+        }
+
+        this.timeSource = timeSource;
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+    }
+
+    /**
+     * Creates an engine for a tenant on the shard its name belongs to.
+     *
+     * @param name Name of the tenant.
+     * @param listener Listener notified of the fired alarms. It is called on a shard thread, so it must not block.
+     * @return The engine.
+     */
+    AlarmEngine createEngine(String name, AlarmListener listener) {
+        Shard shard = shards[Math.floorMod(name.hashCode(), shards.length)];
+        AlarmEngine engine = new AlarmEngine(name, listener, shard);
+        engine.setTimeSource(timeSource);
+        shard.register(engine);
+
+        return engine;
+    }
+
+    /**
+     * Starts the shard threads.
+     */
+    void start() {
+        for (Shard shard : shards) {
+            shard.start();
+        }
+    }
+
+    /**
+     * Stops the shard threads and waits for them to finish the engines they are firing.
+     *
+     * @throws InterruptedException Thrown when interrupted while waiting.
+     */
+    void stop() throws InterruptedException {
+        for (Shard shard : shards) {
+            shard.stop();
+        }
+        for (Shard shard : shards) {
+            shard.thread.join();
+        }
+    }
+
+    int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Returns the number of alarms fired by all shards.
+     *
+     * @return Fired alarms.
+     */
+    long getFiredCount() {
+        return fired.get();
+    }
+
+    /**
+     * Returns how many times a shard fired an engine of another shard.
+     *
+     * @return Stolen engines.
+     */
+    long getStolenCount() {
+        return stolen.get();
+    }
+
+    /**
+     * Wakes one idle shard other than the given one, so that it can steal from it.
+     */
+    private void wakeIdleShard(Shard busy) {
+        for (int i = 1; i < shards.length; i++) {
+            Shard shard = shards[(busy.index + i) % shards.length];
+            if (shard.idle) {
+                shard.wake();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Takes a due engine from another shard.
+     *
+     * @param thief Shard looking for work.
+     * @param currentTime Current date in milliseconds.
+     * @return A due engine, or null when no other shard has one.
+     */
+    private AlarmEngine steal(Shard thief, long currentTime) {
+        for (int i = 1; i < shards.length; i++) {
+            Shard victim = shards[(thief.index + i) % shards.length];
+            // the head is read without the lock first, and tryLock never waits for a busy shard
+            if (victim.head <= currentTime && victim.lock.tryLock()) {
+                try {
+                    AlarmEngine engine = victim.takeDue(currentTime);
+                    if (engine != null) {
+                        stolen.incrementAndGet();
+                        return engine;
+                    }
+                } finally {
+                    victim.lock.unlock();
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * A thread and the engines it owns, in a heap ordered by their next alarm.
+     */
+    final class Shard implements Runnable {
+        final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private final LongHeapPriorityQueue<AlarmEngine> engines =
+                new LongHeapPriorityQueue<>(16, (engine, slot) -> engine.slot = slot);
+        private final int index;
+        private final Thread thread;
+        private boolean running;
+
+        // read by other shards without the lock
+        volatile long head = AlarmStore.NONE;
+        volatile boolean idle;
+
+        Shard(int index) {
+            this.index = index;
+            thread = new Thread(this, "Alarm shard " + index);
+            thread.setDaemon(true);
+        }
+
+        void start() {
+            lock.lock();
+            try {
+                running = true;
+            } finally {
+                lock.unlock();
+            }
+            thread.start();
+        }
+
+        void stop() {
+            lock.lock();
+            try {
+                running = false;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void wake() {
+            lock.lock();
+            try {
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void register(AlarmEngine engine) {
+            lock.lock();
+            try {
+                engines.add(engine, engine.headMillis());
+                published();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Moves an engine in the heap after its next alarm changed. An engine being fired is left alone,
+         * since it reads its next alarm under this lock when it is put back.
+         */
+        void headChanged(AlarmEngine engine) {
+            lock.lock();
+            try {
+                if (engine.slot >= 0) {
+                    long previous = head;
+                    engines.changePriority(engine.slot, engine.headMillis());
+                    published();
+                    if (head < previous) {
+                        changed.signalAll();
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Takes the earliest engine off the heap if it is due. Must be called under the lock.
+         */
+        AlarmEngine takeDue(long currentTime) {
+            if (engines.isEmpty() || engines.priorityAt(0) > currentTime) {
+                return null;
+            }
+
+            AlarmEngine engine = engines.itemAt(0);
+            engines.removeAt(0);
+            published();
+
+            return engine;
+        }
+
+        private void published() {
+            head = engines.isEmpty() ? AlarmStore.NONE : engines.priorityAt(0);
+        }
+
+        /**
+         * Puts a fired engine back with its next alarm.
+         */
+        private void putBack(AlarmEngine engine) {
+            lock.lock();
+            try {
+                long next = engine.headMillis();
+                engines.add(engine, next);
+                published();
+                if (head == next && next != AlarmStore.NONE) {
+                    changed.signalAll(); // the owner may be asleep until a later engine
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void run() {
+            AlarmEngine engine;
+            while ((engine = next()) != null) {
+                fired.addAndGet(engine.fireDue(timeSource.millis()));
+                engine.shard().putBack(engine);
+            }
+        }
+
+        /**
+         * Waits for an engine of this shard to be due, or for a chance to steal one.
+         *
+         * @return A due engine, or null when the shard is stopped.
+         */
+        private AlarmEngine next() {
+            while (true) {
+                long now = timeSource.millis();
+                AlarmEngine engine;
+                lock.lock();
+                try {
+                    if (!running) {
+                        return null;
+                    }
+                    engine = takeDue(now);
+                } finally {
+                    lock.unlock();
+                }
+
+                if (engine != null) {
+                    // woken without holding this lock, so two shards waking each other cannot deadlock
+                    if (head <= now) {
+                        wakeIdleShard(this); // more engines due than this thread can fire at once
+                    }
+                    return engine;
+                }
+
+                engine = steal(this, now);
+                if (engine != null) {
+                    return engine;
+                }
+
+                lock.lock();
+                try {
+                    if (!running) {
+                        return null;
+                    }
+                    if (head <= timeSource.millis()) {
+                        continue;
+                    }
+
+                    idle = true;
+                    if (head == AlarmStore.NONE) {
+                        changed.await();
+                    } else {
+                        changed.awaitNanos(timeSource.nanosUntil(head));
+                    }
+                } catch (InterruptedException e) {
+                    return null;
+                } finally {
+                    idle = false;
+                    lock.unlock();
+                }
+            }
+        }
+    }
+}
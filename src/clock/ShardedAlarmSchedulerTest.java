@@ -0,0 +1,120 @@
+package clock;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for ShardedAlarmScheduler class.
+ */
+public class ShardedAlarmSchedulerTest {
+    /**
+     * Test for createEngine method.
+     * Every alarm of every engine should fire once, whichever shard fires it.
+     */
+    @Test
+    public void createEngine_WhenManyEnginesDue_ShouldFireEveryAlarm() throws InterruptedException {
+        ShardedAlarmScheduler scheduler = new ShardedAlarmScheduler(3, TimeSource.SYSTEM);
+        int engines = 200;
+        CountDownLatch done = new CountDownLatch(engines * 2);
+        scheduler.start();
+
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < engines; i++) {
+            AlarmEngine engine = scheduler.createEngine("tenant-" + i, events -> {
+                for (AlarmEvent ignored : events) {
+                    done.countDown();
+                }
+            });
+            engine.addAlarms(new long[]{now - 1, now + 50});
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        scheduler.stop();
+        assertEquals(engines * 2, scheduler.getFiredCount());
+    }
+
+    /**
+     * Test for cancel method.
+     * A cancelled alarm should not fire, and a rescheduled one should fire at its new date.
+     */
+    @Test
+    public void cancel_WhenAlarmCancelled_ShouldNotFireIt() throws InterruptedException {
+        ShardedAlarmScheduler scheduler = new ShardedAlarmScheduler(1, TimeSource.SYSTEM);
+        CountDownLatch done = new CountDownLatch(1);
+        long[] firedDate = new long[1];
+        AlarmEngine engine = scheduler.createEngine("tenant", events -> {
+            firedDate[0] = events.get(0).getDateInMilliseconds();
+            done.countDown();
+        });
+        scheduler.start();
+
+        long now = System.currentTimeMillis();
+        long cancelled = engine.addAlarm(now + 30);
+        long moved = engine.addAlarm(now + 60 * 60 * 1000);
+        engine.cancel(cancelled);
+        engine.reschedule(moved, now + 60);
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        scheduler.stop();
+        assertEquals(now + 60, firedDate[0]);
+        assertEquals(0, engine.size());
+    }
+
+    /**
+     * Test for fireDue method.
+     * A recurring alarm of a tenant should go back in its queue at the next occurrence.
+     */
+    @Test
+    public void fireDue_WhenAlarmRecurs_ShouldQueueNextOccurrence() {
+        ShardedAlarmScheduler scheduler = new ShardedAlarmScheduler(1, TimeSource.SYSTEM);
+        AlarmEngine engine = scheduler.createEngine("tenant", events -> { });
+        long id = engine.addAlarm(1526832268000L, Recurrence.DAILY, null);
+
+        assertEquals(1, engine.fireDue(1526832268000L));
+        assertEquals(1526832268000L + 24 * 60 * 60 * 1000, engine.dateOf(id));
+    }
+
+    /**
+     * Test for fireDue method.
+     * A listener that throws should be counted in the metrics, and its engine should keep firing.
+     */
+    @Test
+    public void fireDue_WhenListenerFails_ShouldCountFailure() {
+        ClockMetrics metrics = ClockMetrics.register();
+        metrics.reset();
+        ShardedAlarmScheduler scheduler = new ShardedAlarmScheduler(1, TimeSource.SYSTEM);
+        AlarmEngine engine = scheduler.createEngine("tenant", events -> {
+            throw new IllegalStateException("failed");
+        });
+        engine.addAlarms(new long[]{1000, 2000});
+
+        assertEquals(1, engine.fireDue(1000));
+        assertEquals(1, engine.fireDue(2000));
+        assertEquals(2, metrics.getListenerFailures());
+    }
+
+    /**
+     * Test for fireDue method.
+     * Alarms of a tenant should not be counted in the metrics of the alarm clock.
+     */
+    @Test
+    public void fireDue_WhenTenantAlarmsFire_ShouldNotCountThemInClockMetrics() {
+        ClockMetrics metrics = ClockMetrics.register();
+        metrics.reset();
+        ShardedAlarmScheduler scheduler = new ShardedAlarmScheduler(1, TimeSource.SYSTEM);
+        AlarmEngine engine = scheduler.createEngine("tenant", events -> { });
+        engine.addAlarms(new long[]{1000, 2000});
+        engine.addAlarm(3000);
+
+        assertEquals(2, engine.fireDue(2000));
+        assertEquals(0, metrics.getAlarmsAdded());
+        assertEquals(0, metrics.getAlarmsRemoved());
+        assertEquals(0, metrics.getCheckAlarmsCount());
+        assertEquals(0, metrics.getFiringLatenessMaxMillis());
+    }
+}
@@ -0,0 +1,250 @@
+package clock;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Compact binary file of the alarm queue, which loads far faster than an iCalendar file.
+ * The file is a 32-byte header followed by the dates of the alarms sorted from the earliest and then
+ * their IDs, all as little-endian longs. Since version 2 they are followed by the number of recurring alarms
+ * and, for each of them, its position, its packed rule and the end of the rule. The header holds a magic
+ * number, the format version, the number of alarms, a CRC32C of everything after the header, and the date
+ * the file was written. Version 1 files, which have no rules, are still read.
+ * Loading maps the file into memory, checks it and copies both arrays out in bulk. Because the dates are
+ * sorted they already form a valid heap, so the queue is built without moving a single alarm.
+ *
+ * Usage: java -cp Clock.jar clock.SnapshotFile import|export source target
+ * Converts an iCalendar file to a snapshot file (import) or back (export).
+ */
+final class SnapshotFile {
+    static final String EXTENSION = "alarms";
+    static final int VERSION = 2;
+
+    private static final int MAGIC = 0x534D4C41; // "ALMS" in little-endian order
+    private static final int HEADER_SIZE = 32;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private SnapshotFile() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 || !(args[0].equals("import") || args[0].equals("export"))) {
+            System.err.println("Usage: java -cp Clock.jar clock.SnapshotFile import|export source target");
+            System.exit(2);
+        }
+
+        Path source = Paths.get(args[1]);
+        Path target = Paths.get(args[2]);
+        if (args[0].equals("import")) {
+            Alarm[] alarms = ICalendarReader.readFile(source, Long.MIN_VALUE);
+            write(target, QueueSnapshot.of(-1, alarms), TimeSource.SYSTEM.millis());
+            System.err.println("Imported " + alarms.length + " alarms into " + target);
+        } else {
+            QueueSnapshot snapshot = read(source);
+            ICalendarWriter.writeFile(target, snapshot);
+            System.err.println("Exported " + snapshot.size() + " alarms into " + target);
+        }
+    }
+
+    /**
+     * Checks whether a file starts like a snapshot file, without reading the rest.
+     *
+     * @param file File to check.
+     * @return Whether the file has the magic number of a snapshot file.
+     * @throws IOException Thrown when the file cannot be read.
+     */
+    static boolean isSnapshot(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(magic, 0);
+
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the queue to a file.
+     * The file is written under a temporary name and then renamed over the target, so a crash while
+     * writing leaves the previous file intact.
+     *
+     * @param file File to write.
+     * @param snapshot Snapshot of the queue.
+     * @param dateInMilliseconds Date the snapshot was taken, stored in the header.
+     * @throws IOException Thrown when the file cannot be written.
+     */
+    static void write(Path file, QueueSnapshot snapshot, long dateInMilliseconds) throws IOException {
+        Path target = file.toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                CRC32C checksum = new CRC32C();
+                int size = snapshot.size();
+
+                channel.position(HEADER_SIZE);
+                for (int i = 0; i < size; i++) {
+                    putLong(channel, buffer, checksum, snapshot.get(i));
+                }
+                for (int i = 0; i < size; i++) {
+                    putLong(channel, buffer, checksum, snapshot.id(i));
+                }
+                writeRecurrences(channel, buffer, checksum, snapshot);
+                flush(channel, buffer, checksum);
+
+                buffer.putInt(MAGIC)
+                        .putInt(VERSION)
+                        .putLong(size)
+                        .putInt((int) checksum.getValue())
+                        .putInt(0)
+                        .putLong(dateInMilliseconds)
+                        .flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, buffer.position());
+                }
+                channel.force(true);
+            }
+
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads a snapshot file by mapping it into memory.
+     *
+     * @param file File to read.
+     * @return Snapshot of the queue stored in the file.
+     * @throws IOException Thrown when the file cannot be read, is not a snapshot file, or is corrupt.
+     */
+    static QueueSnapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE || fileSize > Integer.MAX_VALUE) {
+                throw new IOException("Not a snapshot file: " + file);
+            }
+
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (mapped.getInt(0) != MAGIC) {
+                throw new IOException("Not a snapshot file: " + file);
+            }
+            int version = mapped.getInt(4);
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + file);
+            }
+            long count = mapped.getLong(8);
+            long recurringOffset = HEADER_SIZE + count * 16;
+            long recurring = 0;
+            if (version >= 2 && count >= 0 && recurringOffset + 8 <= fileSize) {
+                recurring = mapped.getLong((int) recurringOffset);
+            }
+            long expectedSize = (version == 1) ? recurringOffset : recurringOffset + 8 + recurring * 24;
+            if (count < 0 || recurring < 0 || recurring > count || expectedSize != fileSize) {
+                throw new IOException("Truncated snapshot file: " + file);
+            }
+
+            ByteBuffer payload = mapped.position(HEADER_SIZE).slice().order(ByteOrder.LITTLE_ENDIAN);
+            CRC32C checksum = new CRC32C();
+            checksum.update(payload.duplicate());
+            if ((int) checksum.getValue() != mapped.getInt(16)) {
+                throw new IOException("Corrupt snapshot file: " + file);
+            }
+
+            long[] dates = new long[(int) count];
+            long[] ids = new long[(int) count];
+            LongBuffer longs = payload.asLongBuffer().get(dates).get(ids);
+
+            for (int i = 1; i < dates.length; i++) {
+                if (dates[i] < dates[i - 1]) {
+                    throw new IOException("Unsorted snapshot file: " + file);
+                }
+            }
+
+            return new QueueSnapshot(-1, dates, ids, readRecurrences(longs, (int) recurring, dates.length, file));
+        }
+    }
+
+    private static void writeRecurrences(FileChannel channel, ByteBuffer buffer, CRC32C checksum,
+                                         QueueSnapshot snapshot) throws IOException {
+        int size = snapshot.size();
+        long recurring = 0;
+        if (snapshot.hasRecurrences()) {
+            for (int i = 0; i < size; i++) {
+                if (snapshot.recurrence(i) != null) {
+                    recurring++;
+                }
+            }
+        }
+
+        putLong(channel, buffer, checksum, recurring);
+        for (int i = 0; i < size && recurring > 0; i++) {
+            Recurrence recurrence = snapshot.recurrence(i);
+            if (recurrence != null) {
+                putLong(channel, buffer, checksum, i);
+                putLong(channel, buffer, checksum, recurrence.pack());
+                putLong(channel, buffer, checksum, recurrence.getUntil());
+            }
+        }
+    }
+
+    private static Recurrence[] readRecurrences(LongBuffer longs, int recurring, int size, Path file)
+            throws IOException {
+        if (recurring == 0) {
+            return null;
+        }
+
+        Recurrence[] recurrences = new Recurrence[size];
+        longs.get(); // the number of recurring alarms, already read
+        for (int i = 0; i < recurring; i++) {
+            long position = longs.get();
+            long packed = longs.get();
+            long until = longs.get();
+            if (position < 0 || position >= size) {
+                throw new IOException("Corrupt snapshot file: " + file);
+            }
+
+            try {
+                recurrences[(int) position] = Recurrence.unpack(packed, until);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Corrupt snapshot file: " + file, e);
+            }
+        }
+
+        return recurrences;
+    }
+
+    private static void putLong(FileChannel channel, ByteBuffer buffer, CRC32C checksum, long value)
+            throws IOException {
+        if (buffer.remaining() < 8) {
+            flush(channel, buffer, checksum);
+        }
+        buffer.putLong(value);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer, CRC32C checksum) throws IOException {
+        buffer.flip();
+        checksum.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,87 @@
+package clock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for SnapshotFile class.
+ */
+public class SnapshotFileTest {
+    private Path directory;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("snapshot");
+        file = directory.resolve("alarms." + SnapshotFile.EXTENSION);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(directory.resolve("alarms.ics"));
+        Files.deleteIfExists(file);
+        Files.delete(directory);
+    }
+
+    /**
+     * Test for read method.
+     * A written snapshot should be read back with the same dates, IDs and rules, and through iCalendar as well.
+     */
+    @Test
+    public void read_WhenWritten_ShouldReturnSameAlarms() throws IOException {
+        AlarmStore store = new StripedAlarmStore();
+        for (long date : new long[]{1526839468000L, 1526832268000L, 1526832328000L}) {
+            store.add(new Alarm(date));
+        }
+        Alarm recurring = new Alarm(1526832388000L);
+        recurring.setRecurrence(Recurrence.ON_WEEKDAYS.startingAt(1526832388000L, ZoneId.systemDefault())
+                .withUntil(1527832388000L));
+        store.add(recurring);
+        QueueSnapshot written = store.snapshot();
+
+        SnapshotFile.write(file, written, 0);
+        QueueSnapshot read = SnapshotFile.read(file);
+
+        assertTrue(SnapshotFile.isSnapshot(file));
+        assertArrayEquals(written.toArray(), read.toArray());
+        for (int i = 0; i < written.size(); i++) {
+            assertEquals(written.id(i), read.id(i));
+            assertEquals(written.recurrence(i), read.recurrence(i));
+        }
+
+        Path iCalendar = directory.resolve("alarms.ics");
+        ICalendarWriter.writeFile(iCalendar, read);
+        Alarm[] exported = ICalendarReader.readFile(iCalendar, 0);
+
+        assertFalse(SnapshotFile.isSnapshot(iCalendar));
+        assertArrayEquals(written.toArray(), Arrays.stream(exported).mapToLong(Alarm::getDateInMilliseconds).toArray());
+        assertEquals(written.id(0), exported[0].getId());
+        assertEquals(written.recurrence(2), exported[2].getRecurrence());
+    }
+
+    /**
+     * Test for read method.
+     * Should throw an exception when the content does not match the checksum.
+     */
+    @Test(expected = IOException.class)
+    public void read_WhenCorrupt_ShouldThrowException() throws IOException {
+        SnapshotFile.write(file, new QueueSnapshot(0, new long[]{10, 20}, new long[]{1, 2}), 0);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{7}), Files.size(file) - 1);
+        }
+
+        SnapshotFile.read(file);
+    }
+}
@@ -0,0 +1,320 @@
+package clock;
+
+import queuemanager.QueueUnderflowException;
+
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An alarm store split into stripes, each a heap with its own lock.
+ * Producers on different threads add to different stripes and rarely contend. The date of each
+ * stripe's head is published in a volatile field, so finding the earliest alarm takes no locks
+ * and polling locks only the stripe that holds it. Each stripe indexes its alarms by ID, so cancelling or
+ * rescheduling an alarm looks it up in every stripe in turn, which costs O(stripes) rather than O(alarms).
+ */
+class StripedAlarmStore implements AlarmStore {
+    private final Stripe[] stripes;
+    private final AtomicLong version = new AtomicLong();
+    private volatile QueueSnapshot snapshot = QueueSnapshot.EMPTY;
+
+    StripedAlarmStore() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    StripedAlarmStore(int stripeCount) {
+        stripes = new Stripe[Math.max(1, stripeCount)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @Override
+    public void add(Alarm alarm) {
+        Stripe stripe = localStripe();
+        stripe.lock.lock();
+        try {
+            stripe.heap.add(alarm, alarm.getDateInMilliseconds());
+            stripe.index.put(alarm);
+            published(stripe);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public void addAll(Alarm[] alarms) {
+        long[] dates = new long[alarms.length];
+        for (int i = 0; i < alarms.length; i++) {
+            dates[i] = alarms[i].getDateInMilliseconds();
+        }
+
+        Stripe stripe = localStripe();
+        stripe.lock.lock();
+        try {
+            stripe.heap.addAll(alarms, dates, alarms.length);
+            stripe.index.ensureCapacity(alarms.length);
+            for (Alarm alarm : alarms) {
+                stripe.index.put(alarm);
+            }
+            published(stripe);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public Alarm pollDue(long currentTime) {
+        while (true) {
+            Stripe earliest = earliestStripe();
+            if (earliest == null || earliest.head > currentTime) {
+                return null;
+            }
+
+            earliest.lock.lock();
+            try {
+                // the head may have been removed since it was read, in which case look again
+                if (!earliest.heap.isEmpty() && earliest.heap.headPriority() <= currentTime) {
+                    Alarm alarm = earliest.heap.head();
+                    earliest.heap.remove();
+                    earliest.index.remove(alarm.getId());
+                    published(earliest);
+                    return alarm;
+                }
+            } catch (QueueUnderflowException e) {
+                throw new IllegalStateException(e); // checked for emptiness under the lock
+            } finally {
+                earliest.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public long headMillis() {
+        Stripe earliest = earliestStripe();
+
+        return (earliest == null) ? NONE : earliest.head;
+    }
+
+    @Override
+    public long dateOf(long id) {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                Alarm alarm = stripe.index.get(id);
+                if (alarm != null) {
+                    return alarm.getDateInMilliseconds();
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        return NONE;
+    }
+
+    @Override
+    public boolean cancel(long id) {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                Alarm alarm = stripe.index.remove(id);
+                if (alarm != null) {
+                    stripe.heap.removeAt(alarm.slot);
+                    published(stripe);
+                    return true;
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public Alarm reschedule(long id, long dateInMilliseconds, ZoneId zone) {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                Alarm alarm = stripe.index.get(id);
+                if (alarm != null) {
+                    alarm.setDateInMilliseconds(dateInMilliseconds);
+                    Recurrence recurrence = alarm.getRecurrence();
+                    if (recurrence != null) {
+                        alarm.setRecurrence(recurrence.startingAt(dateInMilliseconds, zone));
+                    }
+                    stripe.heap.changePriority(alarm.slot, dateInMilliseconds);
+                    published(stripe);
+                    return alarm;
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size;
+        }
+
+        return size;
+    }
+
+    @Override
+    public long version() {
+        return version.get();
+    }
+
+    @Override
+    public QueueSnapshot snapshot() {
+        QueueSnapshot current = snapshot;
+        if (current.version() == version.get()) {
+            return current;
+        }
+
+        lockAll();
+        try {
+            // nothing can change while all stripes are locked, so the version matches the dates
+            current = QueueSnapshot.of(version.get(), collect());
+            snapshot = current;
+            return current;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Scans one stripe at a time, so adds to the other stripes carry on meanwhile. Alarms never move
+     * between stripes, so none is seen twice, but changes made during the scan may or may not be included.
+     */
+    @Override
+    public QueueSnapshot range(long from, long to, int limit) {
+        AlarmRange range = new AlarmRange(from, to, limit);
+        long rangeVersion = version.get();
+        for (Stripe stripe : stripes) {
+            if (stripe.size == 0) {
+                continue;
+            }
+
+            stripe.lock.lock();
+            try {
+                for (int slot = 0; slot < stripe.heap.size(); slot++) {
+                    long date = stripe.heap.priorityAt(slot);
+                    if (range.accepts(date)) {
+                        range.offer(stripe.heap.itemAt(slot), date);
+                    }
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        return range.toSnapshot(rangeVersion);
+    }
+
+    /**
+     * Publishes the head of a stripe after it was changed and moves to the next version. Must be called under its lock.
+     *
+     * @param stripe Changed stripe.
+     */
+    private void published(Stripe stripe) {
+        stripe.published();
+        version.incrementAndGet();
+    }
+
+    /**
+     * Returns the stripe of the current thread, so that one thread keeps adding to the same stripe.
+     *
+     * @return Stripe of the current thread.
+     */
+    private Stripe localStripe() {
+        int hash = System.identityHashCode(Thread.currentThread());
+
+        return stripes[Math.floorMod(hash ^ (hash >>> 16), stripes.length)];
+    }
+
+    /**
+     * Returns the stripe with the earliest head, without locking.
+     *
+     * @return The stripe with the earliest head, or null when all stripes are empty.
+     */
+    private Stripe earliestStripe() {
+        Stripe earliest = null;
+        for (Stripe stripe : stripes) {
+            if (stripe.head != NONE && (earliest == null || stripe.head < earliest.head)) {
+                earliest = stripe;
+            }
+        }
+
+        return earliest;
+    }
+
+    /**
+     * Returns the alarms of all stripes, in no particular order. All stripes must be locked.
+     *
+     * @return Queued alarms.
+     */
+    private Alarm[] collect() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.heap.size();
+        }
+
+        Alarm[] queued = new Alarm[size];
+        int i = 0;
+        for (Stripe stripe : stripes) {
+            for (int slot = 0; slot < stripe.heap.size(); slot++) {
+                queued[i++] = stripe.heap.itemAt(slot);
+            }
+        }
+
+        return queued;
+    }
+
+    // locks are always taken in the same order, so two threads locking all stripes cannot deadlock
+    private void lockAll() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].lock.unlock();
+        }
+    }
+
+    /**
+     * A heap and ID index with their own lock and the published date of the head.
+     */
+    private static class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final LongHeapPriorityQueue<Alarm> heap = new LongHeapPriorityQueue<>(16, (alarm, slot) -> alarm.slot = slot);
+        final AlarmIndex index = new AlarmIndex();
+        volatile long head = NONE;
+        volatile int size;
+
+        /**
+         * Publishes the head and size after the heap was changed. Must be called under the lock.
+         */
+        void published() {
+            try {
+                head = heap.isEmpty() ? NONE : heap.headPriority();
+            } catch (QueueUnderflowException e) {
+                head = NONE;
+            }
+            size = heap.size();
+        }
+    }
+}
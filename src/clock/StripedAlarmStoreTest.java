@@ -0,0 +1,139 @@
+package clock;
+
+import org.junit.Test;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for StripedAlarmStore class.
+ */
+public class StripedAlarmStoreTest {
+
+    /**
+     * Test for pollDue method.
+     * Alarms added from several threads should all be polled, in date order.
+     */
+    @Test
+    public void pollDue_WhenAddedFromManyThreads_ShouldReturnAllInOrder() throws InterruptedException {
+        AlarmStore store = new StripedAlarmStore(4);
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int offset = t;
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    store.add(new Alarm(i * 8L + offset));
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertEquals(8000, store.size());
+        for (long expected = 0; expected < 8000; expected++) {
+            assertEquals(expected, store.pollDue(Long.MAX_VALUE - 1).getDateInMilliseconds());
+        }
+        assertTrue(store.isEmpty());
+        assertEquals(AlarmStore.NONE, store.headMillis());
+    }
+
+    /**
+     * Test for pollDue method.
+     * Alarms in the future should not be returned.
+     */
+    @Test
+    public void pollDue_WhenNotDue_ShouldReturnNull() {
+        AlarmStore store = new StripedAlarmStore(2);
+        store.add(new Alarm(200));
+
+        assertNull(store.pollDue(199));
+        assertEquals(200, store.headMillis());
+    }
+
+    /**
+     * Test for cancel method.
+     * Should remove the alarm with the given ID, and nothing once it is gone.
+     */
+    @Test
+    public void cancel_WhenIdGiven_ShouldRemoveThatAlarm() {
+        AlarmStore store = new StripedAlarmStore(2);
+        Alarm alarm = new Alarm(20);
+        store.addAll(new Alarm[]{new Alarm(30), new Alarm(10), alarm});
+
+        assertTrue(store.cancel(alarm.getId()));
+        assertFalse(store.cancel(alarm.getId()));
+        assertArrayEquals(new long[]{10, 30}, store.snapshot().toArray());
+    }
+
+    /**
+     * Test for reschedule method.
+     * Should move the alarm in place, so that it is polled at its new date with the same ID.
+     */
+    @Test
+    public void reschedule_WhenMovedBeforeHead_ShouldBecomeHead() {
+        AlarmStore store = new StripedAlarmStore(2);
+        Alarm alarm = new Alarm(30);
+        store.addAll(new Alarm[]{new Alarm(10), new Alarm(20), alarm});
+
+        assertSame(alarm, store.reschedule(alarm.getId(), 5, ZoneId.of("UTC")));
+
+        assertEquals(5, store.headMillis());
+        assertEquals(alarm.getId(), store.snapshot().id(0));
+        assertSame(alarm, store.pollDue(5));
+        assertEquals(AlarmStore.NONE, store.dateOf(alarm.getId()));
+    }
+
+    /**
+     * Test for snapshot method.
+     * Should share the snapshot until the store changes, and keep old snapshots unchanged.
+     */
+    @Test
+    public void snapshot_WhenStoreChanges_ShouldTakeNewVersion() {
+        AlarmStore store = new StripedAlarmStore(2);
+        store.addAll(new Alarm[]{new Alarm(20), new Alarm(10)});
+
+        QueueSnapshot first = store.snapshot();
+        assertSame(first, store.snapshot());
+
+        store.add(new Alarm(5));
+        QueueSnapshot second = store.snapshot();
+
+        assertTrue(second.version() > first.version());
+        assertArrayEquals(new long[]{10, 20}, first.toArray());
+        assertEquals(5, second.headMillis());
+        assertEquals(3, second.size());
+    }
+
+    /**
+     * Test for range method.
+     * Should return the earliest alarms within the range, sorted, up to the limit.
+     */
+    @Test
+    public void range_WhenMoreAlarmsThanLimit_ShouldReturnEarliestInRange() throws InterruptedException {
+        AlarmStore store = new StripedAlarmStore(4);
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t;
+            Thread producer = new Thread(() -> {
+                for (int i = 999; i >= 0; i--) {
+                    store.add(new Alarm(i * 4L + offset));
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertArrayEquals(new long[]{100, 101, 102, 103, 104}, store.range(100, 3000, 5).toArray());
+        assertEquals(4, store.range(3996, Long.MAX_VALUE, 10).size());
+        assertEquals(0, store.range(100, 3000, 0).size());
+    }
+}
@@ -0,0 +1,141 @@
+package clock;
+
+import queuemanager.QueueUnderflowException;
+
+import java.time.ZoneId;
+
+/**
+ * An alarm store with a single heap guarded by one lock.
+ * Simple and compact, but every thread contends for the same lock.
+ */
+class SynchronizedAlarmStore implements AlarmStore {
+    private final LongHeapPriorityQueue<Alarm> heap = new LongHeapPriorityQueue<>(16, (alarm, slot) -> alarm.slot = slot);
+    private final AlarmIndex index = new AlarmIndex();
+    private long version;
+    private QueueSnapshot snapshot = QueueSnapshot.EMPTY;
+
+    @Override
+    public synchronized void add(Alarm alarm) {
+        heap.add(alarm, alarm.getDateInMilliseconds());
+        index.put(alarm);
+        version++;
+    }
+
+    @Override
+    public synchronized void addAll(Alarm[] alarms) {
+        long[] dates = new long[alarms.length];
+        for (int i = 0; i < alarms.length; i++) {
+            dates[i] = alarms[i].getDateInMilliseconds();
+        }
+
+        heap.addAll(alarms, dates, alarms.length);
+        index.ensureCapacity(alarms.length);
+        for (Alarm alarm : alarms) {
+            index.put(alarm);
+        }
+        version++;
+    }
+
+    @Override
+    public synchronized Alarm pollDue(long currentTime) {
+        try {
+            if (heap.isEmpty() || heap.headPriority() > currentTime) {
+                return null;
+            }
+
+            Alarm alarm = heap.head();
+            heap.remove();
+            index.remove(alarm.getId());
+            version++;
+            return alarm;
+        } catch (QueueUnderflowException e) {
+            throw new IllegalStateException(e); // checked for emptiness above
+        }
+    }
+
+    @Override
+    public synchronized long headMillis() {
+        try {
+            return heap.isEmpty() ? NONE : heap.headPriority();
+        } catch (QueueUnderflowException e) {
+            return NONE;
+        }
+    }
+
+    @Override
+    public synchronized long dateOf(long id) {
+        Alarm alarm = index.get(id);
+
+        return (alarm == null) ? NONE : alarm.getDateInMilliseconds();
+    }
+
+    @Override
+    public synchronized boolean cancel(long id) {
+        Alarm alarm = index.remove(id);
+        if (alarm == null) {
+            return false;
+        }
+
+        heap.removeAt(alarm.slot);
+        version++;
+        return true;
+    }
+
+    @Override
+    public synchronized Alarm reschedule(long id, long dateInMilliseconds, ZoneId zone) {
+        Alarm alarm = index.get(id);
+        if (alarm == null) {
+            return null;
+        }
+
+        alarm.setDateInMilliseconds(dateInMilliseconds);
+        Recurrence recurrence = alarm.getRecurrence();
+        if (recurrence != null) {
+            alarm.setRecurrence(recurrence.startingAt(dateInMilliseconds, zone));
+        }
+        heap.changePriority(alarm.slot, dateInMilliseconds);
+        version++;
+        return alarm;
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return heap.isEmpty();
+    }
+
+    @Override
+    public synchronized int size() {
+        return heap.size();
+    }
+
+    @Override
+    public synchronized long version() {
+        return version;
+    }
+
+    @Override
+    public synchronized QueueSnapshot snapshot() {
+        if (snapshot.version() != version) {
+            Alarm[] queued = new Alarm[heap.size()];
+            for (int slot = 0; slot < queued.length; slot++) {
+                queued[slot] = heap.itemAt(slot);
+            }
+            snapshot = QueueSnapshot.of(version, queued);
+        }
+
+        return snapshot;
+    }
+
+    @Override
+    public synchronized QueueSnapshot range(long from, long to, int limit) {
+        AlarmRange range = new AlarmRange(from, to, limit);
+        for (int slot = 0; slot < heap.size(); slot++) {
+            long date = heap.priorityAt(slot);
+            if (range.accepts(date)) {
+                range.offer(heap.itemAt(slot), date);
+            }
+        }
+
+        return range.toSnapshot(version);
+    }
+}
@@ -0,0 +1,33 @@
+package clock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Source of the current time, in the spirit of java.time.InstantSource.
+ * Everything that needs the current time asks a TimeSource instead of the system clock,
+ * so that tests can fix the time and simulations can run it faster.
+ */
+@FunctionalInterface
+interface TimeSource {
+    /**
+     * The system clock.
+     */
+    TimeSource SYSTEM = System::currentTimeMillis;
+
+    /**
+     * Returns the current time.
+     *
+     * @return Current date in milliseconds.
+     */
+    long millis();
+
+    /**
+     * Returns how long to wait in real time until this source reaches the given date.
+     *
+     * @param dateInMilliseconds A date in milliseconds.
+     * @return Real nanoseconds until the date, zero or negative when it has passed.
+     */
+    default long nanosUntil(long dateInMilliseconds) {
+        return TimeUnit.MILLISECONDS.toNanos(dateInMilliseconds - millis());
+    }
+}
@@ -1,14 +1,16 @@
 package clock;
 
-import queuemanager.QueueUnderflowException;
 import java.awt.*;
 import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.util.Observer;
-import java.util.Observable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
 
-public class View implements Observer {
+public class View {
     
     private ClockPanel panel;
     private JFrame frame;
@@ -19,17 +21,38 @@ public class View implements Observer {
         frame = new JFrame();
         panel = new ClockPanel(model);
         frame.setTitle("Java Clock");
-        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
 
-        // Event listener that prompts the user to save the alarms when he exits the program.
+        // Event listener that prompts the user to save the alarms when he exits the program,
+        // unless they are kept in the journal anyway. The program exits once the save has succeeded;
+        // when it failed or was cancelled the window stays open, so the alarms are not lost.
         frame.addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosing(WindowEvent e) {
-                if (!AlarmClock.isEmpty()) {
-                    AlarmClock.saveICalendar();
+                if (AlarmClock.isJournalOpen()) {
+                    try {
+                        AlarmClock.closeJournal();
+                    } catch (IOException ex) {
+                        JOptionPane.showMessageDialog(null, "Could not write the alarm journal: " + ex.getMessage());
+                    }
+                } else if (!AlarmClock.isEmpty()) {
+                    AlarmFileTask saving = saveAlarmsDialogue();
+                    if (saving != null) {
+                        // the state only changes on this thread, so the task cannot have finished unnoticed
+                        saving.addPropertyChangeListener(change -> {
+                            if (change.getNewValue() == SwingWorker.StateValue.DONE && !saving.isCancelled()) {
+                                try {
+                                    saving.get();
+                                    exit();
+                                } catch (ExecutionException | InterruptedException ex) {
+                                    // the task has already shown why the save failed
+                                }
+                            }
+                        });
+                        return;
+                    }
                 }
-                frame.dispose();
-                System.exit(0);
+                exit();
             }
         });
 
@@ -41,6 +64,12 @@ public class View implements Observer {
 
         frame.pack();
         frame.setVisible(true);
+
+        // each subscriber only runs when its own state changed, and skipped ticks are coalesced on a busy EDT
+        ClockEventBus events = model.events();
+        events.subscribe(ClockEventBus.Topic.SECOND_TICK, SwingUtilities::invokeLater, millis -> panel.repaintHands());
+        events.subscribe(ClockEventBus.Topic.QUEUE_CHANGED, SwingUtilities::invokeLater, version -> queueChanged());
+        queueChanged();
     }
 
     /**
@@ -76,46 +105,82 @@ public class View implements Observer {
 
         editItem = new JMenuItem("Edit");
         editItem.setMnemonic('e');
-        editItem.addActionListener(e -> {
-                try {
-                    editAlarmDialogue();
-                } catch (QueueUnderflowException e1) {
-                    e1.printStackTrace();
-                }
-        });
+        editItem.addActionListener(e ->
+                editAlarmDialogue()
+        );
         alarmMenu.add(editItem);
 
         JMenuItem loadItem = new JMenuItem("Load");
         loadItem.setMnemonic('l');
         loadItem.addActionListener(e ->
-                AlarmClock.loadICalendar()
+                loadAlarmsDialogue()
         );
         alarmMenu.add(loadItem);
 
         saveItem = new JMenuItem("Save");
         saveItem.setMnemonic('s');
         saveItem.addActionListener(e ->
-                AlarmClock.saveICalendar()
+                saveAlarmsDialogue()
         );
         alarmMenu.add(saveItem);
 
         menuBar.add(alarmMenu);
     }
 
+    private void exit() {
+        frame.dispose();
+        System.exit(0);
+    }
+
+    /**
+     * A dialogue box allowing users to save the iCalendar file to the disk, in the background.
+     * Files named with the snapshot extension are saved in the faster binary format instead.
+     *
+     * @return The task saving the file, or null when the user cancelled the dialogue.
+     */
+    private AlarmFileTask saveAlarmsDialogue() {
+        JFileChooser chooser = new JFileChooser();
+        FileNameExtensionFilter filter = new FileNameExtensionFilter("iCalendar files", "ics");
+        chooser.setFileFilter(filter);
+        chooser.addChoosableFileFilter(new FileNameExtensionFilter("Alarm snapshots", SnapshotFile.EXTENSION));
+        chooser.setSelectedFile(new File(AlarmClock.getDatestamp() + ".ics"));
+        int retrieval = chooser.showSaveDialog(frame);
+        if (retrieval == JFileChooser.APPROVE_OPTION) {
+            return AlarmFileTask.save(frame, chooser.getSelectedFile().toPath());
+        }
+
+        return null;
+    }
+
+    /**
+     * A dialogue box allowing users to load the alarms from an iCalendar file or a snapshot file, in the background.
+     * Alarms from the past are not loaded to the priority queue.
+     */
+    void loadAlarmsDialogue() {
+        JFileChooser chooser = new JFileChooser();
+        FileNameExtensionFilter filter = new FileNameExtensionFilter("Alarm files", "ics", SnapshotFile.EXTENSION);
+        chooser.setFileFilter(filter);
+        int retrieval = chooser.showOpenDialog(frame);
+        if (retrieval == JFileChooser.APPROVE_OPTION) {
+            AlarmFileTask.load(frame, chooser.getSelectedFile().toPath());
+        }
+    }
+
     /**
      * A dialogue box allowing users to edit selected alarm from the queue.
      * If user selects a wrong hour or minute value, it will be replaced with a 0.
+     * Alarms are changed by ID, so alarms firing while the dialogue is open do not shift the selection.
      */
-    private void editAlarmDialogue() throws QueueUnderflowException {
+    private void editAlarmDialogue() {
         SpinnerNumberModel modelHours = new SpinnerNumberModel(0, 0, 23, 1);
         SpinnerNumberModel modelMinutes = new SpinnerNumberModel(0, 0, 59, 1);
 
-        Long[] priorityArray = AlarmClock.getPriorityArray();
-        String[] labels = new String[priorityArray.length];
+        QueueSnapshot snapshot = AlarmClock.snapshot();
+        String[] labels = new String[snapshot.size()];
 
         // create and add labels to the labels array
-        for (int i = 0; i < priorityArray.length; i++) {
-            long dateInMilliseconds = priorityArray[i];
+        for (int i = 0; i < snapshot.size(); i++) {
+            long dateInMilliseconds = snapshot.get(i);
             int hour = AlarmClock.millisecondsToHours(dateInMilliseconds);
             int minute = AlarmClock.millisecondsToMinutes(dateInMilliseconds);
 
@@ -130,7 +195,7 @@ public class View implements Observer {
         // action listener to input hours and minutes of selected alarm to JSpinner fields
         alarmList.addActionListener(e -> {
                 int position = alarmList.getSelectedIndex();
-                long dateInMilliseconds = priorityArray[position];
+                long dateInMilliseconds = snapshot.get(position);
                 int hour = AlarmClock.millisecondsToHours(dateInMilliseconds);
                 int minute = AlarmClock.millisecondsToMinutes(dateInMilliseconds);
 
@@ -138,7 +203,7 @@ public class View implements Observer {
                 minutes.setValue(minute);
         });
 
-        if (!AlarmClock.isEmpty()) {
+        if (!snapshot.isEmpty()) {
             alarmList.setSelectedIndex(0); // runs the event listener for the first item
         }
 
@@ -159,21 +224,30 @@ public class View implements Observer {
         int result = JOptionPane.showOptionDialog(null, inputs, "Edit Alarm",
                 JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE, null, options, 0);
 
+        int position = alarmList.getSelectedIndex();
+        if (position < 0) {
+            return;
+        }
+        long id = snapshot.id(position);
+
         if (result == JOptionPane.YES_OPTION) { // deletes the alarm when user clicks on Delete button
-            AlarmClock.remove(alarmList.getSelectedIndex());
+            AlarmClock.cancel(id);
         } else if (result == JOptionPane.NO_OPTION) { // edits the alarm when user clicks on Edit button
-            AlarmClock.remove(alarmList.getSelectedIndex()); // removes the chosen alarm
-
             int hour = (int) hours.getValue();
             int minute = (int) minutes.getValue();
+            long dateInMilliseconds = AlarmClock.getDateInMillisecondsForAlarm(hour, minute);
 
-            AlarmClock.addAlarm(hour, minute); // adds a new edited alarm
+            // moves the chosen alarm, or adds a new one if it fired while the dialogue was open
+            if (!AlarmClock.reschedule(id, dateInMilliseconds)) {
+                AlarmClock.addAlarm(dateInMilliseconds);
+            }
         }
     }
 
     /**
      * A dialogue box allowing users to add an alarm to the queue.
      * If user selects a wrong hour or minute value it will be replaced with 0.
+     * The alarm can repeat every day, every weekday or every week.
      */
     private void addAlarmDialogue() {
         SpinnerNumberModel modelHours = new SpinnerNumberModel(0, 0, 23, 1);
@@ -181,12 +255,22 @@ public class View implements Observer {
 
         JSpinner hours = new JSpinner(modelHours);
         JSpinner minutes = new JSpinner(modelMinutes);
+        JComboBox<String> repeat = new JComboBox<>(new String[]{"Never", "Daily", "Weekdays", "Weekly"});
+        Recurrence[] recurrences = {null, Recurrence.DAILY, Recurrence.ON_WEEKDAYS, Recurrence.WEEKLY};
+        JComboBox<String> action = new JComboBox<>(new String[]{"Show message", "Run command", "Append to file"});
+        JTextField target = new JTextField();
 
         final JComponent[] inputs = new JComponent[] {
                 new JLabel("Hours"),
                 hours,
                 new JLabel("Minutes"),
-                minutes
+                minutes,
+                new JLabel("Repeat"),
+                repeat,
+                new JLabel("Action"),
+                action,
+                new JLabel("Command or file"),
+                target
         };
 
         int result = JOptionPane.showConfirmDialog(null, inputs, "Add Alarm",
@@ -195,7 +279,19 @@ public class View implements Observer {
             int hour = (int) hours.getValue();
             int minute = (int) minutes.getValue();
 
-            AlarmClock.addAlarm(hour, minute);
+            AlarmAction alarmAction = null;
+            try {
+                if (action.getSelectedIndex() == 1) {
+                    alarmAction = AlarmAction.command(target.getText(), AlarmAction.DEFAULT_TIMEOUT);
+                } else if (action.getSelectedIndex() == 2) {
+                    alarmAction = AlarmAction.appendToFile(Paths.get(target.getText().trim()), AlarmAction.DEFAULT_TIMEOUT);
+                }
+            } catch (IllegalArgumentException e) {
+                JOptionPane.showMessageDialog(frame, "Invalid command or file!", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            AlarmClock.addAlarm(hour, minute, recurrences[repeat.getSelectedIndex()], alarmAction);
         }
     }
 
@@ -221,16 +317,15 @@ public class View implements Observer {
         menuBar.add(aboutMenu);
     }
     
-    public void update(Observable o, Object arg) {
-        panel.repaint();
+    /**
+     * Updates the alarm hand and the menus after alarms were added or removed.
+     */
+    private void queueChanged() {
+        panel.repaintHands();
 
         // disables the save and edit menu items when there are no alarms in the queue
-        if (AlarmClock.isEmpty()) {
-            saveItem.setEnabled(false);
-            editItem.setEnabled(false);
-        } else {
-            saveItem.setEnabled(true);
-            editItem.setEnabled(true);
-        }
+        boolean hasAlarms = !AlarmClock.isEmpty();
+        saveItem.setEnabled(hasAlarms);
+        editItem.setEnabled(hasAlarms);
     }
 }
@@ -0,0 +1,103 @@
+package clock;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates executors that start a virtual thread per task where the runtime has them (Java 21 and later).
+ * The factory is looked up reflectively so the clock still builds and runs on older runtimes, where
+ * the tasks run on daemon platform threads from a pool instead.
+ */
+final class VirtualThreads {
+    private static final MethodHandle NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = find();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Returns whether executors created here start virtual threads.
+     *
+     * @return Whether virtual threads are available.
+     */
+    static boolean isAvailable() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Creates an executor that starts a new thread for every task.
+     *
+     * @param name Name given to the threads when they are platform threads.
+     * @return The executor.
+     */
+    static ExecutorService newThreadPerTaskExecutor(String name) {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+
+        return (executor != null) ? executor : Executors.newCachedThreadPool(daemonThreads(name));
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for every task, or, without virtual threads, runs
+     * the tasks on at most the given number of platform threads and queues the rest.
+     *
+     * @param name Name given to the threads when they are platform threads.
+     * @param maxPlatformThreads Most platform threads started when there are no virtual threads.
+     * @return The executor.
+     */
+    static ExecutorService newBoundedExecutor(String name, int maxPlatformThreads) {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        if (executor != null) {
+            return executor;
+        }
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxPlatformThreads, maxPlatformThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), daemonThreads(name));
+        pool.allowCoreThreadTimeOut(true);
+
+        return pool;
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR == null) {
+            return null;
+        }
+
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not create a virtual thread executor", e);
+        }
+    }
+
+    /**
+     * Returns a factory of numbered daemon threads.
+     *
+     * @param name Name of the threads, followed by their number.
+     * @return The thread factory.
+     */
+    static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+
+        return task -> {
+            Thread thread = new Thread(task, name + " " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static MethodHandle find() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}